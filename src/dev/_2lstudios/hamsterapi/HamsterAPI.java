@@ -1,12 +1,23 @@
 package dev._2lstudios.hamsterapi;
 
-import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.bossbar.BossBarManager;
+import dev._2lstudios.hamsterapi.capture.PacketCapture;
+import dev._2lstudios.hamsterapi.channels.CustomChannelRegistry;
+import dev._2lstudios.hamsterapi.chunks.ChunkFrameCache;
+import dev._2lstudios.hamsterapi.handlers.FlushConsolidator;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayerManager;
+import dev._2lstudios.hamsterapi.hamsterplayer.PipelineHealthChecker;
 import dev._2lstudios.hamsterapi.listeners.PlayerJoinListener;
 import dev._2lstudios.hamsterapi.listeners.PlayerQuitListener;
 import dev._2lstudios.hamsterapi.messengers.BungeeMessenger;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.metrics.MetricsRegistry;
+import dev._2lstudios.hamsterapi.sidebar.SidebarManager;
+import dev._2lstudios.hamsterapi.trace.PacketTracer;
 import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
 import dev._2lstudios.hamsterapi.utils.Reflection;
+import dev._2lstudios.hamsterapi.utils.ReflectionIndex;
 import org.bukkit.Server;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.PluginManager;
@@ -15,14 +26,32 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 public class HamsterAPI extends JavaPlugin {
+	// Max time to wait for the player event loops when (un)injecting every online player
+	private static final long BULK_TIMEOUT_SECONDS = 10;
 	private static HamsterAPI instance;
 	private Reflection reflection;
 	private BufferIO bufferIO;
 	private BungeeMessenger bungeeMessenger;
+	private BossBarManager bossBarManager;
+	private SidebarManager sidebarManager;
+	private CustomChannelRegistry customChannelRegistry;
 	private HamsterPlayerManager hamsterPlayerManager;
+	private PipelineHealthChecker pipelineHealthChecker;
+	private PacketCapture packetCapture;
+	private PacketTracer packetTracer;
+	private HamsterMetrics metrics;
+	private MetricsRegistry metricsRegistry;
+	private String reflectionIndexKey;
+	private boolean movementCoalescing = false;
+	private FlushConsolidator flushConsolidator;
+	private ChunkFrameCache chunkFrameCache;
+	// Entries in the index file, saved again only when more lookups were resolved
+	private int reflectionIndexSize = 0;
 
 	private static synchronized void setInstance(final HamsterAPI hamsterAPI) {
 		HamsterAPI.instance = hamsterAPI;
@@ -43,14 +72,108 @@ public class HamsterAPI extends JavaPlugin {
 		final Server server = getServer();
 		final Properties properties = getProperties();
 		final String bukkitVersion = getVersion(server);
-		final int compressionThreshold = (int) properties.getOrDefault("network_compression_threshold", 256);
+		final int compressionThreshold = Integer
+				.parseInt(properties.getProperty("network_compression_threshold", "256").trim());
 
 		setInstance(this);
 
 		this.reflection = new Reflection(bukkitVersion);
+		loadReflectionIndex(server);
 		this.bufferIO = new BufferIO(this.reflection, bukkitVersion == null ? null : bukkitVersion.replaceAll("[^0-9]", ""), compressionThreshold);
+		this.bufferIO.setDecodeOnce(getConfig().getBoolean("decode-once"));
+		this.metrics = getConfig().getBoolean("metrics.enabled", true) ? new HamsterMetrics() : null;
+		this.packetCapture = createPacketCapture();
+		this.packetTracer = createPacketTracer();
+		this.movementCoalescing = getConfig().getBoolean("movement-coalescing");
+
+		if (getConfig().getBoolean("flush-consolidation.enabled")) {
+			this.flushConsolidator = new FlushConsolidator(getConfig().getLong("flush-consolidation.max-delay-us", 5000L));
+		}
 		this.hamsterPlayerManager = new HamsterPlayerManager();
+		this.pipelineHealthChecker = new PipelineHealthChecker(this.hamsterPlayerManager, this.metrics,
+				getConfig().getLong("pipeline-check-interval-ticks", 100L));
+
+		if (getConfig().getBoolean("chunk-cache.enabled")) {
+			this.chunkFrameCache = new ChunkFrameCache(this.bufferIO, this.packetCapture, this.packetTracer,
+					this.metrics, getConfig().getLong("chunk-cache.max-size-mb", 64L) * 1024 * 1024,
+					getConfig().getLong("chunk-cache.ttl-seconds", 30L) * 1000);
+		}
+
 		this.bungeeMessenger = new BungeeMessenger(this);
+		this.customChannelRegistry = new CustomChannelRegistry(this);
+		this.bossBarManager = new BossBarManager(this.reflection, this.bufferIO);
+		this.sidebarManager = new SidebarManager(this.reflection, this.bufferIO);
+	}
+
+	private File getReflectionIndexFile() {
+		return new File(getDataFolder(), "reflection.idx");
+	}
+
+	private void loadReflectionIndex(final Server server) {
+		this.reflectionIndexKey = ReflectionIndex.computeKey(server);
+
+		final ReflectionIndex index = ReflectionIndex.load(getReflectionIndexFile(), reflectionIndexKey);
+
+		if (index == null) {
+			Debug.info("No reflection index for this server build, it will be rebuilt");
+		} else if (reflection.applyIndex(index)) {
+			this.reflectionIndexSize = index.size();
+			Debug.info("Loaded " + index.size() + " reflection lookups from the index");
+		} else {
+			Debug.warn("Reflection index is outdated, it will be rebuilt");
+		}
+	}
+
+	private void saveReflectionIndex() {
+		if (reflection == null || reflectionIndexKey == null) {
+			return;
+		}
+
+		final ReflectionIndex index = reflection.createIndex(reflectionIndexKey);
+
+		if (index.size() <= reflectionIndexSize) {
+			return;
+		}
+
+		try {
+			index.save(getReflectionIndexFile());
+			this.reflectionIndexSize = index.size();
+		} catch (final Exception e) {
+			getLogger().warning("Failed to save reflection index: " + e.getMessage());
+		}
+	}
+
+	private PacketCapture createPacketCapture() {
+		if (!getConfig().getBoolean("capture.enabled")) {
+			return null;
+		}
+
+		try {
+			final PacketCapture capture = new PacketCapture(new File(getDataFolder(), "capture.bin"),
+					getConfig().getLong("capture.file-size-mb", 64L) * 1024 * 1024,
+					getConfig().getInt("capture.segments", 32));
+
+			capture.setGlobal(getConfig().getBoolean("capture.global"));
+			return capture;
+		} catch (final Exception e) {
+			getLogger().warning("Failed to create packet capture file: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private PacketTracer createPacketTracer() {
+		if (!getConfig().getBoolean("trace.enabled")) {
+			return null;
+		}
+
+		try {
+			return new PacketTracer(new File(getDataFolder(), "traces"), this.bufferIO.getProtocolTables(), getLogger(),
+					getConfig().getInt("trace.buffer-size", 65536), getConfig().getInt("trace.sample-rate", 100),
+					getConfig().getLong("trace.file-size-mb", 16L) * 1024 * 1024, getConfig().getInt("trace.files", 5));
+		} catch (final Exception e) {
+			getLogger().warning("Failed to create packet trace file: " + e.getMessage());
+			return null;
+		}
 	}
 
 	private Properties getProperties() {
@@ -84,42 +207,147 @@ public class HamsterAPI extends JavaPlugin {
 		initialize();
 
 		server.getMessenger().registerOutgoingPluginChannel(this, "BungeeCord");
+		server.getMessenger().registerIncomingPluginChannel(this, BungeeMessenger.CHANNEL, bungeeMessenger);
 		pluginManager.registerEvents(new PlayerJoinListener(this), this);
-		pluginManager.registerEvents(new PlayerQuitListener(hamsterPlayerManager), this);
+		pluginManager.registerEvents(new PlayerQuitListener(hamsterPlayerManager, bossBarManager, sidebarManager), this);
+
+		if (metrics != null) {
+			this.metricsRegistry = new MetricsRegistry(metrics, hamsterPlayerManager, bungeeMessenger, getLogger());
+			this.metricsRegistry.register(getConfig().getLong("metrics.interval-seconds", 10L));
+		}
+
+		final Collection<? extends Player> onlinePlayers = server.getOnlinePlayers();
 
-		for (final Player player : server.getOnlinePlayers()) {
-			final HamsterPlayer hamsterPlayer = this.hamsterPlayerManager.add(player);
-			hamsterPlayer.tryInject();
+		// Sent before uninjecting, clients would keep showing them otherwise
+		if (this.bossBarManager != null) {
+			this.bossBarManager.removeAll();
 		}
+
+		if (this.sidebarManager != null) {
+			this.sidebarManager.removeAll();
+		}
+
+		if (!onlinePlayers.isEmpty()) {
+			final long start = System.nanoTime();
+			final int injected = this.hamsterPlayerManager.injectAll(onlinePlayers, BULK_TIMEOUT_SECONDS,
+					TimeUnit.SECONDS);
+
+			getLogger().info("Injected " + injected + "/" + onlinePlayers.size() + " online players in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+		}
+
+		saveReflectionIndex();
 	}
 
 	@Override
 	public void onDisable() {
 		final Server server = getServer();
 
-		for (final Player player : server.getOnlinePlayers()) {
-			final HamsterPlayer hamsterPlayer = this.hamsterPlayerManager.get(player);
-			if (hamsterPlayer != null) {
-				hamsterPlayer.uninject();
-			}
-			this.hamsterPlayerManager.remove(player);
+		final Collection<? extends Player> onlinePlayers = server.getOnlinePlayers();
+
+		if (this.hamsterPlayerManager != null && !onlinePlayers.isEmpty()) {
+			final long start = System.nanoTime();
+			final int uninjected = this.hamsterPlayerManager.uninjectAll(onlinePlayers, BULK_TIMEOUT_SECONDS,
+					TimeUnit.SECONDS);
+
+			getLogger().info("Uninjected " + uninjected + "/" + onlinePlayers.size() + " online players in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
 		}
 
         getServer().getMessenger().unregisterOutgoingPluginChannel(this, "BungeeCord");
+		getServer().getMessenger().unregisterIncomingPluginChannel(this, BungeeMessenger.CHANNEL);
+
+		if (this.customChannelRegistry != null) {
+			this.customChannelRegistry.unregisterAll();
+		}
+
+		if (this.chunkFrameCache != null) {
+			this.chunkFrameCache.invalidateAll();
+		}
+
+		if (this.metricsRegistry != null) {
+			this.metricsRegistry.unregister();
+		}
+
+		// Keeps lookups first resolved on join for the next boot
+		saveReflectionIndex();
+		FoliaAPI.shutdown();
+
+		if (this.packetCapture != null) {
+			try {
+				this.packetCapture.close();
+			} catch (final Exception e) {
+				getLogger().warning("Failed to close packet capture file: " + e.getMessage());
+			}
+		}
+
+		if (this.packetTracer != null) {
+			try {
+				this.packetTracer.close();
+			} catch (final Exception e) {
+				getLogger().warning("Failed to close packet trace file: " + e.getMessage());
+			}
+		}
 	}
 
 	public BufferIO getBufferIO() {
 		return this.bufferIO;
 	}
 
+	public BossBarManager getBossBarManager() {
+		return this.bossBarManager;
+	}
+
 	public BungeeMessenger getBungeeMessenger() {
 		return this.bungeeMessenger;
 	}
 
+	// Null unless the chunk cache is enabled in the config
+	public ChunkFrameCache getChunkFrameCache() {
+		return this.chunkFrameCache;
+	}
+
+	public CustomChannelRegistry getCustomChannelRegistry() {
+		return this.customChannelRegistry;
+	}
+
+	// Null unless capture is enabled in the config
+	public PacketCapture getPacketCapture() {
+		return this.packetCapture;
+	}
+
+	// Null if metrics are disabled in the config
+	public HamsterMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	// Null unless tracing is enabled in the config
+	public PacketTracer getPacketTracer() {
+		return this.packetTracer;
+	}
+
 	public HamsterPlayerManager getHamsterPlayerManager() {
 		return this.hamsterPlayerManager;
 	}
 
+	// Null unless flush consolidation is enabled in the config
+	public FlushConsolidator getFlushConsolidator() {
+		return this.flushConsolidator;
+	}
+
+	// Read by channel handlers when a player is injected
+	public boolean isMovementCoalescing() {
+		return this.movementCoalescing;
+	}
+
+	public PipelineHealthChecker getPipelineHealthChecker() {
+		return this.pipelineHealthChecker;
+	}
+
+	public SidebarManager getSidebarManager() {
+		return this.sidebarManager;
+	}
+
 	public Reflection getReflection() {
 		return this.reflection;
 	}
@@ -0,0 +1,218 @@
+package dev._2lstudios.hamsterapi.bench;
+
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayerManager;
+import dev._2lstudios.hamsterapi.utils.LatencyHistogram;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal stand-in for a Bukkit server so HamsterAPI's handlers and plugin
+ * listeners can run without one. Only what the packet path touches is
+ * implemented: event dispatch, the primary thread check and player identity.
+ * Every registered listener method is timed individually.
+ */
+public class BenchEnvironment {
+	private final Server server;
+	private final PluginManager pluginManager;
+	private final Plugin plugin;
+	private final HamsterPlayerManager hamsterPlayerManager = new HamsterPlayerManager();
+	private final Map<String, LatencyHistogram> listenerLatencies = new LinkedHashMap<>();
+	private final List<HandlerList> handlerLists = new ArrayList<>();
+	private final List<RegisteredListener> registeredListeners = new ArrayList<>();
+	private final AtomicInteger nextEntityId = new AtomicInteger();
+
+	public BenchEnvironment() {
+		this.pluginManager = proxy(PluginManager.class, (proxy, method, args) -> {
+			if (method.getName().equals("callEvent")) {
+				callEvent((Event) args[0]);
+			}
+
+			return null;
+		});
+		this.server = proxy(Server.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getPluginManager":
+				return pluginManager;
+			case "getName":
+				return "HamsterAPI-Bench";
+			default:
+				return null;
+			}
+		});
+		this.plugin = proxy(Plugin.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getName":
+				return "HamsterAPI-Bench";
+			case "getServer":
+				return server;
+			case "isEnabled":
+				return true;
+			default:
+				return null;
+			}
+		});
+	}
+
+	public Server getServer() {
+		return server;
+	}
+
+	public HamsterPlayer createPlayer(final UUID uuid, final String name) {
+		final int entityId = nextEntityId.incrementAndGet();
+		final Player player = proxy(Player.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getUniqueId":
+				return uuid;
+			case "getName":
+			case "getDisplayName":
+				return name;
+			case "getEntityId":
+				return entityId;
+			case "getServer":
+				return server;
+			case "isOnline":
+				return true;
+			case "hashCode":
+				return uuid.hashCode();
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "BenchPlayer{" + name + "}";
+			default:
+				return null;
+			}
+		});
+
+		return hamsterPlayerManager.add(player);
+	}
+
+	// Registers every @EventHandler method of the listener, each one timed separately.
+	public void registerListener(final Listener listener) {
+		for (final Method method : listener.getClass().getMethods()) {
+			final EventHandler eventHandler = method.getAnnotation(EventHandler.class);
+
+			if (eventHandler == null || method.getParameterCount() != 1
+					|| !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+				continue;
+			}
+
+			final Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+			final LatencyHistogram latency = new LatencyHistogram();
+			final EventExecutor executor = (ignored, event) -> {
+				// Packet events share one HandlerList, so filter like Bukkit's own executors.
+				if (!eventClass.isInstance(event)) {
+					return;
+				}
+
+				final long start = System.nanoTime();
+
+				try {
+					method.invoke(listener, event);
+				} catch (final InvocationTargetException e) {
+					throw new EventException(e.getCause());
+				} catch (final IllegalAccessException e) {
+					throw new EventException(e);
+				} finally {
+					latency.record(System.nanoTime() - start);
+				}
+			};
+			final HandlerList handlerList = getHandlerList(eventClass);
+			final RegisteredListener registeredListener = new RegisteredListener(listener, executor,
+					eventHandler.priority(), plugin, eventHandler.ignoreCancelled());
+
+			handlerList.register(registeredListener);
+			handlerLists.add(handlerList);
+			registeredListeners.add(registeredListener);
+			listenerLatencies.put(listener.getClass().getSimpleName() + "#" + method.getName(), latency);
+		}
+	}
+
+	// Latency of every registered listener method, keyed by Class#method.
+	public Map<String, LatencyHistogram> getListenerLatencies() {
+		return listenerLatencies;
+	}
+
+	public void unregisterListeners() {
+		for (int i = 0; i < registeredListeners.size(); i++) {
+			handlerLists.get(i).unregister(registeredListeners.get(i));
+		}
+
+		handlerLists.clear();
+		registeredListeners.clear();
+	}
+
+	private void callEvent(final Event event) {
+		for (final RegisteredListener registeredListener : event.getHandlers().getRegisteredListeners()) {
+			try {
+				registeredListener.callEvent(event);
+			} catch (final Throwable throwable) {
+				throwable.printStackTrace();
+			}
+		}
+	}
+
+	private static HandlerList getHandlerList(final Class<? extends Event> eventClass) {
+		try {
+			return (HandlerList) eventClass.getMethod("getHandlerList").invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			throw new IllegalArgumentException(eventClass.getName() + " has no static getHandlerList()", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(BenchEnvironment.class.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					final Object result = handler.invoke(proxy, method, args);
+
+					if (result == null && method.getReturnType().isPrimitive()) {
+						return defaultValue(method.getReturnType());
+					}
+
+					return result;
+				});
+	}
+
+	private static Object defaultValue(final Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		} else if (type == char.class) {
+			return '\0';
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,593 @@
+package dev._2lstudios.hamsterapi.bench;
+
+import dev._2lstudios.hamsterapi.bench.PacketReplay.BenchReport;
+import dev._2lstudios.hamsterapi.enums.HamsterHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterChannelHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterDecoderHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterEncoderHandler;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.LatencyHistogram;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.bukkit.event.Listener;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the traffic of many simulated players through the HamsterAPI
+ * handlers, to find how many players a number of event loops can sustain with
+ * the registered listeners.
+ * <p>
+ * Every player is a local transport connection to a server whose channels run
+ * on a {@link NioEventLoopGroup} and hold the same handlers HamsterAPI
+ * injects. Clients send movement, chat and window clicks, the server sends
+ * chunks, each at a rate per player and second. Frames carry their send time
+ * after the packet id, so latency is measured from the write to the end of the
+ * pipeline. No decoder is installed, listeners see the frames as
+ * {@link ByteBuf}s.
+ * <p>
+ * {@code java -cp HamsterAPI.jar:spigot-api.jar:netty.jar:plugin.jar dev._2lstudios.hamsterapi.bench.LoadGenerator [players] [event loops] [seconds] [option=value...] [listener classes...]}
+ * <p>
+ * Options: movement, chat, clicks and chunks (packets per second per player),
+ * chunk-size (bytes) and warmup (seconds).
+ */
+public class LoadGenerator {
+	// Packet ids of the 1.8 protocol, only used to tell the frames apart
+	private static final int CHAT_ID = 0x01;
+	private static final int MOVEMENT_ID = 0x06;
+	private static final int CLICK_ID = 0x0E;
+	private static final int CHUNK_ID = 0x21;
+	private static final long TICK_MILLIS = 50;
+	private static final int MAX_FRAME_LENGTH = 2097151;
+	private static final String[] CHAT_MESSAGES = { "hi", "anyone selling diamonds?", "gg",
+			"/tpa Notch", "meet me at spawn, the portal is next to the big oak tree north of the fountain" };
+
+	private final BenchEnvironment environment;
+	private final LatencyHistogram inboundLatency = new LatencyHistogram();
+	private final LatencyHistogram outboundLatency = new LatencyHistogram();
+	private final LongAdder inboundPackets = new LongAdder();
+	private final LongAdder outboundPackets = new LongAdder();
+	private final Queue<HamsterPlayer> pendingPlayers = new ConcurrentLinkedQueue<>();
+	private final List<ScheduledFuture<?>> tasks = Collections.synchronizedList(new ArrayList<>());
+	private int players = 100;
+	private int eventLoops = Runtime.getRuntime().availableProcessors();
+	private double movementRate = 20;
+	private double chatRate = 0.2;
+	private double clickRate = 2;
+	private double chunkRate = 5;
+	private int chunkSize = 12 * 1024;
+	private ByteBuf chunkPayload;
+
+	public LoadGenerator(final BenchEnvironment environment) {
+		this.environment = environment;
+	}
+
+	public void setPlayers(final int players) {
+		this.players = players;
+	}
+
+	public void setEventLoops(final int eventLoops) {
+		this.eventLoops = eventLoops;
+	}
+
+	// Packets per second sent by every player
+	public void setRates(final double movementRate, final double chatRate, final double clickRate) {
+		this.movementRate = movementRate;
+		this.chatRate = chatRate;
+		this.clickRate = clickRate;
+	}
+
+	// Chunks per second sent to every player
+	public void setChunkRate(final double chunkRate) {
+		this.chunkRate = chunkRate;
+	}
+
+	public void setChunkSize(final int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public LatencyHistogram getInboundLatency() {
+		return inboundLatency;
+	}
+
+	public LatencyHistogram getOutboundLatency() {
+		return outboundLatency;
+	}
+
+	public LoadReport run(final long warmupSeconds, final long seconds) throws InterruptedException {
+		final EventLoopGroup bossGroup = new DefaultEventLoopGroup(1);
+		final EventLoopGroup workerGroup = new NioEventLoopGroup(eventLoops);
+		// Clients get their own threads, generating the load must not slow down the measured loops
+		final EventLoopGroup clientGroup = new DefaultEventLoopGroup(Math.max(1, eventLoops / 2));
+		final List<Channel> channels = new ArrayList<>();
+		final byte[] payload = new byte[chunkSize];
+
+		ThreadLocalRandom.current().nextBytes(payload);
+		chunkPayload = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(payload));
+
+		try {
+			for (int i = 0; i < players; i++) {
+				pendingPlayers.add(environment.createPlayer(UUID.randomUUID(), "Bench" + i));
+			}
+
+			final LocalAddress address = new LocalAddress("hamsterapi-load-" + System.nanoTime());
+
+			channels.add(new ServerBootstrap().group(bossGroup, workerGroup).channel(LocalServerChannel.class)
+					.childHandler(new ChannelInitializer<Channel>() {
+						@Override
+						protected void initChannel(final Channel channel) {
+							initServerChannel(channel);
+						}
+					}).bind(address).sync().channel());
+
+			final Bootstrap bootstrap = new Bootstrap().group(clientGroup).channel(LocalChannel.class)
+					.handler(new ChannelInitializer<Channel>() {
+						@Override
+						protected void initChannel(final Channel channel) {
+							initClientChannel(channel);
+						}
+					});
+
+			for (int i = 0; i < players; i++) {
+				channels.add(bootstrap.connect(address).sync().channel());
+			}
+
+			TimeUnit.SECONDS.sleep(warmupSeconds);
+
+			final LoadReport report = new LoadReport(players, eventLoops,
+					players * (movementRate + chatRate + clickRate), players * chunkRate,
+					getThreadIds(workerGroup));
+
+			inboundLatency.reset();
+			outboundLatency.reset();
+			inboundPackets.reset();
+			outboundPackets.reset();
+
+			for (final LatencyHistogram latency : environment.getListenerLatencies().values()) {
+				latency.reset();
+			}
+
+			report.start();
+			TimeUnit.SECONDS.sleep(seconds);
+			report.stop(inboundPackets.sum(), outboundPackets.sum());
+			return report;
+		} finally {
+			synchronized (tasks) {
+				for (final ScheduledFuture<?> task : tasks) {
+					task.cancel(false);
+				}
+
+				tasks.clear();
+			}
+
+			for (final Channel channel : channels) {
+				channel.close().awaitUninterruptibly();
+			}
+
+			pendingPlayers.clear();
+			clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+			workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+			bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+		}
+	}
+
+	private void initServerChannel(final Channel channel) {
+		final HamsterPlayer hamsterPlayer = pendingPlayers.poll();
+
+		if (hamsterPlayer == null) {
+			channel.close();
+			return;
+		}
+
+		final ChannelPipeline pipeline = channel.pipeline();
+
+		pipeline.addLast("splitter", new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 3, 0, 3));
+		pipeline.addLast("prepender", new LengthFieldPrepender(3));
+		// Same relative order as the injected handlers, see HamsterPlayer#inject.
+		pipeline.addLast(HamsterHandler.HAMSTER_ENCODER, new HamsterEncoderHandler(hamsterPlayer));
+		pipeline.addLast(HamsterHandler.HAMSTER_DECODER, new HamsterDecoderHandler(hamsterPlayer));
+		pipeline.addLast(HamsterHandler.HAMSTER_CHANNEL, new HamsterChannelHandler(hamsterPlayer));
+		pipeline.addLast("packet_handler", new LatencySink(inboundLatency, inboundPackets));
+		schedule(channel, new Traffic(channel, chunkRate) {
+			@Override
+			protected ByteBuf frame(final int type) {
+				return chunkFrame(channel);
+			}
+		});
+	}
+
+	private void initClientChannel(final Channel channel) {
+		final ChannelPipeline pipeline = channel.pipeline();
+
+		pipeline.addLast("splitter", new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 3, 0, 3));
+		pipeline.addLast("prepender", new LengthFieldPrepender(3));
+		pipeline.addLast("packet_handler", new LatencySink(outboundLatency, outboundPackets));
+		schedule(channel, new Traffic(channel, movementRate, chatRate, clickRate) {
+			@Override
+			protected ByteBuf frame(final int type) {
+				switch (type) {
+				case 0:
+					return movementFrame(channel);
+				case 1:
+					return chatFrame(channel);
+				default:
+					return clickFrame(channel);
+				}
+			}
+		});
+	}
+
+	// Ticks are spread over the first tick so players don't all send at once
+	private void schedule(final Channel channel, final Traffic traffic) {
+		final long delay = ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toMicros(TICK_MILLIS));
+
+		tasks.add(channel.eventLoop().scheduleAtFixedRate(traffic, delay, TimeUnit.MILLISECONDS.toMicros(TICK_MILLIS),
+				TimeUnit.MICROSECONDS));
+	}
+
+	private static ByteBuf header(final Channel channel, final int packetId, final int capacity) {
+		final ByteBuf byteBuf = channel.alloc().buffer(capacity);
+
+		BufferIO.writeVarInt(byteBuf, packetId);
+		byteBuf.writeLong(System.nanoTime());
+		return byteBuf;
+	}
+
+	private static ByteBuf movementFrame(final Channel channel) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final ByteBuf byteBuf = header(channel, MOVEMENT_ID, 42);
+
+		byteBuf.writeDouble(random.nextDouble(-1000, 1000));
+		byteBuf.writeDouble(random.nextDouble(0, 256));
+		byteBuf.writeDouble(random.nextDouble(-1000, 1000));
+		byteBuf.writeFloat(random.nextFloat() * 360);
+		byteBuf.writeFloat(random.nextFloat() * 180 - 90);
+		byteBuf.writeBoolean(random.nextBoolean());
+		return byteBuf;
+	}
+
+	private static ByteBuf chatFrame(final Channel channel) {
+		final byte[] message = CHAT_MESSAGES[ThreadLocalRandom.current().nextInt(CHAT_MESSAGES.length)]
+				.getBytes(StandardCharsets.UTF_8);
+		final ByteBuf byteBuf = header(channel, CHAT_ID, 11 + message.length);
+
+		BufferIO.writeVarInt(byteBuf, message.length);
+		byteBuf.writeBytes(message);
+		return byteBuf;
+	}
+
+	private static ByteBuf clickFrame(final Channel channel) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final ByteBuf byteBuf = header(channel, CLICK_ID, 20);
+
+		// Window, slot, button, action, mode and an empty item
+		byteBuf.writeByte(1);
+		byteBuf.writeShort(random.nextInt(46));
+		byteBuf.writeByte(random.nextInt(2));
+		byteBuf.writeShort(random.nextInt(Short.MAX_VALUE));
+		byteBuf.writeByte(0);
+		byteBuf.writeShort(-1);
+		return byteBuf;
+	}
+
+	// The chunk data is shared, only the header is written for every chunk
+	private ByteBuf chunkFrame(final Channel channel) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final ByteBuf header = header(channel, CHUNK_ID, 24);
+
+		header.writeInt(random.nextInt(-64, 64));
+		header.writeInt(random.nextInt(-64, 64));
+		header.writeBoolean(true);
+		header.writeShort(0xFFFF);
+		BufferIO.writeVarInt(header, chunkSize);
+		return channel.alloc().compositeBuffer(2).addComponents(true, header, chunkPayload.duplicate());
+	}
+
+	private static long[] getThreadIds(final EventLoopGroup group) throws InterruptedException {
+		final List<Long> threadIds = new ArrayList<>();
+
+		for (final EventExecutor executor : group) {
+			try {
+				threadIds.add(executor.submit(() -> Thread.currentThread().getId()).get());
+			} catch (final ExecutionException e) {
+				// Event loop shutting down, nothing to measure there
+			}
+		}
+
+		final long[] ids = new long[threadIds.size()];
+
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = threadIds.get(i);
+		}
+
+		return ids;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final BenchEnvironment environment = new BenchEnvironment();
+		final LoadGenerator generator = new LoadGenerator(environment);
+		long seconds = 30;
+		long warmup = 5;
+		double movement = generator.movementRate;
+		double chat = generator.chatRate;
+		double clicks = generator.clickRate;
+
+		if (args.length > 0) {
+			generator.setPlayers(Integer.parseInt(args[0]));
+		}
+
+		if (args.length > 1) {
+			generator.setEventLoops(Integer.parseInt(args[1]));
+		}
+
+		if (args.length > 2) {
+			seconds = Long.parseLong(args[2]);
+		}
+
+		for (int i = 3; i < args.length; i++) {
+			final int separator = args[i].indexOf('=');
+
+			if (separator < 0) {
+				environment.registerListener((Listener) Class.forName(args[i]).getConstructor().newInstance());
+				continue;
+			}
+
+			final String value = args[i].substring(separator + 1);
+
+			switch (args[i].substring(0, separator)) {
+			case "movement":
+				movement = Double.parseDouble(value);
+				break;
+			case "chat":
+				chat = Double.parseDouble(value);
+				break;
+			case "clicks":
+				clicks = Double.parseDouble(value);
+				break;
+			case "chunks":
+				generator.setChunkRate(Double.parseDouble(value));
+				break;
+			case "chunk-size":
+				generator.setChunkSize(Integer.parseInt(value));
+				break;
+			case "warmup":
+				warmup = Long.parseLong(value);
+				break;
+			default:
+				System.err.println("Unknown option " + args[i]);
+				return;
+			}
+		}
+
+		generator.setRates(movement, chat, clicks);
+
+		final LoadReport report = generator.run(warmup, seconds);
+
+		report.print(System.out, generator.getInboundLatency(), generator.getOutboundLatency(),
+				environment.getListenerLatencies());
+		environment.unregisterListeners();
+	}
+
+	/**
+	 * Sends the packets of one player that are due this tick. Every packet
+	 * type earns its rate per tick and sends a packet per whole credit, so
+	 * fractional rates (e.g. a chat message every 5 seconds) work too.
+	 */
+	private abstract static class Traffic implements Runnable {
+		private final Channel channel;
+		private final double[] perTick;
+		private final double[] credits;
+
+		private Traffic(final Channel channel, final double... rates) {
+			this.channel = channel;
+			this.perTick = new double[rates.length];
+			this.credits = new double[rates.length];
+
+			for (int type = 0; type < rates.length; type++) {
+				perTick[type] = rates[type] * TICK_MILLIS / 1000;
+			}
+		}
+
+		@Override
+		public void run() {
+			if (!channel.isActive()) {
+				return;
+			}
+
+			boolean written = false;
+
+			for (int type = 0; type < perTick.length; type++) {
+				credits[type] += perTick[type];
+
+				while (credits[type] >= 1) {
+					credits[type]--;
+					channel.write(frame(type), channel.voidPromise());
+					written = true;
+				}
+			}
+
+			if (written) {
+				channel.flush();
+			}
+		}
+
+		protected abstract ByteBuf frame(int type);
+	}
+
+	// End of the pipeline, records how long the frame took since it was written
+	private static final class LatencySink extends ChannelInboundHandlerAdapter {
+		private final LatencyHistogram latency;
+		private final LongAdder packets;
+
+		private LatencySink(final LatencyHistogram latency, final LongAdder packets) {
+			this.latency = latency;
+			this.packets = packets;
+		}
+
+		@Override
+		public void channelRead(final ChannelHandlerContext channelHandlerContext, final Object message) {
+			try {
+				if (message instanceof ByteBuf && ((ByteBuf) message).readableBytes() > 8) {
+					final ByteBuf byteBuf = (ByteBuf) message;
+
+					BufferIO.readVarInt(byteBuf);
+					latency.record(System.nanoTime() - byteBuf.readLong());
+				}
+
+				packets.increment();
+			} finally {
+				ReferenceCountUtil.release(message);
+			}
+		}
+	}
+
+	/**
+	 * Throughput against the target rates, and the allocation and GC figures
+	 * of a load run. Allocation is measured on the server event loops only.
+	 */
+	public static class LoadReport {
+		private final int players;
+		private final int eventLoops;
+		private final double inboundTarget;
+		private final double outboundTarget;
+		private final long[] threadIds;
+		private long startNanos;
+		private long elapsedNanos;
+		private long startAllocated;
+		private long allocated = -1;
+		private long startGcCount;
+		private long startGcTime;
+		private long gcCount;
+		private long gcTime;
+		private long inboundPackets;
+		private long outboundPackets;
+
+		LoadReport(final int players, final int eventLoops, final double inboundTarget, final double outboundTarget,
+				final long[] threadIds) {
+			this.players = players;
+			this.eventLoops = eventLoops;
+			this.inboundTarget = inboundTarget;
+			this.outboundTarget = outboundTarget;
+			this.threadIds = threadIds;
+		}
+
+		void start() {
+			startNanos = System.nanoTime();
+			startAllocated = getAllocatedBytes(threadIds);
+			startGcCount = BenchReport.totalGcCount();
+			startGcTime = BenchReport.totalGcTime();
+		}
+
+		void stop(final long inboundPackets, final long outboundPackets) {
+			final long endAllocated = getAllocatedBytes(threadIds);
+
+			this.elapsedNanos = System.nanoTime() - startNanos;
+			this.allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+			this.gcCount = BenchReport.totalGcCount() - startGcCount;
+			this.gcTime = BenchReport.totalGcTime() - startGcTime;
+			this.inboundPackets = inboundPackets;
+			this.outboundPackets = outboundPackets;
+		}
+
+		public double getInboundPerSecond() {
+			return elapsedNanos == 0 ? 0 : inboundPackets * 1e9 / elapsedNanos;
+		}
+
+		public double getOutboundPerSecond() {
+			return elapsedNanos == 0 ? 0 : outboundPackets * 1e9 / elapsedNanos;
+		}
+
+		// Bytes allocated by the server event loops per packet, or -1 if the JVM can't measure it.
+		public long getAllocatedPerPacket() {
+			final long packets = inboundPackets + outboundPackets;
+
+			return allocated < 0 || packets == 0 ? -1 : allocated / packets;
+		}
+
+		public long getGcCount() {
+			return gcCount;
+		}
+
+		public long getGcTimeMillis() {
+			return gcTime;
+		}
+
+		public void print(final PrintStream out, final LatencyHistogram inboundLatency,
+				final LatencyHistogram outboundLatency, final Map<String, LatencyHistogram> listenerLatencies) {
+			out.printf(Locale.ROOT, "%d players on %d event loops for %.1f s%n", players, eventLoops,
+					elapsedNanos / 1e9);
+			printRate(out, "Inbound", getInboundPerSecond(), inboundTarget);
+			printRate(out, "Outbound", getOutboundPerSecond(), outboundTarget);
+			out.printf(Locale.ROOT, "Allocated per packet: %d bytes, GC: %d collections, %d ms%n",
+					getAllocatedPerPacket(), gcCount, gcTime);
+			BenchReport.printLatency(out, "inbound", inboundLatency);
+			BenchReport.printLatency(out, "outbound", outboundLatency);
+
+			for (final Map.Entry<String, LatencyHistogram> entry : listenerLatencies.entrySet()) {
+				BenchReport.printLatency(out, entry.getKey(), entry.getValue());
+			}
+		}
+
+		// Below the target, the event loops could not keep up with the players
+		private void printRate(final PrintStream out, final String name, final double perSecond,
+				final double target) {
+			out.printf(Locale.ROOT, "%s: %.0f packets/s (%.0f per event loop), %.1f%% of the target rate%n", name,
+					perSecond, perSecond / eventLoops, target == 0 ? 100 : perSecond * 100 / target);
+		}
+
+		private static long getAllocatedBytes(final long[] threadIds) {
+			final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+			if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+				final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+				if (sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+					long total = 0;
+
+					sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+					for (final long allocated : sunThreadMXBean.getThreadAllocatedBytes(threadIds)) {
+						total += Math.max(0, allocated);
+					}
+
+					return total;
+				}
+			}
+
+			return -1;
+		}
+	}
+}
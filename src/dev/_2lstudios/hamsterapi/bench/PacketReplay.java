@@ -0,0 +1,403 @@
+package dev._2lstudios.hamsterapi.bench;
+
+import dev._2lstudios.hamsterapi.capture.CaptureReader;
+import dev._2lstudios.hamsterapi.capture.CaptureRecord;
+import dev._2lstudios.hamsterapi.enums.HamsterHandler;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.handlers.HamsterChannelHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterDecoderHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterEncoderHandler;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.LatencyHistogram;
+import dev._2lstudios.hamsterapi.utils.ProtocolTable;
+import dev._2lstudios.hamsterapi.utils.ProtocolTables;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.ReferenceCountUtil;
+import org.bukkit.event.Listener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replays a {@link dev._2lstudios.hamsterapi.capture.PacketCapture} file
+ * through the HamsterAPI handlers without a server, to benchmark plugin
+ * listeners against real traffic.
+ * <p>
+ * Every captured player gets an {@link EmbeddedChannel} holding the same
+ * handlers HamsterAPI injects. With a server jar on the classpath frames are
+ * decoded through its {@link ProtocolTables} as PLAY packets, so listeners see
+ * the packets they get on a server: serverbound frames by a "decoder" after
+ * the decoder handler, clientbound ones before they are written. Frames that
+ * can't be decoded, or every frame without a server jar, reach the listeners
+ * as {@link ByteBuf}s and the report says so. Servers before 1.17 need their
+ * version, e.g. {@code -Dhamsterapi.version=v1_16_R3}.
+ * <p>
+ * {@code java -cp HamsterAPI.jar:spigot-api.jar:netty.jar:server.jar:plugin.jar dev._2lstudios.hamsterapi.bench.PacketReplay capture.bin [fast|realtime] [speed] [listener classes...]}
+ */
+public class PacketReplay {
+	public enum Mode {
+		// As fast as possible, measures throughput.
+		FAST,
+		// Keeps the captured timing (scaled by the speed), measures latency under a realistic load.
+		REALTIME
+	}
+
+	private final BenchEnvironment environment;
+	private final Map<UUID, EmbeddedChannel> channels = new HashMap<>();
+	private final LatencyHistogram packetLatency = new LatencyHistogram();
+	private Supplier<ChannelHandler> decoderSupplier = null;
+	private ProtocolTable serverboundTable = null;
+	private ProtocolTable clientboundTable = null;
+	// Frames decoded and frames passed on as ByteBufs, per direction
+	private final long[] decoded = new long[PacketDirection.values().length];
+	private final long[] undecoded = new long[PacketDirection.values().length];
+	private Mode mode = Mode.FAST;
+	private double speed = 1;
+
+	public PacketReplay(final BenchEnvironment environment) {
+		this.environment = environment;
+	}
+
+	// Handler placed as "decoder" after hapi_decoder, turning frames into packets. Replaces the protocol tables.
+	public void setDecoder(final Supplier<ChannelHandler> decoderSupplier) {
+		this.decoderSupplier = decoderSupplier;
+	}
+
+	// Decodes frames as PLAY packets through the tables, see loadProtocolTables.
+	public void setProtocolTables(final ProtocolTables protocolTables) {
+		this.serverboundTable = protocolTables == null ? null
+				: protocolTables.getTable(ProtocolState.PLAY, PacketDirection.SERVERBOUND);
+		this.clientboundTable = protocolTables == null ? null
+				: protocolTables.getTable(ProtocolState.PLAY, PacketDirection.CLIENTBOUND);
+	}
+
+	/**
+	 * Builds the protocol tables of the server jar on the classpath.
+	 *
+	 * @return null without a server jar, or on 1.20.5+ where the tables are only
+	 *         known once a player is connected.
+	 */
+	public static ProtocolTables loadProtocolTables() {
+		try {
+			final ProtocolTables protocolTables = new ProtocolTables(
+					new Reflection(System.getProperty("hamsterapi.version")));
+
+			return protocolTables.getTable(ProtocolState.PLAY, PacketDirection.SERVERBOUND) != null ? protocolTables
+					: null;
+		} catch (final RuntimeException | LinkageError e) {
+			return null;
+		}
+	}
+
+	public long getDecoded(final PacketDirection direction) {
+		return decoded[direction.ordinal()];
+	}
+
+	public long getUndecoded(final PacketDirection direction) {
+		return undecoded[direction.ordinal()];
+	}
+
+	public void setMode(final Mode mode) {
+		this.mode = mode;
+	}
+
+	public void setSpeed(final double speed) {
+		this.speed = speed;
+	}
+
+	public LatencyHistogram getPacketLatency() {
+		return packetLatency;
+	}
+
+	public BenchReport replay(final List<CaptureRecord> records) throws InterruptedException {
+		final BenchReport report = new BenchReport();
+
+		report.start();
+
+		final long firstTime = records.isEmpty() ? 0 : records.get(0).getTime();
+		final long startNanos = System.nanoTime();
+
+		for (final CaptureRecord record : records) {
+			if (mode == Mode.REALTIME) {
+				final long due = startNanos
+						+ (long) (TimeUnit.MILLISECONDS.toNanos(record.getTime() - firstTime) / speed);
+				final long wait = due - System.nanoTime();
+
+				if (wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+			}
+
+			final EmbeddedChannel channel = getChannel(record.getUniqueId());
+			final ByteBuf frame = Unpooled.wrappedBuffer(record.getFrame());
+
+			if (record.getDirection() == PacketDirection.SERVERBOUND) {
+				final long start = System.nanoTime();
+
+				channel.writeInbound(frame);
+				packetLatency.record(System.nanoTime() - start);
+			} else {
+				// The server hands packets to the pipeline, so decoding is not part of the latency
+				final Object packet = decode(clientboundTable, PacketDirection.CLIENTBOUND, frame);
+				final long start = System.nanoTime();
+
+				channel.writeOutbound(packet);
+				packetLatency.record(System.nanoTime() - start);
+			}
+
+			drain(channel);
+		}
+
+		report.stop(records.size());
+
+		for (final EmbeddedChannel channel : channels.values()) {
+			channel.finishAndReleaseAll();
+		}
+
+		channels.clear();
+		return report;
+	}
+
+	private EmbeddedChannel getChannel(final UUID uuid) {
+		return channels.computeIfAbsent(uuid, key -> {
+			final HamsterPlayer hamsterPlayer = environment.createPlayer(key, key.toString().substring(0, 8));
+			final EmbeddedChannel channel = new EmbeddedChannel();
+
+			// Same relative order as the injected handlers, see HamsterPlayer#inject.
+			channel.pipeline().addLast(HamsterHandler.HAMSTER_ENCODER, new HamsterEncoderHandler(hamsterPlayer));
+			channel.pipeline().addLast(HamsterHandler.HAMSTER_DECODER, new HamsterDecoderHandler(hamsterPlayer));
+
+			if (decoderSupplier != null) {
+				channel.pipeline().addLast("decoder", decoderSupplier.get());
+			} else if (serverboundTable != null) {
+				channel.pipeline().addLast("decoder", new TableDecoder());
+			}
+
+			channel.pipeline().addLast(HamsterHandler.HAMSTER_CHANNEL, new HamsterChannelHandler(hamsterPlayer));
+			return channel;
+		});
+	}
+
+	// The packet, or the frame itself when there is no table or the frame can't be decoded
+	private Object decode(final ProtocolTable table, final PacketDirection direction, final ByteBuf frame) {
+		if (table == null) {
+			undecoded[direction.ordinal()]++;
+			return frame;
+		}
+
+		final int readerIndex = frame.readerIndex();
+
+		try {
+			final Object packet = table.decode(frame);
+
+			if (!frame.isReadable()) {
+				decoded[direction.ordinal()]++;
+				frame.release();
+				return packet;
+			}
+		} catch (final IOException | RuntimeException e) {
+			// Passed on as bytes, e.g. an item stack without the server's registries
+		}
+
+		frame.readerIndex(readerIndex);
+		undecoded[direction.ordinal()]++;
+		return frame;
+	}
+
+	// Tells whether the listeners saw packets or bytes, their latencies mean little with bytes
+	public void printDecoding(final PrintStream out) {
+		for (final PacketDirection direction : PacketDirection.values()) {
+			final long total = getDecoded(direction) + getUndecoded(direction);
+
+			if (total > 0) {
+				out.printf(Locale.ROOT, "%s: %d of %d frames decoded into packets%n", direction,
+						getDecoded(direction), total);
+			}
+		}
+
+		if (decoderSupplier == null && serverboundTable == null) {
+			out.println("WARNING: packets were NOT decoded, listeners received raw ByteBufs and returned early."
+					+ " Put the server jar on the classpath (1.8-1.20.4) to measure them against real packets.");
+		}
+	}
+
+	private static void drain(final EmbeddedChannel channel) {
+		Object message;
+
+		while ((message = channel.readInbound()) != null) {
+			ReferenceCountUtil.release(message);
+		}
+
+		while ((message = channel.readOutbound()) != null) {
+			ReferenceCountUtil.release(message);
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: PacketReplay <capture file> [fast|realtime] [speed] [listener classes...]");
+			return;
+		}
+
+		final List<CaptureRecord> records = CaptureReader.read(new File(args[0]));
+		final BenchEnvironment environment = new BenchEnvironment();
+		final PacketReplay replay = new PacketReplay(environment);
+
+		replay.setProtocolTables(loadProtocolTables());
+
+		if (args.length > 1) {
+			replay.setMode(Mode.valueOf(args[1].toUpperCase(Locale.ROOT)));
+		}
+
+		if (args.length > 2) {
+			replay.setSpeed(Double.parseDouble(args[2]));
+		}
+
+		for (int i = 3; i < args.length; i++) {
+			environment.registerListener((Listener) Class.forName(args[i]).getConstructor().newInstance());
+		}
+
+		final BenchReport report = replay.replay(records);
+
+		replay.printDecoding(System.out);
+		report.print(System.out, replay.getPacketLatency(), environment.getListenerLatencies());
+		environment.unregisterListeners();
+	}
+
+	// Serverbound frames to PLAY packets, in place of the vanilla decoder
+	private final class TableDecoder extends ByteToMessageDecoder {
+		@Override
+		protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) {
+			final Object packet = PacketReplay.this.decode(serverboundTable, PacketDirection.SERVERBOUND,
+					in.readRetainedSlice(in.readableBytes()));
+
+			out.add(packet);
+		}
+	}
+
+	/**
+	 * Throughput, allocation and GC figures of a benchmark run. Allocation is
+	 * only measured on the calling thread, which is where every handler of an
+	 * {@link EmbeddedChannel} runs.
+	 */
+	public static class BenchReport {
+		private long startNanos;
+		private long elapsedNanos;
+		private long startAllocated;
+		private long allocated = -1;
+		private long startGcCount;
+		private long startGcTime;
+		private long gcCount;
+		private long gcTime;
+		private long packets;
+
+		public void start() {
+			startNanos = System.nanoTime();
+			startAllocated = getAllocatedBytes();
+			startGcCount = totalGcCount();
+			startGcTime = totalGcTime();
+		}
+
+		public void stop(final long packets) {
+			final long endAllocated = getAllocatedBytes();
+
+			this.elapsedNanos = System.nanoTime() - startNanos;
+			this.allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+			this.gcCount = totalGcCount() - startGcCount;
+			this.gcTime = totalGcTime() - startGcTime;
+			this.packets = packets;
+		}
+
+		public long getPackets() {
+			return packets;
+		}
+
+		public double getPacketsPerSecond() {
+			return elapsedNanos == 0 ? 0 : packets * 1e9 / elapsedNanos;
+		}
+
+		// Bytes allocated per packet, or -1 if the JVM can't measure thread allocation.
+		public long getAllocatedPerPacket() {
+			return allocated < 0 || packets == 0 ? -1 : allocated / packets;
+		}
+
+		public long getGcCount() {
+			return gcCount;
+		}
+
+		public long getGcTimeMillis() {
+			return gcTime;
+		}
+
+		public void print(final java.io.PrintStream out, final LatencyHistogram packetLatency,
+				final Map<String, LatencyHistogram> listenerLatencies) {
+			out.printf(Locale.ROOT, "%d packets in %.1f ms (%.0f packets/s)%n", packets, elapsedNanos / 1e6,
+					getPacketsPerSecond());
+			out.printf(Locale.ROOT, "Allocated per packet: %d bytes, GC: %d collections, %d ms%n",
+					getAllocatedPerPacket(), gcCount, gcTime);
+			printLatency(out, "pipeline", packetLatency);
+
+			for (final Map.Entry<String, LatencyHistogram> entry : listenerLatencies.entrySet()) {
+				printLatency(out, entry.getKey(), entry.getValue());
+			}
+		}
+
+		static void printLatency(final java.io.PrintStream out, final String name, final LatencyHistogram latency) {
+			out.printf(Locale.ROOT, "%-48s count=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n", name,
+					latency.getCount(), latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+					latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3);
+		}
+
+		private static long getAllocatedBytes() {
+			final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+			if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+				final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+				if (sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+					sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+					return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+				}
+			}
+
+			return -1;
+		}
+
+		static long totalGcCount() {
+			long count = 0;
+
+			for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, gc.getCollectionCount());
+			}
+
+			return count;
+		}
+
+		static long totalGcTime() {
+			long time = 0;
+
+			for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				time += Math.max(0, gc.getCollectionTime());
+			}
+
+			return time;
+		}
+	}
+}
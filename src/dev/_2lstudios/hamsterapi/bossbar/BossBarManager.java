@@ -0,0 +1,138 @@
+package dev._2lstudios.hamsterapi.bossbar;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import dev._2lstudios.hamsterapi.utils.PacketFrame;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarFlag;
+import org.bukkit.boss.BarStyle;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Creates {@link HamsterBossBar}s and sends their changes once per tick. A
+ * packet shown to more than one viewer is encoded once and the same frame is
+ * written to every connection.
+ */
+public class BossBarManager {
+	private final BufferIO bufferIO;
+	private final BossBarPackets packets;
+	private final Set<HamsterBossBar> bossBars = ConcurrentHashMap.newKeySet();
+	// Bars changed since the last tick, each queued once
+	private final Queue<HamsterBossBar> dirtyBossBars = new ConcurrentLinkedQueue<>();
+
+	public BossBarManager(final Reflection reflection, final BufferIO bufferIO) {
+		this.bufferIO = bufferIO;
+		this.packets = createPackets(reflection);
+
+		if (packets != null) {
+			FoliaAPI.runTaskTimer(ignored -> flush(), 1L, 1L);
+		}
+	}
+
+	private static BossBarPackets createPackets(final Reflection reflection) {
+		try {
+			return new BossBarPackets(reflection);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			Debug.warn("Boss bars are not supported on this server: " + e.getMessage());
+			return null;
+		}
+	}
+
+	// False on servers without boss bars (1.8) or with an unknown packet layout
+	public boolean isSupported() {
+		return packets != null;
+	}
+
+	public HamsterBossBar createBossBar(final String title, final BarColor color, final BarStyle style,
+			final BarFlag... flags) {
+		final HamsterBossBar bossBar = new HamsterBossBar(this, title, color, style, flags);
+
+		bossBars.add(bossBar);
+		return bossBar;
+	}
+
+	public Set<HamsterBossBar> getBossBars() {
+		return Collections.unmodifiableSet(bossBars);
+	}
+
+	// Forgets a player that left in every bar, without sending anything
+	public void removeViewer(final HamsterPlayer hamsterPlayer) {
+		for (final HamsterBossBar bossBar : bossBars) {
+			bossBar.forget(hamsterPlayer);
+		}
+	}
+
+	// Destroys every bar and sends the removals right away, used before the plugin disables
+	public void removeAll() {
+		for (final HamsterBossBar bossBar : bossBars) {
+			bossBar.destroy();
+		}
+
+		flush();
+	}
+
+	void queue(final HamsterBossBar bossBar) {
+		if (packets != null) {
+			dirtyBossBars.add(bossBar);
+		}
+	}
+
+	void unregister(final HamsterBossBar bossBar) {
+		bossBars.remove(bossBar);
+	}
+
+	private void flush() {
+		HamsterBossBar bossBar;
+
+		while ((bossBar = dirtyBossBars.poll()) != null) {
+			try {
+				bossBar.flush(packets);
+			} catch (final Exception e) {
+				Debug.warn("Failed to update boss bar " + bossBar.getUniqueId() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	void send(final Object packet, final Collection<HamsterPlayer> viewers) {
+		final PacketFrame frame = viewers.size() > 1 ? encode(packet) : null;
+
+		if (frame == null) {
+			for (final HamsterPlayer viewer : viewers) {
+				viewer.sendPacket(packet);
+			}
+			return;
+		}
+
+		try {
+			for (final HamsterPlayer viewer : viewers) {
+				try {
+					frame.writeTo(viewer);
+				} catch (final Exception e) {
+					viewer.sendPacket(packet);
+				}
+			}
+		} finally {
+			frame.release();
+		}
+	}
+
+	private PacketFrame encode(final Object packet) {
+		try {
+			return PacketFrame.of(bufferIO, packet, ProtocolState.PLAY);
+		} catch (final Exception e) {
+			// No protocol table for this server, every viewer encodes it instead
+			Debug.warn("Failed to encode boss bar packet once: " + e.getMessage());
+			return null;
+		}
+	}
+}
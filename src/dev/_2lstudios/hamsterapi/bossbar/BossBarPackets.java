@@ -0,0 +1,287 @@
+package dev._2lstudios.hamsterapi.bossbar;
+
+import dev._2lstudios.hamsterapi.utils.FieldAccessor;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarFlag;
+import org.bukkit.boss.BarStyle;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Builds boss bar packets carrying a single operation, so an update only sends
+ * the properties that changed.
+ * <p>
+ * 1.9-1.16 PacketPlayOutBoss is a bag of fields tagged with an action enum.
+ * 1.17+ ClientboundBossEventPacket holds an operation object instead, built
+ * through the constructor of each operation class, found by its parameter
+ * types since the class names are obfuscated.
+ */
+class BossBarPackets {
+	// Bit of each BarFlag in the flags of a bar
+	static final int DARKEN_SKY = 1, PLAY_BOSS_MUSIC = 2, CREATE_FOG = 4;
+
+	private final Reflection reflection;
+	private final Object[] colors;
+	private final Object[] styles;
+	// 1.9-1.16
+	private final Constructor<?> emptyConstructor;
+	private final Object[] actions;
+	private final FieldAccessor idField, actionField, titleField, progressField, colorField, styleField;
+	private final FieldAccessor[] flagFields;
+	// 1.17+
+	private final Constructor<?> packetConstructor, addConstructor, progressConstructor, titleConstructor,
+			styleConstructor, propertiesConstructor, eventConstructor;
+	private final Object removeOperation;
+	private final FieldAccessor eventProgressField;
+	private final FieldAccessor[] eventFlagFields;
+
+	BossBarPackets(final Reflection reflection) throws ReflectiveOperationException {
+		final Class<?> packetClass = reflection.getPacketPlayOutBoss();
+		final Class<?> bossBattleClass = reflection.getBossBattle();
+		final Class<?> componentClass = reflection.getIChatBaseComponent();
+
+		if (packetClass == null || bossBattleClass == null || componentClass == null) {
+			throw new ClassNotFoundException("Boss bar packets are not available on this version");
+		}
+
+		final Class<?> colorClass = findEnum(bossBattleClass, BarColor.values().length);
+		final Class<?> styleClass = findEnum(bossBattleClass, BarStyle.values().length);
+
+		this.reflection = reflection;
+		this.colors = colorClass.getEnumConstants();
+		this.styles = styleClass.getEnumConstants();
+
+		if (reflection.getFieldAccessor(packetClass, float.class) != null) {
+			final Class<?> actionClass = findEnum(packetClass, 6);
+
+			this.emptyConstructor = accessible(packetClass.getDeclaredConstructor());
+			this.actions = actionClass.getEnumConstants();
+			this.idField = reflection.getFieldAccessor(packetClass, UUID.class);
+			this.actionField = reflection.getFieldAccessor(packetClass, actionClass);
+			this.titleField = reflection.getFieldAccessor(packetClass, componentClass);
+			this.progressField = reflection.getFieldAccessor(packetClass, float.class);
+			this.colorField = reflection.getFieldAccessor(packetClass, colorClass);
+			this.styleField = reflection.getFieldAccessor(packetClass, styleClass);
+			this.flagFields = flagFields(packetClass);
+			this.packetConstructor = null;
+			this.addConstructor = null;
+			this.progressConstructor = null;
+			this.titleConstructor = null;
+			this.styleConstructor = null;
+			this.propertiesConstructor = null;
+			this.eventConstructor = null;
+			this.removeOperation = null;
+			this.eventProgressField = null;
+			this.eventFlagFields = null;
+		} else {
+			final Class<?> operationClass = findOperationClass(packetClass);
+			final Class<?> bossBattleServerClass = reflection.getBossBattleServer();
+
+			if (bossBattleServerClass == null) {
+				throw new ClassNotFoundException("ServerBossEvent");
+			}
+
+			this.emptyConstructor = null;
+			this.actions = null;
+			this.idField = null;
+			this.actionField = null;
+			this.titleField = null;
+			this.progressField = null;
+			this.colorField = null;
+			this.styleField = null;
+			this.flagFields = null;
+			this.packetConstructor = accessible(packetClass.getDeclaredConstructor(UUID.class, operationClass));
+			this.addConstructor = findOperation(packetClass, bossBattleClass);
+			this.progressConstructor = findOperation(packetClass, float.class);
+			this.titleConstructor = findOperation(packetClass, componentClass);
+			this.styleConstructor = findOperation(packetClass, colorClass, styleClass);
+			this.propertiesConstructor = findOperation(packetClass, boolean.class, boolean.class, boolean.class);
+			this.eventConstructor = accessible(
+					bossBattleServerClass.getDeclaredConstructor(componentClass, colorClass, styleClass));
+			this.removeOperation = findStaticValue(packetClass, operationClass);
+			this.eventProgressField = reflection.getFieldAccessor(bossBattleClass, float.class);
+			this.eventFlagFields = flagFields(bossBattleClass);
+		}
+	}
+
+	Object add(final UUID id, final String title, final float progress, final BarColor color, final BarStyle style,
+			final int flags) throws ReflectiveOperationException {
+		if (emptyConstructor != null) {
+			final Object packet = legacyPacket(id, 0);
+
+			titleField.set(packet, reflection.toChatBaseComponent(title));
+			progressField.set(packet, progress);
+			colorField.set(packet, colors[color.ordinal()]);
+			styleField.set(packet, styles[style.ordinal()]);
+			setFlags(flagFields, packet, flags);
+			return packet;
+		}
+
+		// The add operation copies everything from a boss event
+		final Object event = eventConstructor.newInstance(reflection.toChatBaseComponent(title),
+				colors[color.ordinal()], styles[style.ordinal()]);
+
+		eventProgressField.set(event, progress);
+		setFlags(eventFlagFields, event, flags);
+		return packetConstructor.newInstance(id, addConstructor.newInstance(event));
+	}
+
+	Object remove(final UUID id) throws ReflectiveOperationException {
+		return emptyConstructor != null ? legacyPacket(id, 1) : packetConstructor.newInstance(id, removeOperation);
+	}
+
+	Object progress(final UUID id, final float progress) throws ReflectiveOperationException {
+		if (emptyConstructor != null) {
+			final Object packet = legacyPacket(id, 2);
+
+			progressField.set(packet, progress);
+			return packet;
+		}
+
+		return packetConstructor.newInstance(id, progressConstructor.newInstance(progress));
+	}
+
+	Object title(final UUID id, final String title) throws ReflectiveOperationException {
+		final Object component = reflection.toChatBaseComponent(title);
+
+		if (emptyConstructor != null) {
+			final Object packet = legacyPacket(id, 3);
+
+			titleField.set(packet, component);
+			return packet;
+		}
+
+		return packetConstructor.newInstance(id, titleConstructor.newInstance(component));
+	}
+
+	Object style(final UUID id, final BarColor color, final BarStyle style) throws ReflectiveOperationException {
+		if (emptyConstructor != null) {
+			final Object packet = legacyPacket(id, 4);
+
+			colorField.set(packet, colors[color.ordinal()]);
+			styleField.set(packet, styles[style.ordinal()]);
+			return packet;
+		}
+
+		return packetConstructor.newInstance(id,
+				styleConstructor.newInstance(colors[color.ordinal()], styles[style.ordinal()]));
+	}
+
+	Object properties(final UUID id, final int flags) throws ReflectiveOperationException {
+		if (emptyConstructor != null) {
+			final Object packet = legacyPacket(id, 5);
+
+			setFlags(flagFields, packet, flags);
+			return packet;
+		}
+
+		return packetConstructor.newInstance(id, propertiesConstructor.newInstance((flags & DARKEN_SKY) != 0,
+				(flags & PLAY_BOSS_MUSIC) != 0, (flags & CREATE_FOG) != 0));
+	}
+
+	static int toFlags(final BarFlag... barFlags) {
+		int flags = 0;
+
+		for (final BarFlag barFlag : barFlags) {
+			flags |= toFlag(barFlag);
+		}
+
+		return flags;
+	}
+
+	static int toFlag(final BarFlag barFlag) {
+		switch (barFlag) {
+			case DARKEN_SKY:
+				return DARKEN_SKY;
+			case PLAY_BOSS_MUSIC:
+				return PLAY_BOSS_MUSIC;
+			default:
+				return CREATE_FOG;
+		}
+	}
+
+	private Object legacyPacket(final UUID id, final int action) throws ReflectiveOperationException {
+		final Object packet = emptyConstructor.newInstance();
+
+		idField.set(packet, id);
+		actionField.set(packet, actions[action]);
+		return packet;
+	}
+
+	// Darken sky, play music and create fog, declared in that order on every version
+	private FieldAccessor[] flagFields(final Class<?> owner) throws NoSuchFieldException {
+		final FieldAccessor[] fields = new FieldAccessor[3];
+
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = reflection.getFieldAccessor(owner, boolean.class, i);
+
+			if (fields[i] == null) {
+				throw new NoSuchFieldException("Boss bar flag " + i + " in " + owner.getSimpleName());
+			}
+		}
+
+		return fields;
+	}
+
+	private static void setFlags(final FieldAccessor[] fields, final Object target, final int flags) {
+		fields[0].set(target, (flags & DARKEN_SKY) != 0);
+		fields[1].set(target, (flags & PLAY_BOSS_MUSIC) != 0);
+		fields[2].set(target, (flags & CREATE_FOG) != 0);
+	}
+
+	private static Class<?> findEnum(final Class<?> owner, final int constants) throws ClassNotFoundException {
+		for (final Class<?> nestedClass : owner.getDeclaredClasses()) {
+			if (nestedClass.isEnum() && nestedClass.getEnumConstants().length == constants) {
+				return nestedClass;
+			}
+		}
+
+		throw new ClassNotFoundException("Enum with " + constants + " constants in " + owner.getSimpleName());
+	}
+
+	// The packet's only instance field besides the bar id
+	private static Class<?> findOperationClass(final Class<?> packetClass) throws NoSuchFieldException {
+		for (final Field field : packetClass.getDeclaredFields()) {
+			if (!Modifier.isStatic(field.getModifiers()) && field.getType() != UUID.class) {
+				return field.getType();
+			}
+		}
+
+		throw new NoSuchFieldException("Boss bar operation in " + packetClass.getSimpleName());
+	}
+
+	private static Constructor<?> findOperation(final Class<?> packetClass, final Class<?>... parameterTypes)
+			throws NoSuchMethodException {
+		for (final Class<?> nestedClass : packetClass.getDeclaredClasses()) {
+			for (final Constructor<?> constructor : nestedClass.getDeclaredConstructors()) {
+				if (Arrays.equals(constructor.getParameterTypes(), parameterTypes)) {
+					return accessible(constructor);
+				}
+			}
+		}
+
+		throw new NoSuchMethodException("Boss bar operation " + Arrays.toString(parameterTypes));
+	}
+
+	private static Object findStaticValue(final Class<?> owner, final Class<?> type)
+			throws ReflectiveOperationException {
+		for (final Field field : owner.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers()) && type.isAssignableFrom(field.getType())) {
+				field.setAccessible(true);
+				return field.get(null);
+			}
+		}
+
+		throw new NoSuchFieldException(type.getSimpleName() + " constant in " + owner.getSimpleName());
+	}
+
+	private static <T> Constructor<T> accessible(final Constructor<T> constructor) {
+		constructor.setAccessible(true);
+		return constructor;
+	}
+}
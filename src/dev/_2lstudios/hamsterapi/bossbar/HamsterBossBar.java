@@ -0,0 +1,218 @@
+package dev._2lstudios.hamsterapi.bossbar;
+
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarFlag;
+import org.bukkit.boss.BarStyle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A boss bar driven by packets. Changes are only recorded when made and sent
+ * on the next tick, so a bar changed many times in a tick sends one update,
+ * with only the properties that differ from what its viewers have.
+ */
+public class HamsterBossBar {
+	private final BossBarManager bossBarManager;
+	private final UUID uniqueId = UUID.randomUUID();
+	// Everything below is guarded by this
+	private final Set<HamsterPlayer> viewers = new HashSet<>();
+	private final Set<HamsterPlayer> addedViewers = new HashSet<>();
+	private final Set<HamsterPlayer> removedViewers = new HashSet<>();
+	private String title;
+	private float progress = 1.0F;
+	private BarColor color;
+	private BarStyle style;
+	private int flags;
+	// State the viewers already have, as of the last flush
+	private String sentTitle;
+	private float sentProgress = 1.0F;
+	private BarColor sentColor;
+	private BarStyle sentStyle;
+	private int sentFlags;
+	private boolean queued = false;
+	private boolean destroyed = false;
+
+	HamsterBossBar(final BossBarManager bossBarManager, final String title, final BarColor color,
+			final BarStyle style, final BarFlag... flags) {
+		this.bossBarManager = bossBarManager;
+		this.title = this.sentTitle = title == null ? "" : title;
+		// Checked here, a null would only fail later when the packets are built
+		this.color = this.sentColor = Objects.requireNonNull(color, "color");
+		this.style = this.sentStyle = Objects.requireNonNull(style, "style");
+		this.flags = this.sentFlags = BossBarPackets.toFlags(flags);
+	}
+
+	public UUID getUniqueId() {
+		return uniqueId;
+	}
+
+	public synchronized String getTitle() {
+		return title;
+	}
+
+	public synchronized void setTitle(final String title) {
+		this.title = title == null ? "" : title;
+		markDirty();
+	}
+
+	public synchronized float getProgress() {
+		return progress;
+	}
+
+	// From 0 to 1, out of range values are clamped
+	public synchronized void setProgress(final float progress) {
+		this.progress = Math.max(0.0F, Math.min(1.0F, progress));
+		markDirty();
+	}
+
+	public synchronized BarColor getColor() {
+		return color;
+	}
+
+	public synchronized void setColor(final BarColor color) {
+		this.color = Objects.requireNonNull(color, "color");
+		markDirty();
+	}
+
+	public synchronized BarStyle getStyle() {
+		return style;
+	}
+
+	public synchronized void setStyle(final BarStyle style) {
+		this.style = Objects.requireNonNull(style, "style");
+		markDirty();
+	}
+
+	public synchronized boolean hasFlag(final BarFlag flag) {
+		return (flags & BossBarPackets.toFlag(flag)) != 0;
+	}
+
+	public synchronized void addFlag(final BarFlag flag) {
+		this.flags |= BossBarPackets.toFlag(flag);
+		markDirty();
+	}
+
+	public synchronized void removeFlag(final BarFlag flag) {
+		this.flags &= ~BossBarPackets.toFlag(flag);
+		markDirty();
+	}
+
+	public synchronized void addViewer(final HamsterPlayer hamsterPlayer) {
+		if (!destroyed && viewers.add(hamsterPlayer)) {
+			// Still showing the bar if it was removed during this tick
+			if (!removedViewers.remove(hamsterPlayer)) {
+				addedViewers.add(hamsterPlayer);
+			}
+
+			markDirty();
+		}
+	}
+
+	public synchronized void removeViewer(final HamsterPlayer hamsterPlayer) {
+		if (viewers.remove(hamsterPlayer)) {
+			if (!addedViewers.remove(hamsterPlayer)) {
+				removedViewers.add(hamsterPlayer);
+			}
+
+			markDirty();
+		}
+	}
+
+	public synchronized boolean isViewer(final HamsterPlayer hamsterPlayer) {
+		return viewers.contains(hamsterPlayer);
+	}
+
+	public synchronized Set<HamsterPlayer> getViewers() {
+		return Collections.unmodifiableSet(new HashSet<>(viewers));
+	}
+
+	// Hides the bar from every viewer, it can't be shown again
+	public synchronized void destroy() {
+		for (final HamsterPlayer viewer : new ArrayList<>(viewers)) {
+			removeViewer(viewer);
+		}
+
+		destroyed = true;
+		bossBarManager.unregister(this);
+	}
+
+	public synchronized boolean isDestroyed() {
+		return destroyed;
+	}
+
+	// Drops a viewer that left, its client no longer has the bar
+	synchronized void forget(final HamsterPlayer hamsterPlayer) {
+		viewers.remove(hamsterPlayer);
+		addedViewers.remove(hamsterPlayer);
+		removedViewers.remove(hamsterPlayer);
+	}
+
+	private void markDirty() {
+		if (!queued) {
+			queued = true;
+			bossBarManager.queue(this);
+		}
+	}
+
+	// Sends what changed since the last flush, called once per tick by the manager
+	void flush(final BossBarPackets packets) throws ReflectiveOperationException {
+		final List<Object> updates = new ArrayList<>(4);
+		final List<HamsterPlayer> existing, added, removed;
+		final Object addPacket;
+
+		synchronized (this) {
+			queued = false;
+			existing = new ArrayList<>(viewers);
+			existing.removeAll(addedViewers);
+
+			// Viewers added this tick get the whole state in the add packet
+			if (!existing.isEmpty()) {
+				if (!title.equals(sentTitle)) {
+					updates.add(packets.title(uniqueId, title));
+				}
+
+				if (Float.compare(progress, sentProgress) != 0) {
+					updates.add(packets.progress(uniqueId, progress));
+				}
+
+				if (color != sentColor || style != sentStyle) {
+					updates.add(packets.style(uniqueId, color, style));
+				}
+
+				if (flags != sentFlags) {
+					updates.add(packets.properties(uniqueId, flags));
+				}
+			}
+
+			added = new ArrayList<>(addedViewers);
+			removed = new ArrayList<>(removedViewers);
+			addPacket = added.isEmpty() ? null : packets.add(uniqueId, title, progress, color, style, flags);
+			addedViewers.clear();
+			removedViewers.clear();
+			sentTitle = title;
+			sentProgress = progress;
+			sentColor = color;
+			sentStyle = style;
+			sentFlags = flags;
+		}
+
+		if (!removed.isEmpty()) {
+			bossBarManager.send(packets.remove(uniqueId), removed);
+		}
+
+		for (final Object update : updates) {
+			bossBarManager.send(update, existing);
+		}
+
+		if (addPacket != null) {
+			bossBarManager.send(addPacket, added);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package dev._2lstudios.hamsterapi.capture;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads the records of a {@link PacketCapture} ring file, oldest first.
+ * <p>
+ * Can be run standalone to print packet summaries:
+ * {@code java -cp HamsterAPI.jar:netty.jar dev._2lstudios.hamsterapi.capture.CaptureReader capture.bin}
+ */
+public class CaptureReader {
+	public static List<CaptureRecord> read(final File file) throws IOException {
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			final ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					randomAccessFile.length());
+
+			if (buffer.getInt(0) != PacketCapture.MAGIC) {
+				throw new IOException(file + " is not a HamsterAPI capture file");
+			}
+
+			if (buffer.getInt(4) != PacketCapture.VERSION) {
+				throw new IOException("Unsupported capture file version " + buffer.getInt(4));
+			}
+
+			final int segmentCount = buffer.getInt(8);
+			final int segmentSize = buffer.getInt(12);
+			final List<CaptureRecord> records = new ArrayList<>();
+
+			for (int i = 0; i < segmentCount; i++) {
+				readSegment(buffer, PacketCapture.FILE_HEADER + i * segmentSize, segmentSize, records);
+			}
+
+			// Segments are independent rings, merge them back into one timeline.
+			records.sort(Comparator.comparingLong(CaptureRecord::getTime));
+			return records;
+		}
+	}
+
+	private static void readSegment(final ByteBuffer buffer, final int base, final int segmentSize,
+			final List<CaptureRecord> records) {
+		final int capacity = segmentSize - PacketCapture.SEGMENT_HEADER;
+		final int writePosition = buffer.getInt(base);
+		final int tailPosition = buffer.getInt(base + 4);
+		final boolean wrapped = buffer.getInt(base + 8) == 1;
+		final int data = base + PacketCapture.SEGMENT_HEADER;
+
+		if (wrapped && tailPosition != -1) {
+			readRecords(buffer, data, tailPosition, capacity, records);
+		}
+
+		readRecords(buffer, data, 0, Math.min(writePosition, capacity), records);
+	}
+
+	private static void readRecords(final ByteBuffer buffer, final int data, int position, final int end,
+			final List<CaptureRecord> records) {
+		final PacketDirection[] directions = PacketDirection.values();
+
+		while (end - position >= PacketCapture.RECORD_HEADER) {
+			final int offset = data + position;
+			final int length = buffer.getInt(offset);
+
+			if (length < PacketCapture.RECORD_HEADER || position + length > end) {
+				return;
+			}
+
+			final long time = buffer.getLong(offset + 4);
+			final int direction = buffer.get(offset + 12);
+			final UUID uuid = new UUID(buffer.getLong(offset + 13), buffer.getLong(offset + 21));
+			final byte[] frame = new byte[length - PacketCapture.RECORD_HEADER];
+			final ByteBuffer frameBuffer = buffer.duplicate();
+
+			frameBuffer.position(offset + PacketCapture.RECORD_HEADER);
+			frameBuffer.get(frame);
+
+			if (direction >= 0 && direction < directions.length) {
+				records.add(new CaptureRecord(time, directions[direction], uuid, frame));
+			}
+
+			position += length;
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: CaptureReader <capture file>");
+			return;
+		}
+
+		for (final CaptureRecord record : read(new File(args[0]))) {
+			System.out.println(record);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package dev._2lstudios.hamsterapi.capture;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.ProtocolTable;
+import io.netty.buffer.Unpooled;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A frame read back from a capture file. The frame holds the uncompressed
+ * packet id and body, exactly as HamsterAPI saw it in the pipeline.
+ */
+public class CaptureRecord {
+	private final long time;
+	private final PacketDirection direction;
+	private final UUID uuid;
+	private final byte[] frame;
+
+	public CaptureRecord(final long time, final PacketDirection direction, final UUID uuid, final byte[] frame) {
+		this.time = time;
+		this.direction = direction;
+		this.uuid = uuid;
+		this.frame = frame;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public PacketDirection getDirection() {
+		return direction;
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	public byte[] getFrame() {
+		return frame;
+	}
+
+	// Returns the packet id of the frame, or -1 if it is empty or malformed.
+	public int getPacketId() {
+		try {
+			return BufferIO.readVarInt(Unpooled.wrappedBuffer(frame));
+		} catch (final RuntimeException e) {
+			return -1;
+		}
+	}
+
+	// One line summary of the record, naming the packet when a matching table is given.
+	public String toSummary(final ProtocolTable table) {
+		final int id = getPacketId();
+		final Class<?> packetClass = table == null ? null : table.getPacketClass(id);
+		final String name = packetClass == null ? String.format("id=0x%02X", id) : packetClass.getSimpleName();
+
+		return new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(time)) + " "
+				+ (direction == PacketDirection.SERVERBOUND ? "IN " : "OUT") + " " + uuid + " " + name + " "
+				+ frame.length + "B";
+	}
+
+	@Override
+	public String toString() {
+		return toSummary(null);
+	}
+}
@@ -0,0 +1,232 @@
+package dev._2lstudios.hamsterapi.capture;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends raw packet frames to a memory-mapped, fixed-size ring file.
+ * <p>
+ * The file is split into segments and every writing thread (normally a Netty
+ * event loop) claims one for itself, so appending never locks: each segment
+ * has a single writer and its own write cursor. When a segment is full the
+ * oldest records of that segment are overwritten. Frames of threads that could
+ * not claim a segment are dropped and counted. An existing file is kept as
+ * {@code <name>.1} before a new one is mapped.
+ * <p>
+ * Layout: file header, then per segment a 16 byte header (write position,
+ * oldest record position, wrapped flag) followed by records of
+ * [int length][long time][byte direction][long uuid msb][long uuid lsb][frame].
+ */
+public class PacketCapture {
+	static final int MAGIC = 0x48415043; // "HAPC"
+	static final int VERSION = 1;
+	static final int FILE_HEADER = 16;
+	static final int SEGMENT_HEADER = 16;
+	static final int RECORD_HEADER = 4 + 8 + 1 + 8 + 8;
+	// Length value marking the end of a lap inside a segment.
+	static final int WRAP = -1;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer mappedBuffer;
+	private final int segmentCount;
+	private final int segmentSize;
+	private final AtomicInteger claimedSegments = new AtomicInteger();
+	private final ThreadLocal<Segment> segments = ThreadLocal.withInitial(this::claimSegment);
+	private final Set<UUID> capturedPlayers = ConcurrentHashMap.newKeySet();
+	private final LongAdder dropped = new LongAdder();
+	private volatile boolean global = false;
+
+	public PacketCapture(final File file, final long fileSize, final int segmentCount) throws IOException {
+		// A single mapping is limited to 2 GB
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Capture file of " + fileSize + " bytes is larger than "
+					+ Integer.MAX_VALUE + " bytes");
+		}
+
+		this.file = file;
+		this.segmentCount = segmentCount;
+		this.segmentSize = (int) ((fileSize - FILE_HEADER) / segmentCount);
+
+		if (segmentSize <= SEGMENT_HEADER + RECORD_HEADER) {
+			throw new IllegalArgumentException("Capture file of " + fileSize + " bytes is too small for "
+					+ segmentCount + " segments");
+		}
+
+		final File parent = file.getAbsoluteFile().getParentFile();
+
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+
+		keepPrevious(file);
+
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.setLength(fileSize);
+		this.mappedBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+		mappedBuffer.putInt(0, MAGIC);
+		mappedBuffer.putInt(4, VERSION);
+		mappedBuffer.putInt(8, segmentCount);
+		mappedBuffer.putInt(12, segmentSize);
+	}
+
+	// Moves an earlier capture to <name>.1 so a restart does not wipe it, replacing an older .1.
+	private static void keepPrevious(final File file) throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			return;
+		}
+
+		final File previous = new File(file.getPath() + ".1");
+
+		if (previous.exists() && !previous.delete()) {
+			throw new IOException("Could not delete " + previous);
+		}
+
+		if (!file.renameTo(previous)) {
+			throw new IOException("Could not move " + file + " to " + previous);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean isGlobal() {
+		return global;
+	}
+
+	// Captures every player when enabled.
+	public void setGlobal(final boolean global) {
+		this.global = global;
+	}
+
+	public void enable(final UUID uuid) {
+		capturedPlayers.add(uuid);
+	}
+
+	public void disable(final UUID uuid) {
+		capturedPlayers.remove(uuid);
+	}
+
+	public boolean isCapturing(final HamsterPlayer hamsterPlayer) {
+		return global || (!capturedPlayers.isEmpty()
+				&& capturedPlayers.contains(hamsterPlayer.getPlayer().getUniqueId()));
+	}
+
+	// Frames dropped because their thread had no segment or they did not fit in one.
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	// Appends the readable bytes of the frame without changing its reader index.
+	public void append(final PacketDirection direction, final UUID uuid, final ByteBuf frame) {
+		final Segment segment = segments.get();
+		final int length = RECORD_HEADER + frame.readableBytes();
+
+		if (segment == null || length > segment.capacity) {
+			dropped.increment();
+			return;
+		}
+
+		segment.append(direction, uuid, frame, length);
+	}
+
+	public void close() throws IOException {
+		mappedBuffer.force();
+		randomAccessFile.close();
+	}
+
+	private Segment claimSegment() {
+		final int index = claimedSegments.getAndIncrement();
+
+		if (index >= segmentCount) {
+			return null;
+		}
+
+		final ByteBuffer duplicate = mappedBuffer.duplicate();
+
+		duplicate.position(FILE_HEADER + index * segmentSize);
+		duplicate.limit(FILE_HEADER + (index + 1) * segmentSize);
+
+		return new Segment(duplicate.slice());
+	}
+
+	// A region of the file written by a single thread.
+	private static final class Segment {
+		private final ByteBuffer buffer;
+		private final int capacity;
+		private int writePosition = 0;
+		// Oldest record of the previous lap still intact, -1 once that lap is fully overwritten.
+		private int tailPosition = -1;
+		private boolean wrapped = false;
+
+		private Segment(final ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.capacity = buffer.capacity() - SEGMENT_HEADER;
+		}
+
+		private void append(final PacketDirection direction, final UUID uuid, final ByteBuf frame, final int length) {
+			if (writePosition + length > capacity) {
+				if (capacity - writePosition >= 4) {
+					buffer.putInt(SEGMENT_HEADER + writePosition, WRAP);
+				}
+
+				writePosition = 0;
+				tailPosition = 0;
+				wrapped = true;
+			}
+
+			if (wrapped) {
+				skipOverwrittenRecords(writePosition + length);
+			}
+
+			final int offset = SEGMENT_HEADER + writePosition;
+
+			buffer.putInt(offset, length);
+			buffer.putLong(offset + 4, System.currentTimeMillis());
+			buffer.put(offset + 12, (byte) direction.ordinal());
+			buffer.putLong(offset + 13, uuid.getMostSignificantBits());
+			buffer.putLong(offset + 21, uuid.getLeastSignificantBits());
+			buffer.position(offset + RECORD_HEADER);
+			frame.getBytes(frame.readerIndex(), buffer);
+
+			writePosition += length;
+
+			buffer.putInt(0, writePosition);
+			buffer.putInt(4, tailPosition);
+			buffer.putInt(8, wrapped ? 1 : 0);
+		}
+
+		private void skipOverwrittenRecords(final int end) {
+			while (tailPosition != -1 && tailPosition < end) {
+				final int recordLength = capacity - tailPosition >= 4
+						? buffer.getInt(SEGMENT_HEADER + tailPosition)
+						: WRAP;
+
+				if (recordLength <= 0) {
+					tailPosition = -1;
+				} else {
+					tailPosition += recordLength;
+
+					if (tailPosition >= capacity) {
+						tailPosition = -1;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package dev._2lstudios.hamsterapi.channels;
+
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire format of custom channel messages, inside the plugin message payload:
+ * <p>
+ * {@code [byte flags][if chunked: VarInt messageId, VarInt chunkIndex, VarInt chunkCount][body]}
+ * <p>
+ * The body is one message, or with {@link #FLAG_BATCH} a VarInt count followed
+ * by VarInt length prefixed messages. With {@link #FLAG_COMPRESSED} the body is
+ * deflated. Bodies too large for one frame are split in chunks sharing the
+ * message id, and reassembled by {@link MessageAssembler}.
+ */
+public class ChannelFraming {
+	public static final int FLAG_COMPRESSED = 1;
+	public static final int FLAG_CHUNKED = 2;
+	public static final int FLAG_BATCH = 4;
+	// Fits the serverbound custom payload limit (32767) of every version
+	public static final int MAX_FRAME_SIZE = 32000;
+	// Flags plus three VarInts
+	static final int MAX_HEADER_SIZE = 1 + 5 * 3;
+
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+	/**
+	 * Encodes one message, or several as a batch, into frames of at most
+	 * maxFrameSize bytes.
+	 *
+	 * @param messageId id shared by the chunks, only used if the body needs chunking.
+	 * @param compress  deflates the body, kept only if it gets smaller.
+	 */
+	public static List<byte[]> encode(final List<byte[]> messages, final int messageId, final boolean compress,
+			final int maxFrameSize) {
+		int flags = 0;
+		byte[] body;
+
+		if (messages.size() == 1) {
+			body = messages.get(0);
+		} else {
+			body = encodeBatch(messages);
+			flags |= FLAG_BATCH;
+		}
+
+		if (compress) {
+			final byte[] deflated = deflate(body);
+
+			if (deflated.length < body.length) {
+				body = deflated;
+				flags |= FLAG_COMPRESSED;
+			}
+		}
+
+		if (1 + body.length <= maxFrameSize) {
+			final byte[] frame = new byte[1 + body.length];
+
+			frame[0] = (byte) flags;
+			System.arraycopy(body, 0, frame, 1, body.length);
+			return Collections.singletonList(frame);
+		}
+
+		final int chunkSize = maxFrameSize - MAX_HEADER_SIZE;
+		final int chunkCount = (body.length + chunkSize - 1) / chunkSize;
+		final List<byte[]> frames = new ArrayList<>(chunkCount);
+
+		for (int i = 0; i < chunkCount; i++) {
+			final int offset = i * chunkSize;
+			final int length = Math.min(chunkSize, body.length - offset);
+			final ByteBuf frame = Unpooled.buffer(MAX_HEADER_SIZE + length);
+
+			frame.writeByte(flags | FLAG_CHUNKED);
+			BufferIO.writeVarInt(frame, messageId);
+			BufferIO.writeVarInt(frame, i);
+			BufferIO.writeVarInt(frame, chunkCount);
+			frame.writeBytes(body, offset, length);
+			frames.add(toArray(frame));
+		}
+
+		return frames;
+	}
+
+	// Size a message adds to a batch body
+	static int batchedSize(final byte[] message) {
+		return varIntSize(message.length) + message.length;
+	}
+
+	static int varIntSize(final int value) {
+		int size = 1;
+
+		for (int remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+			size++;
+		}
+
+		return size;
+	}
+
+	private static byte[] encodeBatch(final List<byte[]> messages) {
+		int size = varIntSize(messages.size());
+
+		for (final byte[] message : messages) {
+			size += batchedSize(message);
+		}
+
+		final ByteBuf body = Unpooled.buffer(size);
+
+		BufferIO.writeVarInt(body, messages.size());
+
+		for (final byte[] message : messages) {
+			BufferIO.writeVarInt(body, message.length);
+			body.writeBytes(message);
+		}
+
+		return toArray(body);
+	}
+
+	// Splits a batch body, every message must fit in it
+	static List<byte[]> decodeBatch(final byte[] body) throws IOException {
+		final ByteBuf in = Unpooled.wrappedBuffer(body);
+
+		try {
+			final int count = BufferIO.readVarInt(in);
+
+			if (count < 0 || count > in.readableBytes()) {
+				throw new IOException("Invalid batch size " + count);
+			}
+
+			final List<byte[]> messages = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+				final int length = BufferIO.readVarInt(in);
+
+				if (length < 0 || length > in.readableBytes()) {
+					throw new IOException("Invalid batched message length " + length);
+				}
+
+				final byte[] message = new byte[length];
+
+				in.readBytes(message);
+				messages.add(message);
+			}
+
+			return messages;
+		} catch (final RuntimeException e) {
+			throw new IOException("Malformed batch", e);
+		}
+	}
+
+	private static byte[] deflate(final byte[] input) {
+		final Deflater deflater = DEFLATER.get();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+		final byte[] buffer = new byte[8192];
+
+		deflater.setInput(input);
+		deflater.finish();
+
+		while (!deflater.finished()) {
+			output.write(buffer, 0, deflater.deflate(buffer));
+		}
+
+		deflater.reset();
+		return output.toByteArray();
+	}
+
+	// Inflates at most maxSize bytes, failing instead of allocating more
+	static byte[] inflate(final byte[] input, final int maxSize) throws IOException {
+		final Inflater inflater = INFLATER.get();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(maxSize, input.length * 4));
+		final byte[] buffer = new byte[8192];
+
+		try {
+			inflater.setInput(input);
+
+			while (!inflater.finished()) {
+				final int length = inflater.inflate(buffer);
+
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated compressed message");
+				}
+
+				if (output.size() + length > maxSize) {
+					throw new IOException("Compressed message exceeds " + maxSize + " bytes");
+				}
+
+				output.write(buffer, 0, length);
+			}
+
+			return output.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new IOException("Invalid compressed message", e);
+		} finally {
+			inflater.reset();
+		}
+	}
+
+	private static byte[] toArray(final ByteBuf byteBuf) {
+		if (byteBuf.hasArray() && byteBuf.arrayOffset() == 0 && byteBuf.readerIndex() == 0
+				&& byteBuf.array().length == byteBuf.writerIndex()) {
+			return byteBuf.array();
+		}
+
+		final byte[] bytes = new byte[byteBuf.readableBytes()];
+
+		byteBuf.readBytes(bytes);
+		return bytes;
+	}
+}
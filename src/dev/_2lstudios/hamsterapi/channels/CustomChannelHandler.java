@@ -0,0 +1,12 @@
+package dev._2lstudios.hamsterapi.channels;
+
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+
+public interface CustomChannelHandler {
+	/**
+	 * Called with every complete message received on the channel, already
+	 * reassembled and decompressed. Runs on the player's Netty thread, so heavy
+	 * work should be moved elsewhere.
+	 */
+	void onMessage(HamsterPlayer hamsterPlayer, String channel, byte[] message);
+}
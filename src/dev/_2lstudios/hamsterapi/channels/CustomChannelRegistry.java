@@ -0,0 +1,343 @@
+package dev._2lstudios.hamsterapi.channels;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.FieldAccessor;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Custom payload channels with transparent chunking, compression and per tick
+ * batching (see {@link ChannelFraming}).
+ * <p>
+ * Serverbound payloads of registered channels are taken out of the pipeline by
+ * {@link #handle(HamsterPlayer, Object)} and never reach Bukkit. Payloads of
+ * other channels only cost a class and a map lookup.
+ */
+public class CustomChannelRegistry {
+	private static final AttributeKey<Map<String, MessageAssembler>> ASSEMBLERS = AttributeKey
+			.valueOf("hapi_channel_assemblers");
+	// Keeps the channels advertised to the client, messages never reach it
+	private static final PluginMessageListener NO_OP_LISTENER = (channel, player, message) -> {
+	};
+
+	private final Plugin plugin;
+	private final Map<String, CustomChannelHandler> handlers = new ConcurrentHashMap<>();
+	private final Map<HamsterPlayer, Queue<OutboundMessage>> outboxes = new ConcurrentHashMap<>();
+	private final AtomicInteger messageIds = new AtomicInteger();
+	private final boolean compress;
+	private final int maxMessageSize;
+	private final int maxPendingMessages;
+	private final long reassemblyTimeout;
+	// Packet classes carrying custom payloads, by simple name so it works on every mapping
+	private final ClassValue<Boolean> payloadPackets = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			final String name = type.getSimpleName();
+
+			return name.equals("PacketPlayInCustomPayload") || name.equals("ServerboundCustomPayloadPacket");
+		}
+	};
+	private final ClassValue<Optional<PayloadAccessors>> payloadAccessors = new ClassValue<Optional<PayloadAccessors>>() {
+		@Override
+		protected Optional<PayloadAccessors> computeValue(final Class<?> type) {
+			return Optional.ofNullable(resolvePayloadAccessors(type));
+		}
+	};
+
+	public CustomChannelRegistry(final Plugin plugin) {
+		this.plugin = plugin;
+		this.compress = plugin.getConfig().getBoolean("channels.compress", true);
+		this.maxMessageSize = Math.max(1, plugin.getConfig().getInt("channels.max-message-size-kb", 4096)) * 1024;
+		this.maxPendingMessages = Math.max(1, plugin.getConfig().getInt("channels.max-pending-messages", 8));
+		this.reassemblyTimeout = Math.max(1L, plugin.getConfig().getLong("channels.reassembly-timeout-ms", 10000L));
+
+		FoliaAPI.runTaskTimer(ignored -> flush(), 1L, 1L);
+	}
+
+	public void register(final String channel, final CustomChannelHandler handler) {
+		if (handlers.putIfAbsent(channel, handler) != null) {
+			throw new IllegalArgumentException("Channel " + channel + " already has a handler");
+		}
+
+		plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, channel);
+		plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, channel, NO_OP_LISTENER);
+	}
+
+	public void unregister(final String channel) {
+		if (handlers.remove(channel) != null) {
+			plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin, channel);
+			plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin, channel);
+		}
+	}
+
+	public void unregisterAll() {
+		for (final String channel : new ArrayList<>(handlers.keySet())) {
+			unregister(channel);
+		}
+
+		outboxes.clear();
+	}
+
+	public boolean isRegistered(final String channel) {
+		return handlers.containsKey(channel);
+	}
+
+	public void send(final HamsterPlayer hamsterPlayer, final String channel, final byte[] message) {
+		send(hamsterPlayer, channel, message, compress);
+	}
+
+	/**
+	 * Queues a message, sent on the next tick together with the other messages
+	 * queued for the player. Messages of a channel are received in order.
+	 */
+	public void send(final HamsterPlayer hamsterPlayer, final String channel, final byte[] message,
+			final boolean compress) {
+		if (message.length > maxMessageSize) {
+			throw new IllegalArgumentException("Message exceeds " + maxMessageSize + " bytes");
+		}
+
+		outboxes.computeIfAbsent(hamsterPlayer, key -> new ConcurrentLinkedQueue<>())
+				.add(new OutboundMessage(channel, message, compress));
+	}
+
+	// Encodes and sends every queued message, runs every tick
+	private void flush() {
+		if (outboxes.isEmpty()) {
+			return;
+		}
+
+		final Iterator<Map.Entry<HamsterPlayer, Queue<OutboundMessage>>> iterator = outboxes.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+			final Map.Entry<HamsterPlayer, Queue<OutboundMessage>> entry = iterator.next();
+			final Player player = entry.getKey().getPlayer();
+
+			if (!player.isOnline()) {
+				iterator.remove();
+				continue;
+			}
+
+			final Queue<OutboundMessage> outbox = entry.getValue();
+
+			if (outbox.isEmpty()) {
+				continue;
+			}
+
+			flush(player, outbox);
+		}
+	}
+
+	private void flush(final Player player, final Queue<OutboundMessage> outbox) {
+		final List<byte[]> batch = new ArrayList<>();
+		String batchChannel = null;
+		boolean batchCompress = false;
+		int batchSize = 0;
+		OutboundMessage message;
+
+		while ((message = outbox.poll()) != null) {
+			final int size = ChannelFraming.batchedSize(message.data);
+
+			// Consecutive messages of a channel share frames while they fit in one
+			if (!batch.isEmpty() && (!message.channel.equals(batchChannel) || message.compress != batchCompress
+					|| batchSize + size > ChannelFraming.MAX_FRAME_SIZE - ChannelFraming.MAX_HEADER_SIZE)) {
+				sendFrames(player, batchChannel, batch, batchCompress);
+				batch.clear();
+				batchSize = 0;
+			}
+
+			batch.add(message.data);
+			batchChannel = message.channel;
+			batchCompress = message.compress;
+			batchSize += size;
+		}
+
+		if (!batch.isEmpty()) {
+			sendFrames(player, batchChannel, batch, batchCompress);
+		}
+	}
+
+	private void sendFrames(final Player player, final String channel, final List<byte[]> messages,
+			final boolean compress) {
+		final List<byte[]> frames = ChannelFraming.encode(messages, messageIds.getAndIncrement() & 0x7FFFFFFF,
+				compress, ChannelFraming.MAX_FRAME_SIZE);
+
+		for (final byte[] frame : frames) {
+			player.sendPluginMessage(plugin, channel, frame);
+		}
+	}
+
+	/**
+	 * Dispatches a serverbound custom payload of a registered channel.
+	 *
+	 * @return true if the packet was consumed and must not be passed on.
+	 */
+	public boolean handle(final HamsterPlayer hamsterPlayer, final Object packet) {
+		if (handlers.isEmpty() || !payloadPackets.get(packet.getClass())) {
+			return false;
+		}
+
+		Object payload = packet;
+		PayloadAccessors accessors = payloadAccessors.get(packet.getClass()).orElse(null);
+
+		// 1.20.2+ wraps the channel and data in a payload record
+		if (accessors != null && accessors.payload != null) {
+			payload = accessors.payload.get(packet);
+			accessors = payload == null ? null : payloadAccessors.get(payload.getClass()).orElse(null);
+		}
+
+		if (accessors == null || accessors.data == null) {
+			return false;
+		}
+
+		final Object channelName = accessors.channel.get(payload);
+		final String channel = channelName == null ? null : channelName.toString();
+		final CustomChannelHandler handler = channel == null ? null : handlers.get(channel);
+
+		if (handler == null) {
+			return false;
+		}
+
+		final ByteBuf data = (ByteBuf) accessors.data.get(payload);
+
+		if (data == null) {
+			return false;
+		}
+
+		final byte[] frame = new byte[data.readableBytes()];
+
+		data.getBytes(data.readerIndex(), frame);
+
+		if (data.refCnt() > 0) {
+			ReferenceCountUtil.release(data);
+		}
+
+		final MessageAssembler assembler = getAssembler(hamsterPlayer.getChannel(), channel);
+		final List<byte[]> messages;
+
+		try {
+			messages = assembler.accept(frame, System.currentTimeMillis());
+		} catch (final IOException e) {
+			getAssemblers(hamsterPlayer.getChannel()).remove(channel);
+			Debug.warn("Dropped invalid message from " + hamsterPlayer.getPlayer().getName() + " on channel "
+					+ channel + ": " + e.getMessage());
+			return true;
+		}
+
+		for (final byte[] message : messages) {
+			try {
+				handler.onMessage(hamsterPlayer, channel, message);
+			} catch (final Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+
+		return true;
+	}
+
+	private MessageAssembler getAssembler(final Channel channel, final String channelName) {
+		return getAssemblers(channel).computeIfAbsent(channelName,
+				key -> new MessageAssembler(maxMessageSize, maxPendingMessages, reassemblyTimeout));
+	}
+
+	// Only touched from the connection's event loop
+	private Map<String, MessageAssembler> getAssemblers(final Channel channel) {
+		Map<String, MessageAssembler> assemblers = channel.attr(ASSEMBLERS).get();
+
+		if (assemblers == null) {
+			assemblers = new HashMap<>();
+			channel.attr(ASSEMBLERS).set(assemblers);
+		}
+
+		return assemblers;
+	}
+
+	public Map<String, CustomChannelHandler> getHandlers() {
+		return Collections.unmodifiableMap(handlers);
+	}
+
+	private PayloadAccessors resolvePayloadAccessors(final Class<?> type) {
+		final FieldAccessor channel = findField(type, CustomChannelRegistry::isChannelName);
+		final FieldAccessor data = findField(type, ByteBuf.class::isAssignableFrom);
+
+		if (channel != null) {
+			return new PayloadAccessors(channel, data, null);
+		}
+
+		// 1.20.2+ packet holding a payload record, with the channel and data in it
+		final FieldAccessor payload = payloadPackets.get(type) ? findField(type, fieldType -> !fieldType.isPrimitive())
+				: null;
+
+		return payload == null ? null : new PayloadAccessors(null, null, payload);
+	}
+
+	// String before 1.13, then MinecraftKey, named ResourceLocation on Mojang mappings
+	private static boolean isChannelName(final Class<?> type) {
+		final String name = type.getSimpleName();
+
+		return type == String.class || name.equals("MinecraftKey") || name.equals("ResourceLocation");
+	}
+
+	// First instance field of a matching type, statics such as codecs are skipped
+	private static FieldAccessor findField(final Class<?> type, final Predicate<Class<?>> matcher) {
+		for (Class<?> currentClass = type; currentClass != null; currentClass = currentClass.getSuperclass()) {
+			for (final Field field : currentClass.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers()) && matcher.test(field.getType())) {
+					try {
+						return new FieldAccessor(field);
+					} catch (final IllegalAccessException | RuntimeException e) {
+						return null;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static class PayloadAccessors {
+		private final FieldAccessor channel;
+		private final FieldAccessor data;
+		private final FieldAccessor payload;
+
+		private PayloadAccessors(final FieldAccessor channel, final FieldAccessor data, final FieldAccessor payload) {
+			this.channel = channel;
+			this.data = data;
+			this.payload = payload;
+		}
+	}
+
+	private static class OutboundMessage {
+		private final String channel;
+		private final byte[] data;
+		private final boolean compress;
+
+		private OutboundMessage(final String channel, final byte[] data, final boolean compress) {
+			this.channel = channel;
+			this.data = data;
+			this.compress = compress;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package dev._2lstudios.hamsterapi.channels;
+
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns received {@link ChannelFraming} frames back into messages, for one
+ * connection and channel. Not thread-safe: a connection's frames are all read
+ * on its event loop.
+ * <p>
+ * Every limit violation throws, so a misbehaving client can't make the server
+ * buffer more than maxPendingMessages * maxMessageSize bytes.
+ */
+public class MessageAssembler {
+	private final int maxMessageSize;
+	private final int maxPendingMessages;
+	private final long timeoutMillis;
+	private final Map<Integer, PartialMessage> partialMessages = new HashMap<>();
+
+	public MessageAssembler(final int maxMessageSize, final int maxPendingMessages, final long timeoutMillis) {
+		this.maxMessageSize = maxMessageSize;
+		this.maxPendingMessages = maxPendingMessages;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	// Returns the messages completed by this frame, usually none or one
+	public List<byte[]> accept(final byte[] frame, final long now) throws IOException {
+		if (frame.length == 0) {
+			throw new IOException("Empty frame");
+		}
+
+		final int flags = frame[0];
+
+		if ((flags & ChannelFraming.FLAG_CHUNKED) == 0) {
+			return decodeBody(flags, copyOfRange(frame, 1));
+		}
+
+		final ByteBuf in = Unpooled.wrappedBuffer(frame);
+		final int messageId;
+		final int chunkIndex;
+		final int chunkCount;
+
+		try {
+			in.skipBytes(1);
+			messageId = BufferIO.readVarInt(in);
+			chunkIndex = BufferIO.readVarInt(in);
+			chunkCount = BufferIO.readVarInt(in);
+		} catch (final RuntimeException e) {
+			throw new IOException("Malformed chunk header", e);
+		}
+
+		// Chunks must carry a quarter frame on average, bounds the chunk table
+		if (chunkCount < 2 || chunkIndex < 0 || chunkIndex >= chunkCount
+				|| chunkCount > maxMessageSize / Math.max(1, ChannelFraming.MAX_FRAME_SIZE / 4) + 1) {
+			throw new IOException("Invalid chunk " + chunkIndex + "/" + chunkCount);
+		}
+
+		expire(now);
+
+		PartialMessage partialMessage = partialMessages.get(messageId);
+
+		if (partialMessage == null) {
+			if (partialMessages.size() >= maxPendingMessages) {
+				throw new IOException("Too many messages being reassembled");
+			}
+
+			partialMessage = new PartialMessage(flags, chunkCount, now);
+			partialMessages.put(messageId, partialMessage);
+		} else if (partialMessage.chunks.length != chunkCount || partialMessage.flags != flags) {
+			partialMessages.remove(messageId);
+			throw new IOException("Chunk doesn't match message " + messageId);
+		}
+
+		final byte[] chunk = new byte[in.readableBytes()];
+
+		in.readBytes(chunk);
+
+		if (!partialMessage.add(chunkIndex, chunk)) {
+			partialMessages.remove(messageId);
+			throw new IOException("Duplicated chunk " + chunkIndex + " of message " + messageId);
+		}
+
+		if (partialMessage.size > maxMessageSize) {
+			partialMessages.remove(messageId);
+			throw new IOException("Message " + messageId + " exceeds " + maxMessageSize + " bytes");
+		}
+
+		if (partialMessage.received < chunkCount) {
+			return Collections.emptyList();
+		}
+
+		partialMessages.remove(messageId);
+		return decodeBody(flags, partialMessage.join());
+	}
+
+	public int getPendingMessages() {
+		return partialMessages.size();
+	}
+
+	private List<byte[]> decodeBody(final int flags, byte[] body) throws IOException {
+		if ((flags & ChannelFraming.FLAG_COMPRESSED) != 0) {
+			body = ChannelFraming.inflate(body, maxMessageSize);
+		} else if (body.length > maxMessageSize) {
+			throw new IOException("Message exceeds " + maxMessageSize + " bytes");
+		}
+
+		if ((flags & ChannelFraming.FLAG_BATCH) != 0) {
+			return ChannelFraming.decodeBatch(body);
+		}
+
+		return Collections.singletonList(body);
+	}
+
+	private void expire(final long now) {
+		final Iterator<PartialMessage> iterator = partialMessages.values().iterator();
+
+		while (iterator.hasNext()) {
+			if (now - iterator.next().startTime > timeoutMillis) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static byte[] copyOfRange(final byte[] bytes, final int from) {
+		final byte[] copy = new byte[bytes.length - from];
+
+		System.arraycopy(bytes, from, copy, 0, copy.length);
+		return copy;
+	}
+
+	private static final class PartialMessage {
+		private final int flags;
+		private final byte[][] chunks;
+		private final long startTime;
+		private int received = 0;
+		private int size = 0;
+
+		private PartialMessage(final int flags, final int chunkCount, final long startTime) {
+			this.flags = flags;
+			this.chunks = new byte[chunkCount][];
+			this.startTime = startTime;
+		}
+
+		private boolean add(final int index, final byte[] chunk) {
+			if (chunks[index] != null) {
+				return false;
+			}
+
+			chunks[index] = chunk;
+			received++;
+			size += chunk.length;
+			return true;
+		}
+
+		private byte[] join() {
+			final byte[] body = new byte[size];
+			int offset = 0;
+
+			for (final byte[] chunk : chunks) {
+				System.arraycopy(chunk, 0, body, offset, chunk.length);
+				offset += chunk.length;
+			}
+
+			return body;
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package dev._2lstudios.hamsterapi.chunks;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.capture.PacketCapture;
+import dev._2lstudios.hamsterapi.enums.HamsterHandler;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.trace.PacketTracer;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import dev._2lstudios.hamsterapi.utils.PacketFrame;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the compressed frames of chunk packets between the players they are
+ * sent to. The server builds one chunk packet and writes that same instance to
+ * every viewer, so entries are keyed by packet identity: a hit needs neither
+ * encoding nor compression, and a chunk that changed is sent as a new packet
+ * that never matches an old entry. Entries go away with their packet, after
+ * the TTL or when the size limit is reached.
+ * <p>
+ * Frames are written below the prepender, only on pipelines where nothing but
+ * the server encoder and compression would handle them.
+ * <p>
+ * Evicted entries are only released, the eviction queue skips them once they
+ * reach its head, so eviction never walks the queue.
+ */
+public class ChunkFrameCache {
+	private static final String[] CHUNK_PACKETS = { "PacketPlayOutMapChunk", "ClientboundLevelChunkPacket",
+			"ClientboundLevelChunkWithLightPacket" };
+	// Outbound handlers a cached frame is allowed to skip
+	private static final String[] SKIPPED_HANDLERS = { "encoder", "compress", HamsterHandler.HAMSTER_ENCODER };
+	// How long the pipeline check of a channel is reused, walking the pipeline copies it
+	private static final long PIPELINE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final AttributeKey<PipelineCheck> PIPELINE_CHECK = AttributeKey.valueOf("hapi_chunk_pipeline");
+	private static final ClassValue<Boolean> IS_CHUNK_PACKET = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			final String name = type.getSimpleName();
+
+			for (final String chunkPacket : CHUNK_PACKETS) {
+				if (name.equals(chunkPacket)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	};
+
+	private final BufferIO bufferIO;
+	private final PacketCapture packetCapture;
+	private final PacketTracer packetTracer;
+	private final HamsterMetrics metrics;
+	private final long maxBytes;
+	private final long ttlMillis;
+	private final Map<PacketKey, Entry> entries = new ConcurrentHashMap<>();
+	// Keys of collected packets, their entries are released
+	private final ReferenceQueue<Object> collectedPackets = new ReferenceQueue<>();
+	// Insertion order, used to evict the oldest entries over the size limit, may hold released entries
+	private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+	private final AtomicLong size = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	// Cleared once a chunk packet fails to encode, the server encodes them again
+	private volatile boolean enabled = true;
+
+	public ChunkFrameCache(final BufferIO bufferIO, final PacketCapture packetCapture, final PacketTracer packetTracer,
+			final HamsterMetrics metrics, final long maxBytes, final long ttlMillis) {
+		this.bufferIO = bufferIO;
+		this.packetCapture = packetCapture;
+		this.packetTracer = packetTracer;
+		this.metrics = metrics;
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+
+		FoliaAPI.runTaskTimer(ignored -> evictExpired(), 20L, 20L);
+	}
+
+	/**
+	 * Writes a chunk packet as a cached frame.
+	 *
+	 * @return false if the packet is not a chunk or can't be cached, the caller
+	 *         writes it as usual.
+	 */
+	public boolean write(final HamsterPlayer hamsterPlayer, final Object packet, final ChannelPromise promise) {
+		if (!enabled || !IS_CHUNK_PACKET.get(packet.getClass())) {
+			return false;
+		}
+
+		final Channel channel = hamsterPlayer.getChannel();
+		final ChannelHandlerContext prepender = channel.pipeline().context("prepender");
+
+		if (prepender == null || !canSkipEncoders(channel)) {
+			return false;
+		}
+
+		expungeCollected();
+
+		final Entry cached = entries.get(new PacketKey(packet, null));
+		ByteBuf out = cached == null ? null : cached.retainedFor(hamsterPlayer);
+
+		if (out != null) {
+			hits.increment();
+			capture(hamsterPlayer, cached);
+		} else {
+			final ByteBuf frame;
+
+			try {
+				frame = bufferIO.encode(packet, ProtocolState.PLAY);
+			} catch (final Exception e) {
+				enabled = false;
+				Debug.warn("Chunk packets can't be encoded by HamsterAPI, the chunk cache is disabled: " + e.getMessage());
+				return false;
+			}
+
+			final Entry entry = new Entry(new PacketKey(packet, collectedPackets), frame.readableBytes(),
+					new PacketFrame(bufferIO, frame));
+
+			out = entry.retainedFor(hamsterPlayer);
+
+			if (out == null) {
+				entry.release();
+				return false;
+			}
+
+			misses.increment();
+			capture(hamsterPlayer, entry);
+			put(entry);
+		}
+
+		prepender.write(out, promise);
+		return true;
+	}
+
+	// Only called from the event loop of the channel, the result is reused for PIPELINE_CHECK_NANOS
+	private static boolean canSkipEncoders(final Channel channel) {
+		final long now = System.nanoTime();
+		final PipelineCheck check = channel.attr(PIPELINE_CHECK).get();
+
+		if (check != null && now - check.checkedAt < PIPELINE_CHECK_NANOS) {
+			return check.canSkip;
+		}
+
+		final boolean canSkip = canSkipEncoders(channel.pipeline());
+
+		channel.attr(PIPELINE_CHECK).set(new PipelineCheck(canSkip, now));
+		return canSkip;
+	}
+
+	// Only the server encoder, compression and HamsterAPI may sit between this handler and the prepender
+	private static boolean canSkipEncoders(final ChannelPipeline pipeline) {
+		boolean between = false;
+
+		for (final Map.Entry<String, ChannelHandler> handler : pipeline) {
+			final String name = handler.getKey();
+
+			if (name.equals("prepender")) {
+				between = true;
+			} else if (name.equals(HamsterHandler.HAMSTER_CHANNEL)) {
+				return between;
+			} else if (between && handler.getValue() instanceof ChannelOutboundHandler && !isSkipped(name)) {
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isSkipped(final String name) {
+		for (final String skippedHandler : SKIPPED_HANDLERS) {
+			if (skippedHandler.equals(name)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// Cached frames skip hapi_encoder, so its hooks run here on the id + body of the frame, without the length prefix
+	private void capture(final HamsterPlayer hamsterPlayer, final Entry entry) {
+		if (metrics != null) {
+			metrics.recordFrame(PacketDirection.CLIENTBOUND, entry.length - 3);
+		}
+
+		final boolean capturing = packetCapture != null && packetCapture.isCapturing(hamsterPlayer);
+		final boolean tracing = packetTracer != null && packetTracer.shouldTrace(hamsterPlayer);
+
+		if (!capturing && !tracing) {
+			return;
+		}
+
+		// Retained so another thread evicting the entry can't free it meanwhile
+		final ByteBuf frame = entry.retainedFrame();
+
+		if (frame == null) {
+			return;
+		}
+
+		try {
+			final int bodyIndex = frame.readerIndex() + 3;
+			final ByteBuf body = frame.slice(bodyIndex, frame.writerIndex() - bodyIndex);
+
+			if (capturing) {
+				packetCapture.append(PacketDirection.CLIENTBOUND, hamsterPlayer.getPlayer().getUniqueId(), body);
+			}
+
+			if (tracing) {
+				packetTracer.record(PacketDirection.CLIENTBOUND, hamsterPlayer, body);
+			}
+		} finally {
+			frame.release();
+		}
+	}
+
+	private void put(final Entry entry) {
+		final Entry previous = entries.put(entry.key, entry);
+
+		if (previous != null) {
+			remove(previous);
+		}
+
+		insertionOrder.add(entry);
+		size.addAndGet(entry.length);
+
+		Entry oldest;
+
+		while (size.get() > maxBytes && (oldest = insertionOrder.poll()) != null) {
+			entries.remove(oldest.key, oldest);
+			remove(oldest);
+		}
+	}
+
+	private void remove(final Entry entry) {
+		if (entry.release()) {
+			size.addAndGet(-entry.length);
+		}
+	}
+
+	// Releases the entries of packets the server no longer references
+	private void expungeCollected() {
+		Reference<?> reference;
+
+		while ((reference = collectedPackets.poll()) != null) {
+			final Entry entry = entries.remove(reference);
+
+			if (entry != null) {
+				remove(entry);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		final Iterator<Entry> iterator = entries.values().iterator();
+
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next();
+
+			iterator.remove();
+			remove(entry);
+		}
+
+		insertionOrder.clear();
+	}
+
+	private void evictExpired() {
+		expungeCollected();
+
+		final long expiration = System.currentTimeMillis() - ttlMillis;
+		Entry oldest;
+
+		while ((oldest = insertionOrder.peek()) != null && (oldest.isReleased() || oldest.created < expiration)) {
+			if (insertionOrder.remove(oldest)) {
+				entries.remove(oldest.key, oldest);
+				remove(oldest);
+			}
+		}
+	}
+
+	public int getEntries() {
+		return entries.size();
+	}
+
+	// Bytes of uncompressed frames held, compressed copies come on top
+	public long getSize() {
+		return size.get();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	// Weak identity key, the cache never keeps a packet alive
+	private static final class PacketKey extends WeakReference<Object> {
+		private final int hash;
+
+		private PacketKey(final Object packet, final ReferenceQueue<Object> queue) {
+			super(packet, queue);
+			this.hash = System.identityHashCode(packet);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (other == this) {
+				return true;
+			}
+
+			if (!(other instanceof PacketKey)) {
+				return false;
+			}
+
+			final Object packet = get();
+			return packet != null && packet == ((PacketKey) other).get();
+		}
+	}
+
+	private static final class PipelineCheck {
+		private final boolean canSkip;
+		private final long checkedAt;
+
+		private PipelineCheck(final boolean canSkip, final long checkedAt) {
+			this.canSkip = canSkip;
+			this.checkedAt = checkedAt;
+		}
+	}
+
+	private static final class Entry {
+		private final PacketKey key;
+		private final int length;
+		private final long created = System.currentTimeMillis();
+		private final PacketFrame frame;
+		private boolean released = false;
+
+		private Entry(final PacketKey key, final int length, final PacketFrame frame) {
+			this.key = key;
+			this.length = length;
+			this.frame = frame;
+		}
+
+		// Null once evicted, or when compression fails
+		private synchronized ByteBuf retainedFor(final HamsterPlayer hamsterPlayer) {
+			if (released) {
+				return null;
+			}
+
+			try {
+				return frame.retainedFor(hamsterPlayer);
+			} catch (final Exception e) {
+				return null;
+			}
+		}
+
+		// The uncompressed frame, null once evicted
+		private synchronized ByteBuf retainedFrame() {
+			return released ? null : frame.getFrame().retainedDuplicate();
+		}
+
+		private synchronized boolean isReleased() {
+			return released;
+		}
+
+		// Returns false if it was already released
+		private synchronized boolean release() {
+			if (released) {
+				return false;
+			}
+
+			released = true;
+			frame.release();
+			return true;
+		}
+	}
+}
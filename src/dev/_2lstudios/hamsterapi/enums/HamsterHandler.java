@@ -3,4 +3,5 @@ package dev._2lstudios.hamsterapi.enums;
 public class HamsterHandler {
     public static final String HAMSTER_DECODER = "hapi_decoder";
     public static final String  HAMSTER_CHANNEL = "hapi_channel";
+    public static final String HAMSTER_ENCODER = "hapi_encoder";
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package dev._2lstudios.hamsterapi.enums;
+
+public enum PacketDirection {
+	SERVERBOUND, CLIENTBOUND;
+
+	// Maps a NMS direction enum constant (EnumProtocolDirection/PacketFlow) to its direction.
+	public static PacketDirection of(final Object nmsDirection) {
+		if (nmsDirection instanceof Enum) {
+			final String name = ((Enum<?>) nmsDirection).name();
+
+			for (final PacketDirection direction : values()) {
+				if (direction.name().equals(name)) {
+					return direction;
+				}
+			}
+		}
+
+		return null;
+	}
+}
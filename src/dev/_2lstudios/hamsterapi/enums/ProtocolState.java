@@ -0,0 +1,20 @@
+package dev._2lstudios.hamsterapi.enums;
+
+public enum ProtocolState {
+	HANDSHAKING, PLAY, STATUS, LOGIN, CONFIGURATION;
+
+	// Maps a NMS protocol enum constant (EnumProtocol/ConnectionProtocol) to its state.
+	public static ProtocolState of(final Object nmsProtocol) {
+		if (nmsProtocol instanceof Enum) {
+			final String name = ((Enum<?>) nmsProtocol).name();
+
+			for (final ProtocolState state : values()) {
+				if (state.name().equals(name)) {
+					return state;
+				}
+			}
+		}
+
+		return null;
+	}
+}
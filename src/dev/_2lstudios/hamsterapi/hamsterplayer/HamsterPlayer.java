@@ -2,15 +2,22 @@ package dev._2lstudios.hamsterapi.hamsterplayer;
 
 import dev._2lstudios.hamsterapi.Debug;
 import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.bossbar.HamsterBossBar;
 import dev._2lstudios.hamsterapi.enums.HamsterHandler;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
 import dev._2lstudios.hamsterapi.handlers.HamsterChannelHandler;
 import dev._2lstudios.hamsterapi.handlers.HamsterDecoderHandler;
+import dev._2lstudios.hamsterapi.handlers.HamsterEncoderHandler;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.sidebar.HamsterSidebar;
 import dev._2lstudios.hamsterapi.utils.Reflection;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
-import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.AttributeKey;
 import org.bukkit.entity.Player;
 
 import java.lang.reflect.Constructor;
@@ -22,18 +29,24 @@ import java.util.NoSuchElementException;
 import java.util.UUID;
 
 public class HamsterPlayer {
+	// Set on the player channel once setup, see HamsterPlayerManager#get(Channel)
+	public static final AttributeKey<HamsterPlayer> HAMSTER_PLAYER = AttributeKey.valueOf("hapi_player");
+
 	private final Player player;
+	private final HamsterPlayerManager hamsterPlayerManager;
 	private final HamsterAPI hamsterAPI;
 	private Object playerConnection;
 	private Object networkManager;
 	private Channel channel;
 	private Class<?> iChatBaseComponentClass;
 	private Method sendPacketMethod;
-	private boolean setup = false;
-	private boolean injected = false;
+	// Bulk injection sets up on the main thread and injects on the channel event loop
+	private volatile boolean setup = false;
+	private volatile boolean injected = false;
 
-	HamsterPlayer(final Player player) {
+	HamsterPlayer(final Player player, final HamsterPlayerManager hamsterPlayerManager) {
 		this.player = player;
+		this.hamsterPlayerManager = hamsterPlayerManager;
 		this.hamsterAPI = HamsterAPI.getInstance();
 	}
 
@@ -172,6 +185,20 @@ public class HamsterPlayer {
 		}
 	}
 
+	// Shows a boss bar to the HamsterPlayer, see BossBarManager#createBossBar
+	public void showBossBar(final HamsterBossBar bossBar) {
+		bossBar.addViewer(this);
+	}
+
+	public void hideBossBar(final HamsterBossBar bossBar) {
+		bossBar.removeViewer(this);
+	}
+
+	// Per-player sidebar, created on first use, see SidebarManager
+	public HamsterSidebar getSidebar() {
+		return hamsterAPI.getSidebarManager().getSidebar(this);
+	}
+
 	// Sends the HamsterPlayer to another Bungee server
 	public void sendServer(final String serverName) {
 		hamsterAPI.getBungeeMessenger().sendPluginMessage("ConnectOther", player.getName(), serverName);
@@ -245,6 +272,48 @@ public class HamsterPlayer {
 		}
 	}
 
+	// Writes a wire-ready frame (see BufferIO#encode) below the prepender, skipping the packet encoders
+	public void sendFrame(final ByteBuf frame) {
+		if (channel == null || !channel.isActive()) {
+			frame.release();
+			return;
+		}
+
+		final ChannelPipeline pipeline = channel.pipeline();
+		final ChannelHandlerContext prepender = pipeline.context("prepender");
+
+		if (prepender != null) {
+			prepender.writeAndFlush(frame, prepender.voidPromise());
+		} else {
+			pipeline.firstContext().writeAndFlush(frame, channel.voidPromise());
+		}
+	}
+
+	// Writes several frames in order with a single flush, every frame is released
+	public void sendFrames(final List<ByteBuf> frames) {
+		if (channel == null || !channel.isActive()) {
+			for (final ByteBuf frame : frames) {
+				frame.release();
+			}
+			return;
+		}
+
+		final ChannelPipeline pipeline = channel.pipeline();
+		final ChannelHandlerContext prepender = pipeline.context("prepender");
+		final ChannelHandlerContext context = prepender != null ? prepender : pipeline.firstContext();
+
+		for (final ByteBuf frame : frames) {
+			context.write(frame, context.voidPromise());
+		}
+
+		context.flush();
+	}
+
+	// Returns true if frames sent to this player must be compressed (see BufferIO#compress)
+	public boolean isCompressed() {
+		return channel != null && channel.pipeline().get("compress") != null;
+	}
+
 	public Object getPlayerConnection() {
 		return playerConnection;
 	}
@@ -257,6 +326,10 @@ public class HamsterPlayer {
 		return channel;
 	}
 
+	public boolean isInjected() {
+		return injected;
+	}
+
 	// Removes handlers from the player pipeline
 	public void uninject() {
 		if (injected && channel != null && channel.isActive()) {
@@ -270,9 +343,15 @@ public class HamsterPlayer {
 				if (pipeline.get(HamsterHandler.HAMSTER_CHANNEL) != null) {
 					pipeline.remove(HamsterHandler.HAMSTER_CHANNEL);
 				}
+
+				if (pipeline.get(HamsterHandler.HAMSTER_ENCODER) != null) {
+					pipeline.remove(HamsterHandler.HAMSTER_ENCODER);
+				}
 			} catch (NoSuchElementException e) {
 				// Handler was already removed, which is fine.
 			}
+
+			this.injected = false;
 		}
 	}
 
@@ -281,7 +360,13 @@ public class HamsterPlayer {
 			throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, NoSuchFieldException {
 		if (!setup) {
 			final Reflection reflection = hamsterAPI.getReflection();
-			final Object handle = player.getClass().getMethod("getHandle").invoke(player);
+			final Method getHandleMethod = reflection.getHandleMethod(player.getClass());
+
+			if (getHandleMethod == null) {
+				throw new NoSuchMethodException("getHandle() not found in " + player.getClass().getName());
+			}
+
+			final Object handle = getHandleMethod.invoke(player);
 
 			this.playerConnection = reflection.getField(handle, reflection.getPlayerConnection());
 			this.networkManager = reflection.getField(playerConnection, reflection.getNetworkManager());
@@ -300,6 +385,7 @@ public class HamsterPlayer {
 						+ this.playerConnection.getClass().getName());
 			}
 
+			hamsterPlayerManager.indexChannel(this, channel);
 			this.setup = true;
 		}
 	}
@@ -352,40 +438,65 @@ public class HamsterPlayer {
 				}
 			}
 
+			// Optional: only needed to observe encoded frames, so a missing encoder is not fatal
+			if (pipeline.get(HamsterHandler.HAMSTER_ENCODER) == null && pipeline.get("encoder") != null) {
+				pipeline.addBefore("encoder", HamsterHandler.HAMSTER_ENCODER, new HamsterEncoderHandler(this));
+				Debug.info("Added HAMSTER_ENCODER in pipeline before encoder (" + this.player.getName() + ")");
+			}
+
+			// Resolve the clientbound protocol table now so packets can be encoded without a channel.
+			hamsterAPI.getBufferIO().getProtocolTables().getTable(channel, PacketDirection.CLIENTBOUND);
+
 			this.injected = true;
 		}
 	}
 
 	/**
-	 * Periodically verifies that our channel handlers are in the correct position
-	 * in the pipeline. If another plugin has injected a handler before ours,
-	 * this method will "heal" the pipeline by reordering our handlers back to
-	 * their intended, dominant position.
-	 *
-	 * This should be run a short time after the initial injection (e.g., 20 ticks
-	 * later)
-	 * to ensure priority.
+	 * Verifies that our channel handlers are in the correct position in the
+	 * pipeline. If another plugin has injected a handler before ours, this
+	 * method will "heal" the pipeline by putting our handlers back in their
+	 * intended, dominant position. Runs on the player's event loop, see
+	 * {@link PipelineHealthChecker} for the periodic checks.
 	 */
 	public void checkAndReorderHandlers() {
-		// 1. --- Pre-flight Checks ---
+		if (channel == null) {
+			return;
+		}
+
+		if (channel.eventLoop().inEventLoop()) {
+			repairPipeline();
+		} else {
+			channel.eventLoop().execute(this::repairPipeline);
+		}
+	}
+
+	// Returns the number of handlers put back in place, only called from the event loop
+	int repairPipeline() {
 		// Don't do anything if we were never injected or if the player is disconnected.
 		if (!injected || channel == null || !channel.isActive()) {
-			return;
+			return 0;
 		}
 
+		int repaired = 0;
+
 		try {
 			final ChannelPipeline pipeline = channel.pipeline();
+			final String decoderBaseName = (pipeline.get("decompress") != null) ? "decompress" : "splitter";
 
-			// 2. --- Verify and Reorder HAMSTER_DECODER ---
-			String decoderBaseName = (pipeline.get("decompress") != null) ? "decompress" : "splitter";
-			reorderHandlerIfNeeded(pipeline, HamsterHandler.HAMSTER_DECODER, decoderBaseName);
-
-			// 3. --- Verify and Reorder HAMSTER_CHANNEL ---
-			String channelBaseName = "decoder";
-			reorderHandlerIfNeeded(pipeline, HamsterHandler.HAMSTER_CHANNEL, channelBaseName);
+			if (isMisplaced(pipeline, HamsterHandler.HAMSTER_DECODER, decoderBaseName)) {
+				pipeline.remove(HamsterHandler.HAMSTER_DECODER);
+				// Netty refuses to add a non sharable handler instance twice
+				pipeline.addAfter(decoderBaseName, HamsterHandler.HAMSTER_DECODER, new HamsterDecoderHandler(this));
+				repaired++;
+			}
 
+			if (isMisplaced(pipeline, HamsterHandler.HAMSTER_CHANNEL, "decoder")) {
+				pipeline.remove(HamsterHandler.HAMSTER_CHANNEL);
+				pipeline.addAfter("decoder", HamsterHandler.HAMSTER_CHANNEL, new HamsterChannelHandler(this));
+				repaired++;
+			}
 		} catch (NoSuchElementException e) {
-			// This can happen if a handler was removed while we were iterating. It's safe
+			// This can happen if a handler was removed while we were repairing. It's safe
 			// to ignore.
 			Debug.warn("A handler was removed from the pipeline during reordering for " + this.player.getName()
 					+ ". This is usually safe.");
@@ -393,52 +504,37 @@ public class HamsterPlayer {
 			Debug.crit("An unexpected error occurred while reordering pipeline handlers for "
 					+ this.player.getName() + ": " + e.getMessage());
 		}
+
+		if (repaired > 0) {
+			Debug.warn(repaired + " HamsterAPI handlers were out of order and have been put back for "
+					+ this.player.getName());
+		}
+
+		return repaired;
 	}
 
 	/**
-	 * A private helper to check if a handler is correctly positioned right after
-	 * its base,
-	 * and if not, removes and re-adds it.
-	 *
-	 * @param pipeline    The player's channel pipeline.
-	 * @param handlerName The name of our handler to check (e.g.,
-	 *                    "hamster_decoder").
-	 * @param baseName    The name of the handler it must follow (e.g.,
-	 *                    "decompress").
+	 * Returns true if the handler is not right after its base. A missing handler
+	 * or base can't be repaired and is not reported.
 	 */
-	private void reorderHandlerIfNeeded(final ChannelPipeline pipeline, final String handlerName,
-										final String baseName) {
-		// Get our handler instance and the list of current handler names.
-		final ChannelHandler ourHandler = pipeline.get(handlerName);
-		final List<String> names = pipeline.names();
+	private static boolean isMisplaced(final ChannelPipeline pipeline, final String handlerName,
+			final String baseName) {
+		final ChannelHandlerContext context = pipeline.context(handlerName);
 
-		// If our handler or its base is missing, we can't do anything.
-		if (ourHandler == null) {
-			Debug.warn("Cannot reorder " + handlerName + " because it is missing from the pipeline for "
-					+ this.player.getName());
-			return;
-		}
-		if (pipeline.get(baseName) == null) {
-			Debug.warn("Cannot reorder " + handlerName + " because its base '" + baseName + "' is missing for "
-					+ this.player.getName());
-			return;
+		if (context == null || pipeline.context(baseName) == null) {
+			return false;
 		}
 
-		// Find the positions of our handler and its intended base.
-		final int ourHandlerIndex = names.indexOf(handlerName);
-		final int baseHandlerIndex = names.indexOf(baseName);
+		final String previousName = PipelineOrder.previousName(context);
 
-		// If our handler is not directly after the base, it's out of order.
-		if (ourHandlerIndex != baseHandlerIndex + 1) {
-			Debug.warn(handlerName + " for player " + this.player.getName()
-					+ " is out of order. Forcing re-injection to correct position.");
+		if (previousName != null) {
+			return !previousName.equals(baseName);
+		}
 
-			// Re-inject the handler to its rightful place.
-			pipeline.remove(handlerName);
-			pipeline.addAfter(baseName, handlerName, ourHandler);
+		// Netty internals not available, compare the names list instead
+		final List<String> names = pipeline.names();
 
-			Debug.info(handlerName + " was successfully reordered for " + this.player.getName());
-		}
+		return names.indexOf(handlerName) != names.indexOf(baseName) + 1;
 	}
 
 	// Injects but instead of returning an exception returns sucess (Boolean)
@@ -452,9 +548,19 @@ public class HamsterPlayer {
 				Debug.crit("Exception thrown while injecting player " + player.getName() + ":");
 				e.printStackTrace();
 			}
+			recordInjection(false);
 			return false;
 		}
 
+		recordInjection(true);
 		return true;
 	}
-}
\ No newline at end of file
+
+	void recordInjection(final boolean success) {
+		final HamsterMetrics metrics = hamsterAPI == null ? null : hamsterAPI.getMetrics();
+
+		if (metrics != null) {
+			metrics.recordInjection(success);
+		}
+	}
+}
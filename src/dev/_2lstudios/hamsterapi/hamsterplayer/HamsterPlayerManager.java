@@ -1,27 +1,250 @@
 package dev._2lstudios.hamsterapi.hamsterplayer;
 
+import dev._2lstudios.hamsterapi.Debug;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class HamsterPlayerManager {
     final Map<UUID, HamsterPlayer> hamsterPlayers = new ConcurrentHashMap<>();
+    // Secondary indexes, kept in sync on add/remove so lookups never scan online players
+    private final Map<String, HamsterPlayer> playersByName = new ConcurrentHashMap<>();
+    private final Map<Integer, HamsterPlayer> playersByEntityId = new ConcurrentHashMap<>();
+    private final Map<EventLoop, Set<HamsterPlayer>> playersByEventLoop = new ConcurrentHashMap<>();
 
     public HamsterPlayer add(final Player player) {
-        final HamsterPlayer hamsterPlayer = new HamsterPlayer(player);
+        final HamsterPlayer hamsterPlayer = new HamsterPlayer(player, this);
+        final HamsterPlayer previous = hamsterPlayers.put(player.getUniqueId(), hamsterPlayer);
 
-        hamsterPlayers.put(player.getUniqueId(), hamsterPlayer);
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        playersByName.put(player.getName().toLowerCase(Locale.ROOT), hamsterPlayer);
+        playersByEntityId.put(player.getEntityId(), hamsterPlayer);
 
         return hamsterPlayer;
     }
 
     public void remove(final Player player) {
-        hamsterPlayers.remove(player.getUniqueId());
+        final HamsterPlayer hamsterPlayer = hamsterPlayers.remove(player.getUniqueId());
+
+        if (hamsterPlayer != null) {
+            unindex(hamsterPlayer);
+        }
     }
 
     public HamsterPlayer get(final Player player) {
         return hamsterPlayers.getOrDefault(player.getUniqueId(), null);
     }
-}
\ No newline at end of file
+
+    public HamsterPlayer get(final UUID uuid) {
+        return hamsterPlayers.get(uuid);
+    }
+
+    // Returns the HamsterPlayer attached to the channel, usable from any handler
+    public HamsterPlayer get(final Channel channel) {
+        return channel.hasAttr(HamsterPlayer.HAMSTER_PLAYER) ? channel.attr(HamsterPlayer.HAMSTER_PLAYER).get() : null;
+    }
+
+    public HamsterPlayer getByName(final String name) {
+        return playersByName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public HamsterPlayer getByEntityId(final int entityId) {
+        return playersByEntityId.get(entityId);
+    }
+
+    // Players whose channel is handled by the given event loop, only set up players are included
+    public Set<HamsterPlayer> getByEventLoop(final EventLoop eventLoop) {
+        final Set<HamsterPlayer> players = playersByEventLoop.get(eventLoop);
+
+        return players == null ? Collections.<HamsterPlayer>emptySet() : Collections.unmodifiableSet(players);
+    }
+
+    // Players whose pipeline currently has the HamsterAPI handlers
+    public int getInjectedCount() {
+        int injected = 0;
+
+        for (final HamsterPlayer hamsterPlayer : hamsterPlayers.values()) {
+            if (hamsterPlayer.isInjected()) {
+                injected++;
+            }
+        }
+
+        return injected;
+    }
+
+    // Event loops with at least one set up player
+    public Set<EventLoop> getEventLoops() {
+        return Collections.unmodifiableSet(playersByEventLoop.keySet());
+    }
+
+    /**
+     * Adds and injects the players in bulk. Reflection (setup) runs on the calling
+     * thread, the pipeline changes run in parallel on each player's own event loop.
+     *
+     * @return the number of players injected before the timeout
+     */
+    public int injectAll(final Collection<? extends Player> players, final long timeout, final TimeUnit unit) {
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>(players.size());
+
+        for (final Player player : players) {
+            final HamsterPlayer hamsterPlayer = add(player);
+
+            try {
+                hamsterPlayer.setup();
+            } catch (final Exception e) {
+                Debug.crit("Exception thrown while setting up player " + player.getName() + ":");
+                if (Debug.isEnabled()) {
+                    e.printStackTrace();
+                }
+                continue;
+            }
+
+            futures.add(submit(hamsterPlayer, target -> {
+                try {
+                    target.inject();
+                    target.recordInjection(true);
+                } catch (final Exception e) {
+                    target.recordInjection(false);
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+
+        return join(futures, timeout, unit);
+    }
+
+    /**
+     * Uninjects and removes the players in bulk, on each player's own event loop.
+     *
+     * @return the number of players uninjected before the timeout
+     */
+    public int uninjectAll(final Collection<? extends Player> players, final long timeout, final TimeUnit unit) {
+        final List<CompletableFuture<Boolean>> futures = new ArrayList<>(players.size());
+
+        for (final Player player : players) {
+            final HamsterPlayer hamsterPlayer = get(player);
+
+            if (hamsterPlayer != null) {
+                futures.add(submit(hamsterPlayer, HamsterPlayer::uninject));
+            }
+        }
+
+        final int uninjected = join(futures, timeout, unit);
+
+        for (final Player player : players) {
+            remove(player);
+        }
+
+        return uninjected;
+    }
+
+    private static CompletableFuture<Boolean> submit(final HamsterPlayer hamsterPlayer,
+            final Consumer<HamsterPlayer> task) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final Channel channel = hamsterPlayer.getChannel();
+        final Runnable runnable = () -> {
+            try {
+                task.accept(hamsterPlayer);
+                future.complete(true);
+            } catch (final Exception e) {
+                Debug.crit("Exception thrown while injecting player " + hamsterPlayer.getPlayer().getName() + ":");
+                if (Debug.isEnabled()) {
+                    e.printStackTrace();
+                }
+                future.complete(false);
+            }
+        };
+
+        if (channel == null || channel.eventLoop().inEventLoop()) {
+            runnable.run();
+        } else {
+            try {
+                channel.eventLoop().execute(runnable);
+            } catch (final Exception e) {
+                // Event loop shutting down, do it from here
+                runnable.run();
+            }
+        }
+
+        return future;
+    }
+
+    private static int join(final List<CompletableFuture<Boolean>> futures, final long timeout, final TimeUnit unit) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(timeout, unit);
+        } catch (final TimeoutException e) {
+            Debug.warn("Timed out waiting for player event loops, some players may not be (un)injected yet");
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            // Tasks never complete exceptionally
+        }
+
+        int done = 0;
+
+        for (final CompletableFuture<Boolean> future : futures) {
+            if (future.getNow(false)) {
+                done++;
+            }
+        }
+
+        return done;
+    }
+
+    // Called once the player channel is known (see HamsterPlayer#setup)
+    void indexChannel(final HamsterPlayer hamsterPlayer, final Channel channel) {
+        if (hamsterPlayers.get(hamsterPlayer.getPlayer().getUniqueId()) != hamsterPlayer) {
+            return;
+        }
+
+        channel.attr(HamsterPlayer.HAMSTER_PLAYER).set(hamsterPlayer);
+        // Added inside compute so it can't race with unindex dropping the set
+        playersByEventLoop.compute(channel.eventLoop(), (eventLoop, players) -> {
+            final Set<HamsterPlayer> indexed = players == null ? ConcurrentHashMap.newKeySet() : players;
+
+            indexed.add(hamsterPlayer);
+            return indexed;
+        });
+
+        // Removed while indexing, undo so the player doesn't linger in the indexes
+        if (hamsterPlayers.get(hamsterPlayer.getPlayer().getUniqueId()) != hamsterPlayer) {
+            unindex(hamsterPlayer);
+        }
+    }
+
+    private void unindex(final HamsterPlayer hamsterPlayer) {
+        final Player player = hamsterPlayer.getPlayer();
+        final Channel channel = hamsterPlayer.getChannel();
+
+        playersByName.remove(player.getName().toLowerCase(Locale.ROOT), hamsterPlayer);
+        playersByEntityId.remove(player.getEntityId(), hamsterPlayer);
+
+        if (channel != null) {
+            channel.attr(HamsterPlayer.HAMSTER_PLAYER).compareAndSet(hamsterPlayer, null);
+
+            // Drops the set of an event loop without players, so dead loops are not iterated
+            playersByEventLoop.computeIfPresent(channel.eventLoop(), (eventLoop, players) -> {
+                players.remove(hamsterPlayer);
+                return players.isEmpty() ? null : players;
+            });
+        }
+    }
+}
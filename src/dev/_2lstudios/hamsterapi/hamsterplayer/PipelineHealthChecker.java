@@ -0,0 +1,96 @@
+package dev._2lstudios.hamsterapi.hamsterplayer;
+
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifies the position of the HamsterAPI handlers of every injected player,
+ * periodically and on request (e.g. after an injection). Players are checked
+ * in one batch per event loop, on that event loop, so the check never races
+ * with the pipeline or the packets going through it. A handler pushed out of
+ * place by another plugin is put back and the repair is counted.
+ */
+public class PipelineHealthChecker {
+    private final HamsterPlayerManager hamsterPlayerManager;
+    private final HamsterMetrics metrics;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+
+    public PipelineHealthChecker(final HamsterPlayerManager hamsterPlayerManager, final HamsterMetrics metrics,
+            final long intervalTicks) {
+        this.hamsterPlayerManager = hamsterPlayerManager;
+        this.metrics = metrics;
+
+        if (intervalTicks > 0) {
+            FoliaAPI.runTaskTimer(ignored -> checkAll(), intervalTicks, intervalTicks);
+        }
+    }
+
+    // Submits one batch per event loop
+    public void checkAll() {
+        for (final EventLoop eventLoop : hamsterPlayerManager.getEventLoops()) {
+            final Set<HamsterPlayer> players = hamsterPlayerManager.getByEventLoop(eventLoop);
+
+            if (players.isEmpty()) {
+                continue;
+            }
+
+            try {
+                eventLoop.execute(() -> {
+                    for (final HamsterPlayer hamsterPlayer : players) {
+                        check(hamsterPlayer);
+                    }
+                });
+            } catch (final Exception e) {
+                // Event loop shutting down, its channels are closing too
+            }
+        }
+    }
+
+    // Checks a single player soon, on its event loop
+    public void requestCheck(final HamsterPlayer hamsterPlayer) {
+        final Channel channel = hamsterPlayer.getChannel();
+
+        if (channel == null) {
+            return;
+        }
+
+        if (channel.eventLoop().inEventLoop()) {
+            check(hamsterPlayer);
+            return;
+        }
+
+        try {
+            channel.eventLoop().execute(() -> check(hamsterPlayer));
+        } catch (final Exception e) {
+            // Event loop shutting down
+        }
+    }
+
+    private void check(final HamsterPlayer hamsterPlayer) {
+        final int repaired = hamsterPlayer.repairPipeline();
+
+        checks.increment();
+
+        if (repaired > 0) {
+            repairs.add(repaired);
+
+            if (metrics != null) {
+                metrics.recordPipelineRepairs(repaired);
+            }
+        }
+    }
+
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    public long getRepairs() {
+        return repairs.sum();
+    }
+}
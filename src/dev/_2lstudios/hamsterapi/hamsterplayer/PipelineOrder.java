@@ -0,0 +1,44 @@
+package dev._2lstudios.hamsterapi.hamsterplayer;
+
+import io.netty.channel.ChannelHandlerContext;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads the handler before a context straight from the Netty linked list, so
+ * checking the pipeline order doesn't copy the handler names every time.
+ */
+final class PipelineOrder {
+    // AbstractChannelHandlerContext#prev, null if Netty changed its internals
+    private static final Field PREVIOUS = findPrevious();
+
+    private PipelineOrder() {
+    }
+
+    private static Field findPrevious() {
+        try {
+            final Field field = Class.forName("io.netty.channel.AbstractChannelHandlerContext")
+                    .getDeclaredField("prev");
+
+            field.setAccessible(true);
+            return field;
+        } catch (final Exception | LinkageError e) {
+            return null;
+        }
+    }
+
+    // Name of the handler right before the context, or null if it can't be read
+    static String previousName(final ChannelHandlerContext context) {
+        if (PREVIOUS == null) {
+            return null;
+        }
+
+        try {
+            final Object previous = PREVIOUS.get(context);
+
+            return previous instanceof ChannelHandlerContext ? ((ChannelHandlerContext) previous).name() : null;
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev._2lstudios.hamsterapi.handlers;
+
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import io.netty.channel.EventLoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Defers the flushes of the channel handlers so the packets a player receives
+ * in a tick leave in as few syscalls and TCP segments as possible. Deferred
+ * channels are kept per event loop and flushed from it.
+ * <p>
+ * The tick flush is a scheduler task, which runs at the start of the next
+ * tick rather than right after the current one, so the real bound on the
+ * delay of a packet is the {@code max-delay-us} deadline started by the first
+ * deferred flush of the event loop.
+ */
+public class FlushConsolidator {
+	// Packets flushed right away: keepalive, ping, disconnect and the teleports the client confirms
+	private static final String[] URGENT_PACKETS = { "PacketPlayOutKeepAlive", "ClientboundKeepAlivePacket",
+			"PacketPlayOutKickDisconnect", "ClientboundDisconnectPacket", "PacketPlayOutPosition",
+			"ClientboundPlayerPositionPacket", "ClientboundPingPacket", "ClientboundPongResponsePacket" };
+	private static final ClassValue<Boolean> URGENT = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			final String name = type.getSimpleName();
+
+			for (final String urgentPacket : URGENT_PACKETS) {
+				if (name.equals(urgentPacket)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	};
+
+	private final Map<EventLoop, LoopFlusher> flushers = new ConcurrentHashMap<>();
+	private final long maxDelayMicros;
+
+	public FlushConsolidator(final long maxDelayMicros) {
+		this.maxDelayMicros = maxDelayMicros;
+
+		FoliaAPI.runTaskTimer(ignored -> flushAll(), 1L, 1L);
+	}
+
+	static boolean isUrgent(final Object packet) {
+		return URGENT.get(packet.getClass());
+	}
+
+	// Called from the event loop of the handler
+	void defer(final EventLoop eventLoop, final HamsterChannelHandler handler) {
+		flushers.computeIfAbsent(eventLoop, LoopFlusher::new).defer(handler);
+	}
+
+	// Start of the next tick, every event loop flushes what it deferred
+	private void flushAll() {
+		for (final LoopFlusher flusher : flushers.values()) {
+			if (flusher.pending.get()) {
+				flusher.eventLoop.execute(flusher::run);
+			}
+		}
+	}
+
+	private final class LoopFlusher implements Runnable {
+		private final EventLoop eventLoop;
+		// Only touched from the event loop
+		private final List<HamsterChannelHandler> deferred = new ArrayList<>();
+		private final AtomicBoolean pending = new AtomicBoolean(false);
+		// The max-delay-us flush, cancelled when the tick flush comes first
+		private ScheduledFuture<?> deadline = null;
+
+		private LoopFlusher(final EventLoop eventLoop) {
+			this.eventLoop = eventLoop;
+		}
+
+		private void defer(final HamsterChannelHandler handler) {
+			deferred.add(handler);
+			pending.set(true);
+
+			if (deadline == null) {
+				deadline = eventLoop.schedule(this, maxDelayMicros, TimeUnit.MICROSECONDS);
+			}
+		}
+
+		@Override
+		public void run() {
+			if (deadline != null) {
+				deadline.cancel(false);
+				deadline = null;
+			}
+
+			pending.set(false);
+
+			if (deferred.isEmpty()) {
+				return;
+			}
+
+			final HamsterChannelHandler[] handlers = deferred.toArray(new HamsterChannelHandler[0]);
+
+			deferred.clear();
+
+			for (final HamsterChannelHandler handler : handlers) {
+				handler.flushDeferred();
+			}
+		}
+	}
+}
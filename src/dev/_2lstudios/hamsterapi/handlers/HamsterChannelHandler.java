@@ -1,8 +1,14 @@
 package dev._2lstudios.hamsterapi.handlers;
 
+import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.channels.CustomChannelRegistry;
+import dev._2lstudios.hamsterapi.chunks.ChunkFrameCache;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
 import dev._2lstudios.hamsterapi.events.PacketReceiveEvent;
 import dev._2lstudios.hamsterapi.events.PacketSendEvent;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics.ListenerEvent;
 import dev._2lstudios.hamsterapi.wrappers.PacketWrapper;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -14,11 +20,32 @@ public class HamsterChannelHandler extends ChannelDuplexHandler {
 	private final Server server;
 	private final PluginManager pluginManager;
 	private final HamsterPlayer hamsterPlayer;
+	private final CustomChannelRegistry customChannelRegistry;
+	// Null unless metrics are enabled in the config
+	private final HamsterMetrics metrics;
+	// Null unless movement coalescing is enabled in the config
+	private final MovementCoalescer movementCoalescer;
+	// Null unless flush consolidation is enabled in the config
+	private final FlushConsolidator flushConsolidator;
+	// Null unless the chunk cache is enabled in the config
+	private final ChunkFrameCache chunkFrameCache;
+	// Set while a flush waits for the consolidator, only touched from the event loop
+	private ChannelHandlerContext deferredContext;
+	// An urgent packet was written, the next flush goes out right away
+	private boolean urgentWrite = false;
 
 	public HamsterChannelHandler(final HamsterPlayer hamsterPlayer) {
+		final HamsterAPI hamsterAPI = HamsterAPI.getInstance();
+
 		this.server = hamsterPlayer.getPlayer().getServer();
 		this.pluginManager = server.getPluginManager();
 		this.hamsterPlayer = hamsterPlayer;
+		this.customChannelRegistry = hamsterAPI == null ? null : hamsterAPI.getCustomChannelRegistry();
+		this.metrics = hamsterAPI == null ? null : hamsterAPI.getMetrics();
+		this.movementCoalescer = hamsterAPI != null && hamsterAPI.isMovementCoalescing() ? new MovementCoalescer()
+				: null;
+		this.flushConsolidator = hamsterAPI == null ? null : hamsterAPI.getFlushConsolidator();
+		this.chunkFrameCache = hamsterAPI == null ? null : hamsterAPI.getChunkFrameCache();
 	}
 
 	@Override
@@ -27,6 +54,7 @@ public class HamsterChannelHandler extends ChannelDuplexHandler {
 		final PacketWrapper packetWrapper = new PacketWrapper(packet);
 		final boolean async = !server.isPrimaryThread();
 		final PacketSendEvent event = new PacketSendEvent(channelHandlerContext, hamsterPlayer, packetWrapper, async);
+		final long start = metrics == null ? 0 : System.nanoTime();
 
 		try {
 			this.pluginManager.callEvent(event);
@@ -34,17 +62,95 @@ public class HamsterChannelHandler extends ChannelDuplexHandler {
 			exception.printStackTrace();
 		}
 
+		if (metrics != null) {
+			metrics.recordListener(ListenerEvent.SEND, System.nanoTime() - start, event.isCancelled());
+			metrics.recordPacket(PacketDirection.CLIENTBOUND, packet.getClass());
+		}
+
 		if (!event.isCancelled()) {
-			super.write(channelHandlerContext, packetWrapper.getPacket(), channelPromise);
+			final Object sentPacket = packetWrapper.getPacket();
+
+			if (flushConsolidator != null && !urgentWrite && FlushConsolidator.isUrgent(sentPacket)) {
+				urgentWrite = true;
+			}
+
+			// Movement is buffered after the event, listeners still see every packet
+			if (movementCoalescer != null && movementCoalescer.write(channelHandlerContext, sentPacket, channelPromise)) {
+				return;
+			}
+
+			if (chunkFrameCache != null && chunkFrameCache.write(hamsterPlayer, sentPacket, channelPromise)) {
+				return;
+			}
+
+			super.write(channelHandlerContext, sentPacket, channelPromise);
+		}
+	}
+
+	@Override
+	public void flush(final ChannelHandlerContext channelHandlerContext) throws Exception {
+		if (flushConsolidator != null && !urgentWrite) {
+			if (deferredContext == null) {
+				deferredContext = channelHandlerContext;
+				flushConsolidator.defer(channelHandlerContext.channel().eventLoop(), this);
+			}
+			return;
+		}
+
+		urgentWrite = false;
+		// A flush already scheduled by the consolidator finds nothing left to do
+		deferredContext = null;
+		flushNow(channelHandlerContext);
+	}
+
+	// Called by the consolidator from the event loop
+	void flushDeferred() {
+		final ChannelHandlerContext channelHandlerContext = deferredContext;
+
+		if (channelHandlerContext == null) {
+			return;
+		}
+
+		deferredContext = null;
+
+		try {
+			flushNow(channelHandlerContext);
+		} catch (final Exception exception) {
+			channelHandlerContext.fireExceptionCaught(exception);
 		}
 	}
 
+	private void flushNow(final ChannelHandlerContext channelHandlerContext) throws Exception {
+		if (movementCoalescer != null) {
+			movementCoalescer.flushAll(channelHandlerContext);
+		}
+
+		super.flush(channelHandlerContext);
+	}
+
+	@Override
+	public void handlerRemoved(final ChannelHandlerContext channelHandlerContext) throws Exception {
+		// Buffered movement and deferred flushes would be lost with the handler
+		if (deferredContext != null || (movementCoalescer != null && movementCoalescer.hasPending())) {
+			deferredContext = null;
+			flushNow(channelHandlerContext);
+		}
+
+		super.handlerRemoved(channelHandlerContext);
+	}
+
 	@Override
 	public void channelRead(final ChannelHandlerContext channelHandlerContext, final Object packet) throws Exception {
+		// Custom channel messages are consumed here, before any event
+		if (customChannelRegistry != null && customChannelRegistry.handle(hamsterPlayer, packet)) {
+			return;
+		}
+
 		final PacketWrapper packetWrapper = new PacketWrapper(packet);
 		final boolean async = !server.isPrimaryThread();
 		final PacketReceiveEvent event = new PacketReceiveEvent(channelHandlerContext, hamsterPlayer, packetWrapper,
 				async);
+		final long start = metrics == null ? 0 : System.nanoTime();
 
 		try {
 			this.pluginManager.callEvent(event);
@@ -52,6 +158,11 @@ public class HamsterChannelHandler extends ChannelDuplexHandler {
 			exception.printStackTrace();
 		}
 
+		if (metrics != null) {
+			metrics.recordListener(ListenerEvent.RECEIVE, System.nanoTime() - start, event.isCancelled());
+			metrics.recordPacket(PacketDirection.SERVERBOUND, packet.getClass());
+		}
+
 		if (!event.isCancelled()) {
 			super.channelRead(channelHandlerContext, packetWrapper.getPacket());
 		}
@@ -1,7 +1,14 @@
 package dev._2lstudios.hamsterapi.handlers;
 
+import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.capture.PacketCapture;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
 import dev._2lstudios.hamsterapi.events.PacketDecodeEvent;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics.ListenerEvent;
+import dev._2lstudios.hamsterapi.trace.PacketTracer;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
 import dev._2lstudios.hamsterapi.wrappers.ByteBufWrapper;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -9,26 +16,69 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import org.bukkit.Server;
 import org.bukkit.plugin.PluginManager;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 
 public class HamsterDecoderHandler extends ByteToMessageDecoder {
+	// Packets overriding Packet#isTerminal switch the protocol inside the vanilla decoder, so it must see them.
+	private static final ClassValue<Boolean> SKIPPABLE_PACKETS = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			try {
+				return !overridesTerminal(type);
+			} catch (final RuntimeException | NoSuchMethodException e) {
+				return false;
+			}
+		}
+	};
+
 	private final Server server;
 	private final PluginManager pluginManager;
 	private final HamsterPlayer hamsterPlayer;
+	private final BufferIO bufferIO;
+	private final PacketCapture packetCapture;
+	private final PacketTracer packetTracer;
+	private final HamsterMetrics metrics;
 
 	public HamsterDecoderHandler(final HamsterPlayer hamsterPlayer) {
+		final HamsterAPI hamsterAPI = HamsterAPI.getInstance();
+
 		this.server = hamsterPlayer.getPlayer().getServer();
 		this.pluginManager = server.getPluginManager();
 		this.hamsterPlayer = hamsterPlayer;
+		this.bufferIO = hamsterAPI == null ? null : hamsterAPI.getBufferIO();
+		this.packetCapture = hamsterAPI == null ? null : hamsterAPI.getPacketCapture();
+		this.packetTracer = hamsterAPI == null ? null : hamsterAPI.getPacketTracer();
+		this.metrics = hamsterAPI == null ? null : hamsterAPI.getMetrics();
 	}
 
 	@Override
 	protected void decode(final ChannelHandlerContext channelHandlerContext, final ByteBuf bytebuf,
 			final List<Object> list) throws Exception {
+		if (packetCapture != null && packetCapture.isCapturing(hamsterPlayer)) {
+			packetCapture.append(PacketDirection.SERVERBOUND, hamsterPlayer.getPlayer().getUniqueId(), bytebuf);
+		}
+
+		if (packetTracer != null && packetTracer.shouldTrace(hamsterPlayer)) {
+			packetTracer.record(PacketDirection.SERVERBOUND, hamsterPlayer, bytebuf);
+		}
+
+		// Packets decoded outside this frame's event must never replace it
+		channelHandlerContext.channel().attr(BufferIO.DECODED_PACKET).set(null);
+
 		final ByteBufWrapper byteBufWrapper = new ByteBufWrapper(bytebuf);
 		final boolean async = !server.isPrimaryThread();
 		final PacketDecodeEvent event = new PacketDecodeEvent(channelHandlerContext, hamsterPlayer, byteBufWrapper,
 				async);
+		final long start;
+
+		if (metrics != null) {
+			metrics.recordFrame(PacketDirection.SERVERBOUND, bytebuf.readableBytes());
+			start = System.nanoTime();
+		} else {
+			start = 0;
+		}
 
 		try {
 			this.pluginManager.callEvent(event);
@@ -36,10 +86,86 @@ public class HamsterDecoderHandler extends ByteToMessageDecoder {
 			exception.printStackTrace();
 		}
 
+		if (metrics != null) {
+			metrics.recordListener(ListenerEvent.DECODE, System.nanoTime() - start, event.isCancelled());
+		}
+
+		// Always clear the attachment so it never leaks into the next frame.
+		final BufferIO.DecodedPacket decoded = channelHandlerContext.channel().attr(BufferIO.DECODED_PACKET)
+				.getAndSet(null);
+		// Null unless decoded from this frame and the frame was not changed since
+		final Object decodedPacket = decoded == null ? null : decoded.getPacket(bytebuf);
+
 		if (!event.isCancelled()) {
-			list.add(bytebuf.readBytes(bytebuf.readableBytes()));
+			if (decodedPacket != null && canSkipDecoder(channelHandlerContext, decodedPacket)) {
+				bytebuf.skipBytes(bytebuf.readableBytes());
+				list.add(decodedPacket);
+			} else {
+				list.add(bytebuf.readBytes(bytebuf.readableBytes()));
+			}
 		} else {
 			bytebuf.skipBytes(bytebuf.readableBytes());
 		}
 	}
-}
\ No newline at end of file
+
+	/*
+	 * isTerminal is obfuscated on Spigot 1.20.5+, so it is found by its signature: a
+	 * default no-arg boolean method of the Packet interface. isSkippable has the same
+	 * signature, when the name is unknown a packet overriding either is not skipped.
+	 */
+	private static boolean overridesTerminal(final Class<?> type) throws NoSuchMethodException {
+		final Class<?> packetInterface = findPacketInterface(type);
+
+		if (packetInterface == null) {
+			throw new NoSuchMethodException("No Packet interface on " + type.getName());
+		}
+
+		final List<Method> candidates = new ArrayList<>();
+
+		for (final Method method : packetInterface.getDeclaredMethods()) {
+			if (method.isDefault() && method.getReturnType() == boolean.class && method.getParameterCount() == 0) {
+				if (method.getName().equals("isTerminal")) {
+					candidates.clear();
+					candidates.add(method);
+					break;
+				}
+
+				candidates.add(method);
+			}
+		}
+
+		// Versions without terminal packets never swap protocols in the decoder.
+		for (final Method candidate : candidates) {
+			if (type.getMethod(candidate.getName()).getDeclaringClass() != packetInterface) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static Class<?> findPacketInterface(final Class<?> type) {
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			for (final Class<?> implemented : current.getInterfaces()) {
+				if (implemented.getSimpleName().equals("Packet")) {
+					return implemented;
+				}
+
+				final Class<?> inherited = findPacketInterface(implemented);
+
+				if (inherited != null) {
+					return inherited;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	// The vanilla decoder is a ByteToMessageDecoder, which forwards non-ByteBuf messages untouched.
+	private boolean canSkipDecoder(final ChannelHandlerContext channelHandlerContext, final Object packet) {
+		return bufferIO != null && bufferIO.isDecodeOnce()
+				&& channelHandlerContext.pipeline().get("decoder") instanceof ByteToMessageDecoder
+				&& SKIPPABLE_PACKETS.get(packet.getClass());
+	}
+}
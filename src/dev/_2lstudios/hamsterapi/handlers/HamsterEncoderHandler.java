@@ -0,0 +1,50 @@
+package dev._2lstudios.hamsterapi.handlers;
+
+import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.capture.PacketCapture;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
+import dev._2lstudios.hamsterapi.trace.PacketTracer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Outbound counterpart of {@link HamsterDecoderHandler}. Sits right after the
+ * vanilla encoder, so it sees every packet as an uncompressed id + body frame.
+ */
+public class HamsterEncoderHandler extends ChannelOutboundHandlerAdapter {
+	private final HamsterPlayer hamsterPlayer;
+	private final PacketCapture packetCapture;
+	private final PacketTracer packetTracer;
+	private final HamsterMetrics metrics;
+
+	public HamsterEncoderHandler(final HamsterPlayer hamsterPlayer) {
+		final HamsterAPI hamsterAPI = HamsterAPI.getInstance();
+
+		this.hamsterPlayer = hamsterPlayer;
+		this.packetCapture = hamsterAPI == null ? null : hamsterAPI.getPacketCapture();
+		this.packetTracer = hamsterAPI == null ? null : hamsterAPI.getPacketTracer();
+		this.metrics = hamsterAPI == null ? null : hamsterAPI.getMetrics();
+	}
+
+	@Override
+	public void write(final ChannelHandlerContext channelHandlerContext, final Object msg,
+			final ChannelPromise channelPromise) throws Exception {
+		if (msg instanceof ByteBuf && packetCapture != null && packetCapture.isCapturing(hamsterPlayer)) {
+			packetCapture.append(PacketDirection.CLIENTBOUND, hamsterPlayer.getPlayer().getUniqueId(), (ByteBuf) msg);
+		}
+
+		if (msg instanceof ByteBuf && metrics != null) {
+			metrics.recordFrame(PacketDirection.CLIENTBOUND, ((ByteBuf) msg).readableBytes());
+		}
+
+		if (msg instanceof ByteBuf && packetTracer != null && packetTracer.shouldTrace(hamsterPlayer)) {
+			packetTracer.record(PacketDirection.CLIENTBOUND, hamsterPlayer, (ByteBuf) msg);
+		}
+
+		super.write(channelHandlerContext, msg, channelPromise);
+	}
+}
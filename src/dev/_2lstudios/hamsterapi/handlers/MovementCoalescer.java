@@ -0,0 +1,474 @@
+package dev._2lstudios.hamsterapi.handlers;
+
+import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.utils.FieldAccessor;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers the relative move, look and head rotation packets of one connection
+ * until the next flush, merging the ones of the same entity: deltas are added
+ * up and only the last rotation is kept. Packets are never mutated, a merge
+ * builds a new packet and a single buffered packet is sent as it was.
+ * <p>
+ * Pending packets of an entity are written before any other packet about it
+ * (spawn, metadata, velocity...), and every pending packet before the packets
+ * that may depend on them: entity removals, bundles, respawn, login and the
+ * switch to the configuration protocol. Other packets (chat, sounds, blocks,
+ * keepalive...) pass the buffered moves, so moves merge across the whole
+ * flush. A delta too large for one packet writes the accumulated move first. An
+ * absolute teleport replaces the pending move, a relative one (1.21.2+) is
+ * written after it.
+ * <p>
+ * Supports the byte deltas of 1.8, the int fields with long constructors of
+ * 1.9-1.13 and the short deltas of 1.14+. Other layouts are sent unmerged and
+ * reported once.
+ * <p>
+ * Not thread-safe, only used from the channel's event loop.
+ */
+class MovementCoalescer {
+	private static final int OTHER = 0, MOVE = 1, LOOK = 2, MOVE_LOOK = 3, HEAD_ROTATION = 4, ENTITY = 5,
+			TELEPORT = 6, BARRIER = 7;
+	// Packets about a single entity, held in their first int field
+	private static final String[] ENTITY_PACKETS = { "PacketPlayOutEntityMetadata", "ClientboundSetEntityDataPacket",
+			"PacketPlayOutEntityVelocity", "ClientboundSetEntityMotionPacket", "PacketPlayOutEntityEquipment",
+			"ClientboundSetEquipmentPacket", "PacketPlayOutAnimation", "ClientboundAnimatePacket",
+			"PacketPlayOutEntityStatus", "ClientboundEntityEventPacket", "PacketPlayOutEntityEffect",
+			"ClientboundUpdateMobEffectPacket", "PacketPlayOutRemoveEntityEffect", "ClientboundRemoveMobEffectPacket",
+			"PacketPlayOutUpdateAttributes", "ClientboundUpdateAttributesPacket", "PacketPlayOutMount",
+			"ClientboundSetPassengersPacket", "PacketPlayOutAttachEntity", "ClientboundSetEntityLinkPacket",
+			"PacketPlayOutSpawnEntity", "ClientboundAddEntityPacket", "PacketPlayOutSpawnEntityLiving",
+			"ClientboundAddMobPacket", "PacketPlayOutNamedEntitySpawn", "ClientboundAddPlayerPacket",
+			"PacketPlayOutSpawnEntityExperienceOrb", "ClientboundAddExperienceOrbPacket",
+			"PacketPlayOutSpawnEntityPainting", "ClientboundAddPaintingPacket" };
+	// Packets every pending move must be written before
+	private static final String[] BARRIER_PACKETS = { "PacketPlayOutEntityDestroy", "ClientboundRemoveEntitiesPacket",
+			"ClientboundBundlePacket", "ClientboundBundleDelimiterPacket", "PacketPlayOutRespawn",
+			"ClientboundRespawnPacket", "PacketPlayOutLogin", "ClientboundLoginPacket",
+			"ClientboundStartConfigurationPacket" };
+	private static final AtomicBoolean UNSUPPORTED_REPORTED = new AtomicBoolean();
+	private static final ClassValue<PacketLayout> LAYOUTS = new ClassValue<PacketLayout>() {
+		@Override
+		protected PacketLayout computeValue(final Class<?> type) {
+			final HamsterAPI hamsterAPI = HamsterAPI.getInstance();
+
+			try {
+				return PacketLayout.resolve(hamsterAPI.getReflection(), type);
+			} catch (final Exception e) {
+				if (UNSUPPORTED_REPORTED.compareAndSet(false, true)) {
+					hamsterAPI.getLogger().warning("Movement coalescing is not supported on this server, "
+							+ type.getSimpleName() + " packets are sent unmerged: " + e.getMessage());
+				}
+				return PacketLayout.OTHER_LAYOUT;
+			}
+		}
+	};
+
+	private final Map<Integer, PendingMovement> pending = new LinkedHashMap<>();
+
+	/**
+	 * Buffers a movement packet, or writes the pending packets it must follow.
+	 *
+	 * @return true if the packet was buffered and must not be written.
+	 */
+	boolean write(final ChannelHandlerContext ctx, final Object packet, final ChannelPromise promise)
+			throws ReflectiveOperationException {
+		final PacketLayout layout = LAYOUTS.get(packet.getClass());
+
+		if (layout.kind == OTHER) {
+			return false;
+		}
+
+		if (layout.kind == BARRIER) {
+			flushAll(ctx);
+			return false;
+		}
+
+		final int entityId = layout.entityId.getInt(packet);
+
+		if (layout.kind == ENTITY) {
+			flush(ctx, pending.remove(entityId));
+			return false;
+		}
+
+		if (layout.kind == TELEPORT) {
+			final PendingMovement movement = pending.remove(entityId);
+
+			// An absolute teleport sets position and rotation, only the head rotation is still needed
+			if (movement != null && !layout.isRelative(packet)) {
+				movement.dropMovement();
+			}
+
+			flush(ctx, movement);
+			return false;
+		}
+
+		PendingMovement movement = pending.get(entityId);
+
+		if (movement == null) {
+			movement = new PendingMovement(entityId);
+			pending.put(entityId, movement);
+		}
+
+		if (layout.kind == HEAD_ROTATION) {
+			movement.setHeadRotation(packet, promise);
+			return true;
+		}
+
+		if (!movement.canAdd(layout, packet)) {
+			// Overflow, the accumulated move goes first
+			flush(ctx, pending.remove(entityId));
+			movement = new PendingMovement(entityId);
+			pending.put(entityId, movement);
+		}
+
+		movement.add(layout, packet, promise);
+		return true;
+	}
+
+	// Writes every pending packet, called before the channel flushes
+	void flushAll(final ChannelHandlerContext ctx) throws ReflectiveOperationException {
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		final Iterator<PendingMovement> iterator = pending.values().iterator();
+
+		while (iterator.hasNext()) {
+			final PendingMovement movement = iterator.next();
+
+			iterator.remove();
+			flush(ctx, movement);
+		}
+	}
+
+	boolean hasPending() {
+		return !pending.isEmpty();
+	}
+
+	private static void flush(final ChannelHandlerContext ctx, final PendingMovement movement)
+			throws ReflectiveOperationException {
+		if (movement == null) {
+			return;
+		}
+
+		if (movement.count > 0) {
+			ctx.write(movement.build(), movement.promise);
+		}
+
+		if (movement.headRotation != null) {
+			ctx.write(movement.headRotation, movement.headPromise);
+		}
+	}
+
+	private static final class PendingMovement {
+		private final int entityId;
+		private PacketLayout layout;
+		private Object packet;
+		private ChannelPromise promise;
+		// Packets merged into this one
+		private int count = 0;
+		private int deltaX, deltaY, deltaZ;
+		private boolean moved, rotated, onGround;
+		private byte yaw, pitch;
+		private Object headRotation;
+		private ChannelPromise headPromise;
+
+		private PendingMovement(final int entityId) {
+			this.entityId = entityId;
+		}
+
+		private boolean canAdd(final PacketLayout layout, final Object packet) {
+			if (count == 0 || !layout.moves()) {
+				return true;
+			}
+
+			final int max = layout.maxDelta;
+
+			return fits(deltaX + layout.deltaX.getInt(packet), max) && fits(deltaY + layout.deltaY.getInt(packet), max)
+					&& fits(deltaZ + layout.deltaZ.getInt(packet), max);
+		}
+
+		private static boolean fits(final int delta, final int max) {
+			return delta >= -max - 1 && delta <= max;
+		}
+
+		private void add(final PacketLayout layout, final Object packet, final ChannelPromise promise) {
+			if (this.promise != null) {
+				this.promise.trySuccess();
+			}
+
+			if (layout.moves()) {
+				deltaX += layout.deltaX.getInt(packet);
+				deltaY += layout.deltaY.getInt(packet);
+				deltaZ += layout.deltaZ.getInt(packet);
+				moved = true;
+			}
+
+			if (layout.rotates()) {
+				yaw = (byte) layout.yaw.getInt(packet);
+				pitch = (byte) layout.pitch.getInt(packet);
+				rotated = true;
+			}
+
+			onGround = layout.onGround.getBoolean(packet);
+			this.layout = layout;
+			this.packet = packet;
+			this.promise = promise;
+			count++;
+		}
+
+		private void setHeadRotation(final Object packet, final ChannelPromise promise) {
+			if (headPromise != null) {
+				headPromise.trySuccess();
+			}
+
+			this.headRotation = packet;
+			this.headPromise = promise;
+		}
+
+		private void dropMovement() {
+			if (promise != null) {
+				promise.trySuccess();
+			}
+
+			count = 0;
+			promise = null;
+		}
+
+		private Object build() throws ReflectiveOperationException {
+			if (count == 1) {
+				return packet;
+			}
+
+			return layout.family.create(entityId, moved, rotated, deltaX, deltaY, deltaZ, yaw, pitch, onGround);
+		}
+	}
+
+	// Where a movement packet keeps its values, resolved once per packet class
+	private static final class PacketLayout {
+		private static final PacketLayout OTHER_LAYOUT = new PacketLayout(OTHER, null, null);
+		private static final PacketLayout BARRIER_LAYOUT = new PacketLayout(BARRIER, null, null);
+
+		private final int kind;
+		private final FieldAccessor entityId;
+		private final MoveFamily family;
+		private FieldAccessor deltaX, deltaY, deltaZ, yaw, pitch, onGround;
+		// Relative flags of 1.21.2+ teleports, null before
+		private FieldAccessor relatives;
+		private int maxDelta;
+
+		private PacketLayout(final int kind, final FieldAccessor entityId, final MoveFamily family) {
+			this.kind = kind;
+			this.entityId = entityId;
+			this.family = family;
+		}
+
+		private boolean moves() {
+			return kind == MOVE || kind == MOVE_LOOK;
+		}
+
+		private boolean rotates() {
+			return kind == LOOK || kind == MOVE_LOOK;
+		}
+
+		private boolean isRelative(final Object packet) {
+			if (relatives == null) {
+				return false;
+			}
+
+			final Object flags = relatives.get(packet);
+			return flags instanceof Collection && !((Collection<?>) flags).isEmpty();
+		}
+
+		private static PacketLayout resolve(final Reflection reflection, final Class<?> type)
+				throws ReflectiveOperationException {
+			final String name = type.getSimpleName();
+
+			if (name.equals("PacketPlayOutEntityHeadRotation") || name.equals("ClientboundRotateHeadPacket")) {
+				return new PacketLayout(HEAD_ROTATION, find(reflection, type, int.class, 0), null);
+			}
+
+			if (name.equals("PacketPlayOutEntityTeleport") || name.equals("ClientboundTeleportEntityPacket")) {
+				final PacketLayout layout = new PacketLayout(TELEPORT, find(reflection, type, int.class, 0), null);
+
+				layout.relatives = reflection.getFieldAccessor(type, Collection.class);
+				return layout;
+			}
+
+			for (final String entityPacket : ENTITY_PACKETS) {
+				if (name.equals(entityPacket)) {
+					return new PacketLayout(ENTITY, find(reflection, type, int.class, 0), null);
+				}
+			}
+
+			for (final String barrierPacket : BARRIER_PACKETS) {
+				if (name.equals(barrierPacket)) {
+					return BARRIER_LAYOUT;
+				}
+			}
+
+			final int kind = moveKind(name);
+
+			if (kind == OTHER) {
+				return OTHER_LAYOUT;
+			}
+
+			// Fields are declared in the shared parent (PacketPlayOutEntity, ClientboundMoveEntityPacket)
+			final Class<?> parent = type.getSuperclass();
+			final MoveFamily family = MoveFamily.of(parent);
+			final PacketLayout layout = new PacketLayout(kind, find(reflection, parent, int.class, 0), family);
+			final Class<?> fieldType = family.fieldType();
+			// 1.9-1.13 keep the entity id and the deltas in int fields
+			final int deltaIndex = fieldType == int.class ? 1 : 0;
+
+			layout.deltaX = find(reflection, parent, fieldType, deltaIndex);
+			layout.deltaY = find(reflection, parent, fieldType, deltaIndex + 1);
+			layout.deltaZ = find(reflection, parent, fieldType, deltaIndex + 2);
+			// Before 1.9 the deltas are bytes too, the rotation follows them
+			final int rotationIndex = fieldType == byte.class ? 3 : 0;
+			layout.yaw = find(reflection, parent, byte.class, rotationIndex);
+			layout.pitch = find(reflection, parent, byte.class, rotationIndex + 1);
+			layout.onGround = find(reflection, parent, boolean.class, 0);
+			// Deltas are sent as shorts since 1.9, whatever the field type
+			layout.maxDelta = fieldType == byte.class ? Byte.MAX_VALUE : Short.MAX_VALUE;
+			return layout;
+		}
+
+		private static FieldAccessor find(final Reflection reflection, final Class<?> owner, final Class<?> type,
+				final int index) throws NoSuchFieldException {
+			final FieldAccessor accessor = reflection.getFieldAccessor(owner, type, index);
+
+			if (accessor == null) {
+				throw new NoSuchFieldException(type.getSimpleName() + " #" + index + " in " + owner.getSimpleName());
+			}
+
+			return accessor;
+		}
+
+		private static int moveKind(final String name) {
+			if (name.equals("PacketPlayOutRelEntityMoveLook") || name.equals("PosRot")) {
+				return MOVE_LOOK;
+			}
+
+			if (name.equals("PacketPlayOutRelEntityMove") || name.equals("Pos")) {
+				return MOVE;
+			}
+
+			if (name.equals("PacketPlayOutEntityLook") || name.equals("Rot")) {
+				return LOOK;
+			}
+
+			return OTHER;
+		}
+	}
+
+	// Constructors of the move, look and move look packets of a version
+	private static final class MoveFamily {
+		// Deltas are passed as ints and cast to the constructor's type
+		private static final MethodType MOVE_TYPE = MethodType.methodType(Object.class, int.class, int.class,
+				int.class, int.class, boolean.class);
+		private static final MethodType LOOK_TYPE = MethodType.methodType(Object.class, int.class, byte.class,
+				byte.class, boolean.class);
+		private static final MethodType MOVE_LOOK_TYPE = MethodType.methodType(Object.class, int.class, int.class,
+				int.class, int.class, byte.class, byte.class, boolean.class);
+		private static final ClassValue<MoveFamily> FAMILIES = new ClassValue<MoveFamily>() {
+			@Override
+			protected MoveFamily computeValue(final Class<?> parent) {
+				return new MoveFamily(parent);
+			}
+		};
+
+		private final Class<?> deltaType;
+		private final MethodHandle move, look, moveLook;
+
+		private MoveFamily(final Class<?> parent) {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle move = null, look = null, moveLook = null;
+			Class<?> deltaType = short.class;
+
+			for (final Class<?> nestedClass : parent.getDeclaredClasses()) {
+				final int kind = PacketLayout.moveKind(nestedClass.getSimpleName());
+
+				for (final Constructor<?> constructor : nestedClass.getDeclaredConstructors()) {
+					final Class<?>[] types = constructor.getParameterTypes();
+
+					if (types.length < 4 || types[0] != int.class) {
+						continue;
+					}
+
+					try {
+						if (kind == MOVE && types.length == 5) {
+							move = handle(lookup, constructor, MOVE_TYPE);
+							deltaType = types[1];
+						} else if (kind == LOOK && types.length == 4) {
+							look = handle(lookup, constructor, LOOK_TYPE);
+						} else if (kind == MOVE_LOOK && types.length == 7) {
+							moveLook = handle(lookup, constructor, MOVE_LOOK_TYPE);
+						}
+					} catch (final IllegalAccessException | RuntimeException e) {
+						// Left null, the family is reported as unsupported
+					}
+				}
+			}
+
+			this.deltaType = deltaType;
+			this.move = move;
+			this.look = look;
+			this.moveLook = moveLook;
+		}
+
+		private static MethodHandle handle(final MethodHandles.Lookup lookup, final Constructor<?> constructor,
+				final MethodType type) throws IllegalAccessException {
+			constructor.setAccessible(true);
+			return MethodHandles.explicitCastArguments(lookup.unreflectConstructor(constructor), type);
+		}
+
+		private static MoveFamily of(final Class<?> parent) throws NoSuchMethodException {
+			final MoveFamily family = FAMILIES.get(parent);
+
+			if (family.move == null || family.look == null || family.moveLook == null) {
+				throw new NoSuchMethodException("Movement packet constructors of " + parent.getSimpleName());
+			}
+
+			return family;
+		}
+
+		private Object create(final int entityId, final boolean moved, final boolean rotated, final int deltaX,
+				final int deltaY, final int deltaZ, final byte yaw, final byte pitch, final boolean onGround)
+				throws ReflectiveOperationException {
+			try {
+				if (moved && rotated) {
+					return (Object) moveLook.invokeExact(entityId, deltaX, deltaY, deltaZ, yaw, pitch, onGround);
+				}
+
+				if (moved) {
+					return (Object) move.invokeExact(entityId, deltaX, deltaY, deltaZ, onGround);
+				}
+
+				return (Object) look.invokeExact(entityId, yaw, pitch, onGround);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable throwable) {
+				throw new InvocationTargetException(throwable);
+			}
+		}
+
+		// 1.9-1.13 constructors take long deltas and store them in int fields
+		private Class<?> fieldType() {
+			return deltaType == long.class ? int.class : deltaType;
+		}
+	}
+}
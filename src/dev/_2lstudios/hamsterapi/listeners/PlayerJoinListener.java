@@ -3,6 +3,8 @@ package dev._2lstudios.hamsterapi.listeners;
 import dev._2lstudios.hamsterapi.HamsterAPI;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayerManager;
+import dev._2lstudios.hamsterapi.hamsterplayer.PipelineHealthChecker;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics;
 import dev._2lstudios.hamsterapi.utils.FoliaAPI;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -15,10 +17,14 @@ import java.util.logging.Logger;
 public class PlayerJoinListener implements Listener {
     private final Logger logger;
     private final HamsterPlayerManager hamsterPlayerManager;
+    private final HamsterMetrics metrics;
+    private final PipelineHealthChecker pipelineHealthChecker;
 
     public PlayerJoinListener(final HamsterAPI hamsterAPI) {
         this.logger = hamsterAPI.getLogger();
         this.hamsterPlayerManager = hamsterAPI.getHamsterPlayerManager();
+        this.metrics = hamsterAPI.getMetrics();
+        this.pipelineHealthChecker = hamsterAPI.getPipelineHealthChecker();
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -32,6 +38,10 @@ public class PlayerJoinListener implements Listener {
             // Retry after 5 ticks
             FoliaAPI.runTaskAsync(() -> {
                 if (player != null && player.isOnline() && hamsterPlayerManager.get(player) != null) {
+                    if (metrics != null) {
+                        metrics.recordInjectionRetry();
+                    }
+
                     if (hamsterPlayer.tryInject()) {
                         logger.info("Successfully injected player " + player.getName() + " after failing!");
                     } else {
@@ -39,11 +49,13 @@ public class PlayerJoinListener implements Listener {
                     }
                 }
             }, 5L);
-            FoliaAPI.runTaskAsync(() -> {
-                if (player != null && player.isOnline() && hamsterPlayerManager.get(player) != null) {
-                    hamsterPlayer.checkAndReorderHandlers();
-                }
-            }, 10L);
         }
+
+        // Plugins injecting after us on join are caught here instead of on the next periodic check
+        FoliaAPI.runTaskAsync(() -> {
+            if (player.isOnline() && hamsterPlayerManager.get(player) == hamsterPlayer) {
+                pipelineHealthChecker.requestCheck(hamsterPlayer);
+            }
+        }, 10L);
     }
 }
\ No newline at end of file
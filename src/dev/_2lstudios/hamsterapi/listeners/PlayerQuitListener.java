@@ -1,6 +1,9 @@
 package dev._2lstudios.hamsterapi.listeners;
 
+import dev._2lstudios.hamsterapi.bossbar.BossBarManager;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
 import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayerManager;
+import dev._2lstudios.hamsterapi.sidebar.SidebarManager;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -8,13 +11,25 @@ import org.bukkit.event.player.PlayerQuitEvent;
 
 public class PlayerQuitListener implements Listener {
     private final HamsterPlayerManager hamsterPlayerManager;
+    private final BossBarManager bossBarManager;
+    private final SidebarManager sidebarManager;
 
-    public PlayerQuitListener(final HamsterPlayerManager hamsterPlayerManager) {
+    public PlayerQuitListener(final HamsterPlayerManager hamsterPlayerManager, final BossBarManager bossBarManager,
+            final SidebarManager sidebarManager) {
         this.hamsterPlayerManager = hamsterPlayerManager;
+        this.bossBarManager = bossBarManager;
+        this.sidebarManager = sidebarManager;
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onPlayerQuit(final PlayerQuitEvent event) {
+        final HamsterPlayer hamsterPlayer = hamsterPlayerManager.get(event.getPlayer());
+
+        if (hamsterPlayer != null) {
+            bossBarManager.removeViewer(hamsterPlayer);
+            sidebarManager.removeSidebar(hamsterPlayer);
+        }
+
         hamsterPlayerManager.remove(event.getPlayer());
     }
 }
\ No newline at end of file
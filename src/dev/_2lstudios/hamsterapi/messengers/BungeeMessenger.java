@@ -1,34 +1,340 @@
 package dev._2lstudios.hamsterapi.messengers;
 
+import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
+import dev._2lstudios.hamsterapi.Debug;
 import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.utils.AsyncExecutor;
 import dev._2lstudios.hamsterapi.utils.BukkitUtils;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class BungeeMessenger implements PluginMessageListener {
+	public static final String CHANNEL = "BungeeCord";
+	// Drops are logged at most once per interval
+	private static final long DROP_WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
 
-public class BungeeMessenger {
 	private final HamsterAPI instance;
+	// Messages waiting for a carrier player, bounded by maxQueueSize
+	private final Queue<QueuedMessage> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final Map<String, SubChannelStats> stats = new ConcurrentHashMap<>();
+	private final int maxQueueSize;
+	private final int batchSize;
+	private final AtomicLong lastDropWarning = new AtomicLong(-DROP_WARNING_INTERVAL);
+	private final AtomicInteger droppedSinceWarning = new AtomicInteger();
+	// Kept while online so every message goes over the same connection
+	private volatile Player carrier;
+	// In flight requests and cached answers, keyed by subchannel + arguments
+	private final Map<String, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<>();
+	private final Map<String, CachedResponse> responseCache = new ConcurrentHashMap<>();
+	// Number of request arguments the proxy echoes back, per subchannel
+	private final Map<String, Integer> echoedArguments = new ConcurrentHashMap<>();
+	private final long requestTimeout;
+	private final long cacheTtl;
 
 	public BungeeMessenger(final HamsterAPI instance) {
 		this.instance = instance;
+		this.maxQueueSize = Math.max(0, instance.getConfig().getInt("bungee.queue-size", 1024));
+		this.batchSize = Math.max(1, instance.getConfig().getInt("bungee.batch-size", 64));
+		this.requestTimeout = Math.max(1L, instance.getConfig().getLong("bungee.request-timeout-ms", 5000L));
+		this.cacheTtl = Math.max(0L, instance.getConfig().getLong("bungee.cache-ttl-ms", 1000L));
+
+		FoliaAPI.runTaskTimer(ignored -> flush(), 1L, 1L);
 	}
 
 	public void sendPluginMessage(final String subChannel, final String... args) {
-		final Player messenger = BukkitUtils.getRandomPlayer();
+		final ByteArrayDataOutput out = ByteStreams.newDataOutput();
+
+		out.writeUTF(subChannel);
+
+		for (final String arg : args) {
+			out.writeUTF(arg == null ? "" : arg);
+		}
+
+		sendPluginMessage(subChannel, out.toByteArray());
+	}
+
+	// Sends a pre-encoded message (subchannel included in the data)
+	public void sendPluginMessage(final String subChannel, final byte[] data) {
+		final SubChannelStats subChannelStats = getStats(subChannel);
+
+		// Fast path, nothing waiting so order is preserved
+		if (queueSize.get() == 0) {
+			final Player messenger = getCarrier();
+
+			if (messenger != null) {
+				messenger.sendPluginMessage((Plugin) instance, CHANNEL, data);
+				subChannelStats.sent.increment();
+				return;
+			}
+		}
+
+		if (queueSize.incrementAndGet() > maxQueueSize) {
+			queueSize.decrementAndGet();
+			subChannelStats.dropped.increment();
+			warnDropped(subChannel);
+			return;
+		}
+
+		queue.add(new QueuedMessage(subChannelStats, data));
+		subChannelStats.queued.increment();
+	}
+
+	/**
+	 * Sends a query to the proxy and completes with its parsed answer. The
+	 * answer is matched by subchannel and by the arguments, which the proxy
+	 * echoes back before its payload. Identical queries in flight share one
+	 * future, and answers are cached for bungee.cache-ttl-ms.
+	 *
+	 * @param parser reads the answer payload, after the echoed arguments.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> request(final String subChannel, final Function<ByteArrayDataInput, T> parser,
+			final String... args) {
+		final String key = getRequestKey(subChannel, Arrays.asList(args));
+		final CachedResponse cached = responseCache.get(key);
+
+		if (cached != null) {
+			if (cached.expiresAt > System.currentTimeMillis()) {
+				return CompletableFuture.completedFuture((T) cached.value);
+			}
+
+			responseCache.remove(key, cached);
+		}
+
+		final PendingRequest<T> request = new PendingRequest<>(parser);
+		final PendingRequest<?> pending = pendingRequests.putIfAbsent(key, request);
+
+		if (pending != null) {
+			return (CompletableFuture<T>) pending.future;
+		}
+
+		echoedArguments.put(subChannel, args.length);
+		AsyncExecutor.schedule(() -> {
+			if (pendingRequests.remove(key, request)) {
+				request.future.completeExceptionally(
+						new TimeoutException("No answer from the proxy for " + subChannel));
+			}
+		}, requestTimeout, TimeUnit.MILLISECONDS);
+		sendPluginMessage(subChannel, args);
+
+		return request.future;
+	}
+
+	// Online players in a server, or in the whole network with "ALL"
+	public CompletableFuture<Integer> getPlayerCount(final String server) {
+		return request("PlayerCount", ByteArrayDataInput::readInt, server);
+	}
+
+	// Names of the players in a server, or in the whole network with "ALL"
+	public CompletableFuture<List<String>> getPlayerList(final String server) {
+		return request("PlayerList", BungeeMessenger::readList, server);
+	}
+
+	public CompletableFuture<List<String>> getServers() {
+		return request("GetServers", BungeeMessenger::readList);
+	}
+
+	private static List<String> readList(final ByteArrayDataInput in) {
+		final String list = in.readUTF();
+
+		return list.isEmpty() ? Collections.<String>emptyList()
+				: Collections.unmodifiableList(Arrays.asList(list.split(", ")));
+	}
+
+	private static String getRequestKey(final String subChannel, final List<String> args) {
+		final StringBuilder key = new StringBuilder(subChannel);
+
+		for (final String arg : args) {
+			key.append('\0').append(arg == null ? "" : arg);
+		}
+
+		return key.toString();
+	}
+
+	@Override
+	public void onPluginMessageReceived(final String channel, final Player player, final byte[] message) {
+		if (!CHANNEL.equals(channel) || pendingRequests.isEmpty()) {
+			return;
+		}
+
+		try {
+			final ByteArrayDataInput in = ByteStreams.newDataInput(message);
+			final String subChannel = in.readUTF();
+			final Integer echoed = echoedArguments.get(subChannel);
+
+			if (echoed == null) {
+				return;
+			}
+
+			final String[] args = new String[echoed];
+
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
 
-		if (messenger != null) {
-			final ByteArrayDataOutput out = ByteStreams.newDataOutput();
+			final String key = getRequestKey(subChannel, Arrays.asList(args));
+			final PendingRequest<?> pending = pendingRequests.remove(key);
 
-			out.writeUTF(subChannel);
+			if (pending != null) {
+				final Object value = pending.complete(in);
 
-			for (final String arg : args) {
-				out.writeUTF(arg == null ? "" : arg);
+				if (cacheTtl > 0 && value != null) {
+					responseCache.put(key, new CachedResponse(value, System.currentTimeMillis() + cacheTtl));
+				}
 			}
+		} catch (final Exception e) {
+			// Not an answer we understand, e.g. a message of another plugin
+			Debug.warn("Failed to read BungeeCord message: " + e.getMessage());
+		}
+	}
 
-			messenger.sendPluginMessage((Plugin) instance, "BungeeCord", out.toByteArray());
+	// Sends up to batchSize queued messages, runs every tick
+	private void flush() {
+		if (queueSize.get() == 0) {
+			return;
+		}
+
+		final Player messenger = getCarrier();
+
+		if (messenger == null) {
+			return;
+		}
+
+		for (int i = 0; i < batchSize; i++) {
+			final QueuedMessage message = queue.poll();
+
+			if (message == null) {
+				break;
+			}
+
+			queueSize.decrementAndGet();
+			messenger.sendPluginMessage((Plugin) instance, CHANNEL, message.data);
+			message.stats.sent.increment();
+		}
+	}
+
+	// Warns on the first drop of every interval, Debug gets the others
+	private void warnDropped(final String subChannel) {
+		final int dropped = droppedSinceWarning.incrementAndGet();
+		final long now = System.currentTimeMillis();
+		final long last = lastDropWarning.get();
+
+		if (now - last >= DROP_WARNING_INTERVAL && lastDropWarning.compareAndSet(last, now)) {
+			droppedSinceWarning.addAndGet(-dropped);
+			instance.getLogger().warning("BungeeCord message queue is full (" + maxQueueSize
+					+ " messages), dropped " + dropped + " message(s), the last on channel " + subChannel
+					+ ". Raise bungee.queue-size if no player is online for long.");
 		} else {
-			instance.getLogger().warning("No player found to send PluginMessage on channel " + subChannel + "!");
+			Debug.warn("BungeeCord message queue is full, dropped message on channel " + subChannel + "!");
+		}
+	}
+
+	private Player getCarrier() {
+		Player current = carrier;
+
+		if (current == null || !current.isOnline()) {
+			current = BukkitUtils.getRandomPlayer();
+			carrier = current;
+		}
+
+		return current;
+	}
+
+	private SubChannelStats getStats(final String subChannel) {
+		final SubChannelStats subChannelStats = stats.get(subChannel);
+
+		return subChannelStats != null ? subChannelStats
+				: stats.computeIfAbsent(subChannel, key -> new SubChannelStats());
+	}
+
+	// Messages waiting for a player to carry them
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+
+	// Per subchannel counters, keyed by subchannel name
+	public Map<String, SubChannelStats> getStats() {
+		return Collections.unmodifiableMap(stats);
+	}
+
+	public static class SubChannelStats {
+		private final LongAdder sent = new LongAdder();
+		private final LongAdder queued = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+
+		public long getSent() {
+			return sent.sum();
+		}
+
+		// Messages that had to wait for a carrier player
+		public long getQueued() {
+			return queued.sum();
+		}
+
+		// Messages lost because the queue was full
+		public long getDropped() {
+			return dropped.sum();
+		}
+	}
+
+	// A future that knows how to parse its own answer
+	private static class PendingRequest<T> {
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private final Function<ByteArrayDataInput, T> parser;
+
+		private PendingRequest(final Function<ByteArrayDataInput, T> parser) {
+			this.parser = parser;
+		}
+
+		private T complete(final ByteArrayDataInput in) {
+			try {
+				final T value = parser.apply(in);
+				future.complete(value);
+				return value;
+			} catch (final RuntimeException e) {
+				future.completeExceptionally(e);
+				return null;
+			}
+		}
+	}
+
+	private static class CachedResponse {
+		private final Object value;
+		private final long expiresAt;
+
+		private CachedResponse(final Object value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private static class QueuedMessage {
+		private final SubChannelStats stats;
+		private final byte[] data;
+
+		private QueuedMessage(final SubChannelStats stats, final byte[] data) {
+			this.stats = stats;
+			this.data = data;
 		}
 	}
 }
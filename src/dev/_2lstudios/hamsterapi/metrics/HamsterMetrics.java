@@ -0,0 +1,217 @@
+package dev._2lstudios.hamsterapi.metrics;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.utils.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters updated from the packet path: frames and bytes per direction,
+ * packets per type, listener latencies and cancellations, and injections.
+ * Recording is a couple of LongAdder increments. {@link #sample()} turns the
+ * totals into per second rates and latency percentiles of the last interval,
+ * which is what {@link MetricsRegistry} exposes through JMX.
+ */
+public class HamsterMetrics {
+	private final ClassValue<LongAdder[]> typeCounters = new ClassValue<LongAdder[]>() {
+		@Override
+		protected LongAdder[] computeValue(final Class<?> type) {
+			return countersByType.computeIfAbsent(typeName(type),
+					key -> new LongAdder[] { new LongAdder(), new LongAdder() });
+		}
+	};
+	private final Map<String, LongAdder[]> countersByType = new ConcurrentHashMap<>();
+	private final LongAdder[] frames = { new LongAdder(), new LongAdder() };
+	private final LongAdder[] bytes = { new LongAdder(), new LongAdder() };
+	private final LatencyHistogram[] latencies = { new LatencyHistogram(), new LatencyHistogram(),
+			new LatencyHistogram() };
+	private final LongAdder[] cancelled = { new LongAdder(), new LongAdder(), new LongAdder() };
+	private final LongAdder injections = new LongAdder();
+	private final LongAdder failedInjections = new LongAdder();
+	private final LongAdder injectionRetries = new LongAdder();
+	private final LongAdder pipelineRepairs = new LongAdder();
+	// Snapshot of the last interval, written by sample()
+	private volatile Snapshot snapshot = new Snapshot();
+	private long[] lastFrames = new long[2];
+	private long[] lastBytes = new long[2];
+	private Map<String, long[]> lastTypes = new HashMap<>();
+	private long lastSample = System.nanoTime();
+
+	// Nested packets are named after their outer class too, Pos and Rot exist in several packets
+	private static String typeName(final Class<?> type) {
+		final Class<?> enclosingClass = type.getEnclosingClass();
+
+		return enclosingClass == null ? type.getSimpleName()
+				: typeName(enclosingClass) + "$" + type.getSimpleName();
+	}
+
+	public void recordFrame(final PacketDirection direction, final int size) {
+		frames[direction.ordinal()].increment();
+		bytes[direction.ordinal()].add(size);
+	}
+
+	public void recordPacket(final PacketDirection direction, final Class<?> type) {
+		typeCounters.get(type)[direction.ordinal()].increment();
+	}
+
+	public void recordListener(final ListenerEvent event, final long nanos, final boolean cancelled) {
+		latencies[event.ordinal()].record(nanos);
+
+		if (cancelled) {
+			this.cancelled[event.ordinal()].increment();
+		}
+	}
+
+	public void recordInjection(final boolean success) {
+		(success ? injections : failedInjections).increment();
+	}
+
+	public void recordInjectionRetry() {
+		injectionRetries.increment();
+	}
+
+	public void recordPipelineRepairs(final int repairs) {
+		pipelineRepairs.add(repairs);
+	}
+
+	public long getFrames(final PacketDirection direction) {
+		return frames[direction.ordinal()].sum();
+	}
+
+	public long getBytes(final PacketDirection direction) {
+		return bytes[direction.ordinal()].sum();
+	}
+
+	public long getCancelled(final ListenerEvent event) {
+		return cancelled[event.ordinal()].sum();
+	}
+
+	public long getInjections() {
+		return injections.sum();
+	}
+
+	public long getFailedInjections() {
+		return failedInjections.sum();
+	}
+
+	public long getInjectionRetries() {
+		return injectionRetries.sum();
+	}
+
+	// Handlers put back in place by the pipeline health checker
+	public long getPipelineRepairs() {
+		return pipelineRepairs.sum();
+	}
+
+	// Packets seen by the channel handler per type since the start
+	public Map<String, Long> getPackets(final PacketDirection direction) {
+		final Map<String, Long> packets = new HashMap<>();
+
+		for (final Map.Entry<String, LongAdder[]> entry : countersByType.entrySet()) {
+			final long count = entry.getValue()[direction.ordinal()].sum();
+
+			if (count > 0) {
+				packets.put(entry.getKey(), count);
+			}
+		}
+
+		return packets;
+	}
+
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	// Closes the current interval, called periodically from a single thread
+	synchronized void sample() {
+		final long now = System.nanoTime();
+		final double seconds = Math.max(now - lastSample, 1) / 1e9;
+		final Snapshot next = new Snapshot();
+		final Map<String, long[]> types = new HashMap<>();
+
+		for (final PacketDirection direction : PacketDirection.values()) {
+			final int index = direction.ordinal();
+			final long frameCount = frames[index].sum();
+			final long byteCount = bytes[index].sum();
+
+			next.framesPerSecond[index] = (frameCount - lastFrames[index]) / seconds;
+			next.bytesPerSecond[index] = (byteCount - lastBytes[index]) / seconds;
+			lastFrames[index] = frameCount;
+			lastBytes[index] = byteCount;
+		}
+
+		for (final Map.Entry<String, LongAdder[]> entry : countersByType.entrySet()) {
+			final long[] counts = { entry.getValue()[0].sum(), entry.getValue()[1].sum() };
+			final long[] last = lastTypes.get(entry.getKey());
+
+			for (int index = 0; index < counts.length; index++) {
+				final long delta = counts[index] - (last == null ? 0 : last[index]);
+
+				if (delta > 0) {
+					next.packetsPerSecond.get(index).put(entry.getKey(), delta / seconds);
+				}
+			}
+
+			types.put(entry.getKey(), counts);
+		}
+
+		for (final ListenerEvent event : ListenerEvent.values()) {
+			final LatencyHistogram latency = latencies[event.ordinal()];
+
+			next.latencies[event.ordinal()] = new long[] { latency.getPercentile(50), latency.getPercentile(99),
+					latency.getPercentile(99.9), latency.getMax() };
+			latency.reset();
+		}
+
+		lastTypes = types;
+		lastSample = now;
+		snapshot = next;
+	}
+
+	public enum ListenerEvent {
+		DECODE, RECEIVE, SEND
+	}
+
+	// Rates and latencies of the last sampled interval
+	public static class Snapshot {
+		private final double[] framesPerSecond = new double[2];
+		private final double[] bytesPerSecond = new double[2];
+		private final List<Map<String, Double>> packetsPerSecond = Arrays.asList(new HashMap<>(), new HashMap<>());
+		// p50, p99, p99.9 and max in nanoseconds per listener event
+		private final long[][] latencies = new long[ListenerEvent.values().length][4];
+
+		public double getFramesPerSecond(final PacketDirection direction) {
+			return framesPerSecond[direction.ordinal()];
+		}
+
+		public double getBytesPerSecond(final PacketDirection direction) {
+			return bytesPerSecond[direction.ordinal()];
+		}
+
+		public Map<String, Double> getPacketsPerSecond(final PacketDirection direction) {
+			return Collections.unmodifiableMap(packetsPerSecond.get(direction.ordinal()));
+		}
+
+		public long getLatencyP50(final ListenerEvent event) {
+			return latencies[event.ordinal()][0];
+		}
+
+		public long getLatencyP99(final ListenerEvent event) {
+			return latencies[event.ordinal()][1];
+		}
+
+		public long getLatencyP999(final ListenerEvent event) {
+			return latencies[event.ordinal()][2];
+		}
+
+		public long getLatencyMax(final ListenerEvent event) {
+			return latencies[event.ordinal()][3];
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package dev._2lstudios.hamsterapi.metrics;
+
+/**
+ * Time spent in PacketDecodeEvent, PacketReceiveEvent and PacketSendEvent
+ * listeners, in nanoseconds over the last sampling interval, and the packets
+ * they cancelled since the server started.
+ */
+public interface ListenerMetricsMXBean {
+	long getDecodeLatencyP50();
+
+	long getDecodeLatencyP99();
+
+	long getDecodeLatencyP999();
+
+	long getDecodeLatencyMax();
+
+	long getReceiveLatencyP50();
+
+	long getReceiveLatencyP99();
+
+	long getReceiveLatencyP999();
+
+	long getReceiveLatencyMax();
+
+	long getSendLatencyP50();
+
+	long getSendLatencyP99();
+
+	long getSendLatencyP999();
+
+	long getSendLatencyMax();
+
+	long getCancelledDecodes();
+
+	long getCancelledReceives();
+
+	long getCancelledSends();
+}
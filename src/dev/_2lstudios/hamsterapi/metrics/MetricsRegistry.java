@@ -0,0 +1,273 @@
+package dev._2lstudios.hamsterapi.metrics;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayerManager;
+import dev._2lstudios.hamsterapi.messengers.BungeeMessenger;
+import dev._2lstudios.hamsterapi.metrics.HamsterMetrics.ListenerEvent;
+import dev._2lstudios.hamsterapi.utils.AsyncExecutor;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Registers the HamsterAPI MXBeans under the "dev._2lstudios.hamsterapi"
+ * domain (type=Packets, type=Listeners, type=Runtime) and samples the
+ * counters they read every interval.
+ */
+public class MetricsRegistry {
+	private static final String DOMAIN = "dev._2lstudios.hamsterapi";
+
+	private final HamsterMetrics metrics;
+	private final HamsterPlayerManager hamsterPlayerManager;
+	private final BungeeMessenger bungeeMessenger;
+	private final Logger logger;
+	private final List<ObjectName> registered = new ArrayList<>();
+	private ScheduledFuture<?> sampler;
+
+	public MetricsRegistry(final HamsterMetrics metrics, final HamsterPlayerManager hamsterPlayerManager,
+			final BungeeMessenger bungeeMessenger, final Logger logger) {
+		this.metrics = metrics;
+		this.hamsterPlayerManager = hamsterPlayerManager;
+		this.bungeeMessenger = bungeeMessenger;
+		this.logger = logger;
+	}
+
+	public void register(final long intervalSeconds) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		register(server, "Packets", new PacketMetrics());
+		register(server, "Listeners", new ListenerMetrics());
+		register(server, "Runtime", new RuntimeMetrics());
+		sampler = AsyncExecutor.scheduleAtFixedRate(metrics::sample, intervalSeconds, intervalSeconds,
+				TimeUnit.SECONDS);
+	}
+
+	private void register(final MBeanServer server, final String type, final Object bean) {
+		try {
+			final ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+
+			// Left behind by a previous instance (e.g. a plugin reload)
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+
+			server.registerMBean(bean, name);
+			registered.add(name);
+		} catch (final Exception e) {
+			logger.warning("Failed to register " + type + " MBean: " + e.getMessage());
+		}
+	}
+
+	public void unregister() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		if (sampler != null) {
+			sampler.cancel(false);
+			sampler = null;
+		}
+
+		for (final ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (final Exception e) {
+				logger.warning("Failed to unregister " + name + " MBean: " + e.getMessage());
+			}
+		}
+
+		registered.clear();
+	}
+
+	private class PacketMetrics implements PacketMetricsMXBean {
+		@Override
+		public long getInboundFrames() {
+			return metrics.getFrames(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public long getInboundBytes() {
+			return metrics.getBytes(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public long getOutboundFrames() {
+			return metrics.getFrames(PacketDirection.CLIENTBOUND);
+		}
+
+		@Override
+		public long getOutboundBytes() {
+			return metrics.getBytes(PacketDirection.CLIENTBOUND);
+		}
+
+		@Override
+		public double getInboundFramesPerSecond() {
+			return metrics.getSnapshot().getFramesPerSecond(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public double getInboundBytesPerSecond() {
+			return metrics.getSnapshot().getBytesPerSecond(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public double getOutboundFramesPerSecond() {
+			return metrics.getSnapshot().getFramesPerSecond(PacketDirection.CLIENTBOUND);
+		}
+
+		@Override
+		public double getOutboundBytesPerSecond() {
+			return metrics.getSnapshot().getBytesPerSecond(PacketDirection.CLIENTBOUND);
+		}
+
+		@Override
+		public Map<String, Long> getInboundPacketsByType() {
+			return metrics.getPackets(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public Map<String, Long> getOutboundPacketsByType() {
+			return metrics.getPackets(PacketDirection.CLIENTBOUND);
+		}
+
+		@Override
+		public Map<String, Double> getInboundPacketsPerSecondByType() {
+			return metrics.getSnapshot().getPacketsPerSecond(PacketDirection.SERVERBOUND);
+		}
+
+		@Override
+		public Map<String, Double> getOutboundPacketsPerSecondByType() {
+			return metrics.getSnapshot().getPacketsPerSecond(PacketDirection.CLIENTBOUND);
+		}
+	}
+
+	private class ListenerMetrics implements ListenerMetricsMXBean {
+		@Override
+		public long getDecodeLatencyP50() {
+			return metrics.getSnapshot().getLatencyP50(ListenerEvent.DECODE);
+		}
+
+		@Override
+		public long getDecodeLatencyP99() {
+			return metrics.getSnapshot().getLatencyP99(ListenerEvent.DECODE);
+		}
+
+		@Override
+		public long getDecodeLatencyP999() {
+			return metrics.getSnapshot().getLatencyP999(ListenerEvent.DECODE);
+		}
+
+		@Override
+		public long getDecodeLatencyMax() {
+			return metrics.getSnapshot().getLatencyMax(ListenerEvent.DECODE);
+		}
+
+		@Override
+		public long getReceiveLatencyP50() {
+			return metrics.getSnapshot().getLatencyP50(ListenerEvent.RECEIVE);
+		}
+
+		@Override
+		public long getReceiveLatencyP99() {
+			return metrics.getSnapshot().getLatencyP99(ListenerEvent.RECEIVE);
+		}
+
+		@Override
+		public long getReceiveLatencyP999() {
+			return metrics.getSnapshot().getLatencyP999(ListenerEvent.RECEIVE);
+		}
+
+		@Override
+		public long getReceiveLatencyMax() {
+			return metrics.getSnapshot().getLatencyMax(ListenerEvent.RECEIVE);
+		}
+
+		@Override
+		public long getSendLatencyP50() {
+			return metrics.getSnapshot().getLatencyP50(ListenerEvent.SEND);
+		}
+
+		@Override
+		public long getSendLatencyP99() {
+			return metrics.getSnapshot().getLatencyP99(ListenerEvent.SEND);
+		}
+
+		@Override
+		public long getSendLatencyP999() {
+			return metrics.getSnapshot().getLatencyP999(ListenerEvent.SEND);
+		}
+
+		@Override
+		public long getSendLatencyMax() {
+			return metrics.getSnapshot().getLatencyMax(ListenerEvent.SEND);
+		}
+
+		@Override
+		public long getCancelledDecodes() {
+			return metrics.getCancelled(ListenerEvent.DECODE);
+		}
+
+		@Override
+		public long getCancelledReceives() {
+			return metrics.getCancelled(ListenerEvent.RECEIVE);
+		}
+
+		@Override
+		public long getCancelledSends() {
+			return metrics.getCancelled(ListenerEvent.SEND);
+		}
+	}
+
+	private class RuntimeMetrics implements RuntimeMetricsMXBean {
+		@Override
+		public int getInjectedChannels() {
+			return hamsterPlayerManager.getInjectedCount();
+		}
+
+		@Override
+		public long getInjections() {
+			return metrics.getInjections();
+		}
+
+		@Override
+		public long getFailedInjections() {
+			return metrics.getFailedInjections();
+		}
+
+		@Override
+		public long getInjectionRetries() {
+			return metrics.getInjectionRetries();
+		}
+
+		@Override
+		public long getPipelineRepairs() {
+			return metrics.getPipelineRepairs();
+		}
+
+		@Override
+		public int getBungeeQueueDepth() {
+			return bungeeMessenger.getQueueSize();
+		}
+
+		@Override
+		public long getScheduledTasks() {
+			return FoliaAPI.getScheduledTasks();
+		}
+
+		@Override
+		public long getAsyncCompletedTasks() {
+			return AsyncExecutor.getCompletedTasks();
+		}
+
+		@Override
+		public int getAsyncQueuedTasks() {
+			return AsyncExecutor.getQueuedTasks();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package dev._2lstudios.hamsterapi.metrics;
+
+import java.util.Map;
+
+/**
+ * Packet traffic of every injected player. Totals count since the server
+ * started, rates are averaged over the last sampling interval.
+ */
+public interface PacketMetricsMXBean {
+	long getInboundFrames();
+
+	long getInboundBytes();
+
+	long getOutboundFrames();
+
+	long getOutboundBytes();
+
+	double getInboundFramesPerSecond();
+
+	double getInboundBytesPerSecond();
+
+	double getOutboundFramesPerSecond();
+
+	double getOutboundBytesPerSecond();
+
+	Map<String, Long> getInboundPacketsByType();
+
+	Map<String, Long> getOutboundPacketsByType();
+
+	Map<String, Double> getInboundPacketsPerSecondByType();
+
+	Map<String, Double> getOutboundPacketsPerSecondByType();
+}
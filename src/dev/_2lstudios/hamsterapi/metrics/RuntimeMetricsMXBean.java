@@ -0,0 +1,22 @@
+package dev._2lstudios.hamsterapi.metrics;
+
+// Injection state, queues and schedulers of HamsterAPI
+public interface RuntimeMetricsMXBean {
+	int getInjectedChannels();
+
+	long getInjections();
+
+	long getFailedInjections();
+
+	long getInjectionRetries();
+
+	long getPipelineRepairs();
+
+	int getBungeeQueueDepth();
+
+	long getScheduledTasks();
+
+	long getAsyncCompletedTasks();
+
+	int getAsyncQueuedTasks();
+}
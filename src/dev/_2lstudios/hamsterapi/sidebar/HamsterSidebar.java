@@ -0,0 +1,181 @@
+package dev._2lstudios.hamsterapi.sidebar;
+
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sidebar of one player. Changes are sent on the next tick, diffed against
+ * a shadow of what the client has: a changed line is one team update, and the
+ * title one objective update. Setting a {@link SidebarTemplate} shows its
+ * content instead of the sidebar's own.
+ */
+public class HamsterSidebar {
+	private final SidebarManager sidebarManager;
+	private final HamsterPlayer hamsterPlayer;
+	// Content, guarded by this
+	private String title = "";
+	private List<String> lines = Collections.emptyList();
+	private SidebarTemplate template;
+	private boolean visible = true;
+	private boolean queued = false;
+	// Client shadow, only touched by the flush task
+	private boolean shown = false;
+	private String sentTitle;
+	private int scoredLines = 0;
+	// Text of each line team on the client, null if the team wasn't created
+	private final String[] teamTexts = new String[SidebarPackets.MAX_LINES];
+
+	HamsterSidebar(final SidebarManager sidebarManager, final HamsterPlayer hamsterPlayer) {
+		this.sidebarManager = sidebarManager;
+		this.hamsterPlayer = hamsterPlayer;
+	}
+
+	public HamsterPlayer getHamsterPlayer() {
+		return hamsterPlayer;
+	}
+
+	public synchronized String getTitle() {
+		return title;
+	}
+
+	public synchronized void setTitle(final String title) {
+		this.title = title == null ? "" : title;
+		markDirty();
+	}
+
+	public synchronized List<String> getLines() {
+		return lines;
+	}
+
+	// Up to 15 lines, from top to bottom
+	public synchronized void setLines(final List<String> lines) {
+		this.lines = copyLines(lines);
+		markDirty();
+	}
+
+	public synchronized void setLine(final int line, final String text) {
+		final List<String> newLines = new ArrayList<>(lines);
+
+		while (newLines.size() <= line) {
+			newLines.add("");
+		}
+
+		newLines.set(line, text);
+		setLines(newLines);
+	}
+
+	public synchronized SidebarTemplate getTemplate() {
+		return template;
+	}
+
+	// Shows the template content while set, null goes back to the own content
+	public synchronized void setTemplate(final SidebarTemplate template) {
+		if (this.template != null) {
+			this.template.unfollow(this);
+		}
+
+		this.template = template;
+
+		if (template != null) {
+			template.follow(this);
+		}
+
+		markDirty();
+	}
+
+	public synchronized boolean isVisible() {
+		return visible;
+	}
+
+	public synchronized void setVisible(final boolean visible) {
+		this.visible = visible;
+		markDirty();
+	}
+
+	static List<String> copyLines(final List<String> lines) {
+		final List<String> copy = new ArrayList<>(Math.min(lines.size(), SidebarPackets.MAX_LINES));
+
+		for (int i = 0; i < lines.size() && i < SidebarPackets.MAX_LINES; i++) {
+			final String line = lines.get(i);
+
+			copy.add(line == null ? "" : line);
+		}
+
+		return Collections.unmodifiableList(copy);
+	}
+
+	synchronized void markDirty() {
+		if (!queued) {
+			queued = true;
+			sidebarManager.queue(this);
+		}
+	}
+
+	// Leaves the template so it doesn't keep a player that left
+	synchronized void dispose() {
+		if (template != null) {
+			template.unfollow(this);
+			template = null;
+		}
+	}
+
+	// Adds the packets turning the client sidebar into the current content, in order
+	void flush(final SidebarBatch batch) throws ReflectiveOperationException {
+		final String title;
+		final List<String> lines;
+		final boolean visible;
+
+		synchronized (this) {
+			queued = false;
+			title = template != null ? template.getTitle() : this.title;
+			lines = template != null ? template.getLines() : this.lines;
+			visible = this.visible;
+		}
+
+		if (!visible) {
+			if (shown) {
+				batch.removeObjective();
+				shown = false;
+				scoredLines = 0;
+			}
+			return;
+		}
+
+		// Scores can't be reset on every version, a shorter sidebar is created again
+		if (!shown || lines.size() < scoredLines) {
+			if (shown) {
+				batch.removeObjective();
+			}
+
+			batch.createObjective(title);
+			batch.display();
+			shown = true;
+			sentTitle = title;
+			scoredLines = 0;
+		} else if (!title.equals(sentTitle)) {
+			batch.updateObjective(title);
+			sentTitle = title;
+		}
+
+		for (int i = 0; i < lines.size(); i++) {
+			final String text = lines.get(i);
+
+			if (teamTexts[i] == null) {
+				batch.createTeam(i, text);
+			} else if (!teamTexts[i].equals(text)) {
+				batch.updateTeam(i, text);
+			}
+
+			teamTexts[i] = text;
+		}
+
+		for (int i = scoredLines; i < lines.size(); i++) {
+			batch.score(i);
+		}
+
+		scoredLines = lines.size();
+	}
+}
@@ -0,0 +1,88 @@
+package dev._2lstudios.hamsterapi.sidebar;
+
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.PacketFrame;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The packets a sidebar flush sends to one player. Packets come from the
+ * manager's cache for the current tick, so a line shown to many players is
+ * built and encoded once.
+ */
+class SidebarBatch {
+	private final SidebarManager sidebarManager;
+	private final SidebarPackets packets;
+	private final List<SidebarManager.CachedPacket> batch = new ArrayList<>();
+
+	SidebarBatch(final SidebarManager sidebarManager, final SidebarPackets packets) {
+		this.sidebarManager = sidebarManager;
+		this.packets = packets;
+	}
+
+	void createObjective(final String title) throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("objective\0" + title, () -> packets.createObjective(title)));
+	}
+
+	void updateObjective(final String title) throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("title\0" + title, () -> packets.updateObjective(title)));
+	}
+
+	void removeObjective() throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("remove", packets::removeObjective));
+	}
+
+	void display() throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("display", packets::display));
+	}
+
+	void createTeam(final int line, final String text) throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("team\0" + line + "\0" + text, () -> packets.createTeam(line, text)));
+	}
+
+	void updateTeam(final int line, final String text) throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("line\0" + line + "\0" + text, () -> packets.updateTeam(line, text)));
+	}
+
+	void score(final int line) throws ReflectiveOperationException {
+		batch.add(sidebarManager.getPacket("score\0" + line, () -> packets.score(line)));
+	}
+
+	// Writes every frame with a single flush, or falls back to the server encoder
+	void sendTo(final HamsterPlayer hamsterPlayer) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		final List<ByteBuf> frames = new ArrayList<>(batch.size());
+
+		try {
+			for (final SidebarManager.CachedPacket cachedPacket : batch) {
+				final PacketFrame frame = cachedPacket.getFrame();
+
+				if (frame == null) {
+					break;
+				}
+
+				frames.add(frame.retainedFor(hamsterPlayer));
+			}
+		} catch (final Exception e) {
+			// Compression failed, the server encoder sends them instead
+		}
+
+		if (frames.size() == batch.size()) {
+			hamsterPlayer.sendFrames(frames);
+			return;
+		}
+
+		for (final ByteBuf frame : frames) {
+			frame.release();
+		}
+
+		for (final SidebarManager.CachedPacket cachedPacket : batch) {
+			hamsterPlayer.sendPacket(cachedPacket.getPacket());
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package dev._2lstudios.hamsterapi.sidebar;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.BufferIO;
+import dev._2lstudios.hamsterapi.utils.FoliaAPI;
+import dev._2lstudios.hamsterapi.utils.PacketFrame;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps a {@link HamsterSidebar} per player and sends the changed ones once
+ * per tick. Every packet of a tick is cached by content, so identical lines of
+ * many players (e.g. players following a {@link SidebarTemplate}) are built
+ * and encoded once.
+ */
+public class SidebarManager {
+	private final Reflection reflection;
+	private final BufferIO bufferIO;
+	private final Map<HamsterPlayer, HamsterSidebar> sidebars = new ConcurrentHashMap<>();
+	private final Queue<HamsterSidebar> dirtySidebars = new ConcurrentLinkedQueue<>();
+	// Packets of the tick being flushed, keyed by content
+	private final Map<String, CachedPacket> packetCache = new HashMap<>();
+	private SidebarPackets packets;
+	private boolean supported = true;
+	// Cleared once encoding fails, the protocol tables won't appear later
+	private boolean encodeFrames = true;
+
+	public SidebarManager(final Reflection reflection, final BufferIO bufferIO) {
+		this.reflection = reflection;
+		this.bufferIO = bufferIO;
+
+		FoliaAPI.runTaskTimer(ignored -> flush(), 1L, 1L);
+	}
+
+	public HamsterSidebar getSidebar(final HamsterPlayer hamsterPlayer) {
+		return sidebars.computeIfAbsent(hamsterPlayer, key -> new HamsterSidebar(this, key));
+	}
+
+	public boolean hasSidebar(final HamsterPlayer hamsterPlayer) {
+		return sidebars.containsKey(hamsterPlayer);
+	}
+
+	// Forgets the sidebar of a player that left, without sending anything
+	public void removeSidebar(final HamsterPlayer hamsterPlayer) {
+		final HamsterSidebar sidebar = sidebars.remove(hamsterPlayer);
+
+		if (sidebar != null) {
+			sidebar.dispose();
+		}
+	}
+
+	// Hides every sidebar right away and forgets them, used before the plugin disables
+	public void removeAll() {
+		for (final HamsterSidebar sidebar : sidebars.values()) {
+			sidebar.setVisible(false);
+		}
+
+		flush();
+
+		for (final HamsterPlayer hamsterPlayer : new ArrayList<>(sidebars.keySet())) {
+			removeSidebar(hamsterPlayer);
+		}
+	}
+
+	public SidebarTemplate createTemplate() {
+		return new SidebarTemplate();
+	}
+
+	// False on servers with an unknown scoreboard packet layout or without scoreboards (Folia)
+	public boolean isSupported() {
+		return supported;
+	}
+
+	void queue(final HamsterSidebar sidebar) {
+		if (supported) {
+			dirtySidebars.add(sidebar);
+		}
+	}
+
+	private void flush() {
+		if (dirtySidebars.isEmpty() || !loadPackets()) {
+			return;
+		}
+
+		HamsterSidebar sidebar;
+
+		try {
+			while ((sidebar = dirtySidebars.poll()) != null) {
+				final HamsterPlayer hamsterPlayer = sidebar.getHamsterPlayer();
+
+				if (sidebars.get(hamsterPlayer) != sidebar || !hamsterPlayer.getPlayer().isOnline()) {
+					continue;
+				}
+
+				final SidebarBatch batch = new SidebarBatch(this, packets);
+
+				try {
+					sidebar.flush(batch);
+				} catch (final Exception e) {
+					Debug.warn("Failed to update the sidebar of " + hamsterPlayer.getPlayer().getName() + ": "
+							+ e.getMessage());
+				}
+
+				batch.sendTo(hamsterPlayer);
+			}
+		} finally {
+			for (final CachedPacket cachedPacket : packetCache.values()) {
+				if (cachedPacket.frame != null) {
+					cachedPacket.frame.release();
+				}
+			}
+
+			packetCache.clear();
+		}
+	}
+
+	// Built on the first flush, scoreboards can't be created while the server enables plugins
+	private boolean loadPackets() {
+		if (packets == null && supported) {
+			try {
+				packets = new SidebarPackets(reflection);
+			} catch (final Exception e) {
+				supported = false;
+				dirtySidebars.clear();
+				Debug.warn("Sidebars are not supported on this server: " + e.getMessage());
+			}
+		}
+
+		return packets != null;
+	}
+
+	CachedPacket getPacket(final String key, final PacketFactory factory) throws ReflectiveOperationException {
+		CachedPacket cachedPacket = packetCache.get(key);
+
+		if (cachedPacket == null) {
+			final Object packet = factory.create();
+
+			cachedPacket = new CachedPacket(packet, encode(packet));
+			packetCache.put(key, cachedPacket);
+		}
+
+		return cachedPacket;
+	}
+
+	private PacketFrame encode(final Object packet) {
+		if (!encodeFrames) {
+			return null;
+		}
+
+		try {
+			return PacketFrame.of(bufferIO, packet, ProtocolState.PLAY);
+		} catch (final Exception e) {
+			encodeFrames = false;
+			Debug.warn("Sidebar packets will be encoded per player: " + e.getMessage());
+			return null;
+		}
+	}
+
+	interface PacketFactory {
+		Object create() throws ReflectiveOperationException;
+	}
+
+	static class CachedPacket {
+		private final Object packet;
+		private final PacketFrame frame;
+
+		private CachedPacket(final Object packet, final PacketFrame frame) {
+			this.packet = packet;
+			this.frame = frame;
+		}
+
+		Object getPacket() {
+			return packet;
+		}
+
+		// Null when the packet couldn't be encoded once
+		PacketFrame getFrame() {
+			return frame;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package dev._2lstudios.hamsterapi.sidebar;
+
+import dev._2lstudios.hamsterapi.utils.FieldAccessor;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+/**
+ * Builds the sidebar packets of the running server.
+ * <p>
+ * The objective and the line teams live in a scoreboard nobody is shown, and
+ * the packets are built from their NMS handles through the constructors (or
+ * 1.17+ team factory) of every version, found by their parameter types. Line
+ * {@code i} is the invisible entry of team hapi_l{i} with score 15 - i, so
+ * changing its text only takes a team update.
+ * <p>
+ * Not thread-safe, only used from the sidebar flush task.
+ */
+class SidebarPackets {
+	static final String OBJECTIVE_NAME = "hapi_sidebar";
+	static final int MAX_LINES = 15;
+	private static final int OBJECTIVE_CREATE = 0, OBJECTIVE_REMOVE = 1, OBJECTIVE_UPDATE = 2;
+	private static final int TEAM_CREATE = 0, TEAM_UPDATE = 2;
+	// Prefix and suffix limit before 1.13
+	private static final int LEGACY_LIMIT = 16;
+
+	private final Objective objective;
+	private final Team[] teams = new Team[MAX_LINES];
+	private final String[] entries = new String[MAX_LINES];
+	private final Object objectiveHandle;
+	private final Object[] teamHandles = new Object[MAX_LINES];
+	private final Constructor<?> objectiveConstructor;
+	private final Constructor<?> displayConstructor;
+	private final Object sidebarSlot;
+	// (team, int) before 1.17, (team, boolean) factory after
+	private final Constructor<?> teamConstructor;
+	private final Method teamFactory;
+	private final Constructor<?> scoreConstructor;
+	private final Object scoreAction;
+	private final boolean ownerFirst;
+	// Before 1.13: owner, objective, score and action fields of an empty packet
+	private final FieldAccessor[] legacyScoreFields;
+
+	SidebarPackets(final Reflection reflection) throws ReflectiveOperationException {
+		final Class<?> objectivePacketClass = reflection.getPacketPlayOutScoreboardObjective();
+		final Class<?> displayPacketClass = reflection.getPacketPlayOutScoreboardDisplayObjective();
+		final Class<?> teamPacketClass = reflection.getPacketPlayOutScoreboardTeam();
+		final Class<?> scorePacketClass = reflection.getPacketPlayOutScoreboardScore();
+
+		if (objectivePacketClass == null || displayPacketClass == null || teamPacketClass == null
+				|| scorePacketClass == null) {
+			throw new ClassNotFoundException("Scoreboard packets are not available on this version");
+		}
+
+		final Scoreboard scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
+
+		this.objective = scoreboard.registerNewObjective(OBJECTIVE_NAME, "dummy");
+		this.objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+		this.objectiveHandle = getHandle(objective);
+
+		for (int i = 0; i < MAX_LINES; i++) {
+			// A color code and a reset, unique and invisible
+			entries[i] = ChatColor.values()[i].toString() + ChatColor.RESET;
+			teams[i] = scoreboard.registerNewTeam("hapi_l" + i);
+			teams[i].addEntry(entries[i]);
+			teamHandles[i] = getHandle(teams[i]);
+		}
+
+		final Class<?> objectiveClass = objectiveHandle.getClass();
+		final Class<?> teamClass = teamHandles[0].getClass();
+
+		this.objectiveConstructor = findConstructor(objectivePacketClass, objectiveClass, int.class);
+		this.displayConstructor = findDisplayConstructor(displayPacketClass, objectiveClass);
+
+		final Class<?> slotType = displayConstructor.getParameterTypes()[0];
+
+		// Sidebar is the second slot, as an int or a DisplaySlot constant (1.20.2+)
+		this.sidebarSlot = slotType == int.class ? (Object) 1 : slotType.getEnumConstants()[1];
+
+		Constructor<?> teamConstructor = null;
+		Method teamFactory = null;
+
+		try {
+			teamConstructor = findConstructor(teamPacketClass, teamClass, int.class);
+		} catch (final NoSuchMethodException e) {
+			teamFactory = findFactory(teamPacketClass, teamClass, boolean.class);
+		}
+
+		this.teamConstructor = teamConstructor;
+		this.teamFactory = teamFactory;
+
+		Constructor<?> scoreConstructor = null;
+		Object scoreAction = null;
+		boolean ownerFirst = false;
+
+		for (final Constructor<?> constructor : scorePacketClass.getDeclaredConstructors()) {
+			final Class<?>[] types = constructor.getParameterTypes();
+
+			// 1.13-1.20.2 (action, objective, owner, score)
+			if (types.length == 4 && types[0].isEnum() && types[1] == String.class && types[2] == String.class
+					&& types[3] == int.class) {
+				scoreConstructor = constructor;
+				scoreAction = types[0].getEnumConstants()[0];
+				break;
+			}
+
+			// 1.20.3+ (owner, objective, score, display, number format)
+			if (types.length >= 3 && types[0] == String.class && types[1] == String.class
+					&& types[2] == int.class) {
+				scoreConstructor = constructor;
+				ownerFirst = true;
+				break;
+			}
+		}
+
+		this.scoreConstructor = scoreConstructor != null ? scoreConstructor
+				: scorePacketClass.getDeclaredConstructor();
+		this.scoreConstructor.setAccessible(true);
+		this.scoreAction = scoreAction;
+		this.ownerFirst = ownerFirst;
+		this.legacyScoreFields = scoreConstructor == null ? legacyScoreFields(scorePacketClass) : null;
+	}
+
+	Object createObjective(final String title) throws ReflectiveOperationException {
+		setTitle(title);
+		return objectiveConstructor.newInstance(objectiveHandle, OBJECTIVE_CREATE);
+	}
+
+	Object updateObjective(final String title) throws ReflectiveOperationException {
+		setTitle(title);
+		return objectiveConstructor.newInstance(objectiveHandle, OBJECTIVE_UPDATE);
+	}
+
+	Object removeObjective() throws ReflectiveOperationException {
+		return objectiveConstructor.newInstance(objectiveHandle, OBJECTIVE_REMOVE);
+	}
+
+	Object display() throws ReflectiveOperationException {
+		return displayConstructor.newInstance(sidebarSlot, objectiveHandle);
+	}
+
+	Object createTeam(final int line, final String text) throws ReflectiveOperationException {
+		setText(teams[line], text);
+		return teamPacket(line, true);
+	}
+
+	Object updateTeam(final int line, final String text) throws ReflectiveOperationException {
+		setText(teams[line], text);
+		return teamPacket(line, false);
+	}
+
+	Object score(final int line) throws ReflectiveOperationException {
+		final int score = MAX_LINES - line;
+
+		if (legacyScoreFields != null) {
+			final Object packet = scoreConstructor.newInstance();
+
+			legacyScoreFields[0].set(packet, entries[line]);
+			legacyScoreFields[1].set(packet, OBJECTIVE_NAME);
+			legacyScoreFields[2].set(packet, score);
+			legacyScoreFields[3].set(packet, legacyScoreFields[3].getType().getEnumConstants()[0]);
+			return packet;
+		}
+
+		if (!ownerFirst) {
+			return scoreConstructor.newInstance(scoreAction, OBJECTIVE_NAME, entries[line], score);
+		}
+
+		final Class<?>[] types = scoreConstructor.getParameterTypes();
+		final Object[] arguments = new Object[types.length];
+
+		arguments[0] = entries[line];
+		arguments[1] = OBJECTIVE_NAME;
+		arguments[2] = score;
+
+		// No custom display or number format
+		for (int i = 3; i < types.length; i++) {
+			arguments[i] = types[i] == Optional.class ? Optional.empty() : null;
+		}
+
+		return scoreConstructor.newInstance(arguments);
+	}
+
+	private Object teamPacket(final int line, final boolean create) throws ReflectiveOperationException {
+		if (teamConstructor != null) {
+			return teamConstructor.newInstance(teamHandles[line], create ? TEAM_CREATE : TEAM_UPDATE);
+		}
+
+		return teamFactory.invoke(null, teamHandles[line], create);
+	}
+
+	private void setTitle(final String title) {
+		final String coloredTitle = ChatColor.translateAlternateColorCodes('&', title);
+
+		try {
+			objective.setDisplayName(coloredTitle);
+		} catch (final IllegalArgumentException e) {
+			// 32 characters before 1.13
+			objective.setDisplayName(coloredTitle.substring(0, Math.min(32, coloredTitle.length())));
+		}
+	}
+
+	private static void setText(final Team team, final String text) {
+		final String coloredText = ChatColor.translateAlternateColorCodes('&', text);
+
+		try {
+			team.setPrefix(coloredText);
+			team.setSuffix("");
+		} catch (final IllegalArgumentException e) {
+			// Split in prefix and suffix, the suffix keeps the prefix colors
+			int split = Math.min(LEGACY_LIMIT, coloredText.length());
+
+			if (coloredText.charAt(split - 1) == ChatColor.COLOR_CHAR) {
+				split--;
+			}
+
+			final String prefix = coloredText.substring(0, split);
+			final String suffix = ChatColor.getLastColors(prefix) + coloredText.substring(split);
+
+			team.setPrefix(prefix);
+			team.setSuffix(suffix.substring(0, Math.min(LEGACY_LIMIT, suffix.length())));
+		}
+	}
+
+	// The NMS object held by a CraftObjective or CraftTeam
+	private static Object getHandle(final Object craftObject) throws ReflectiveOperationException {
+		for (final Field field : craftObject.getClass().getDeclaredFields()) {
+			if (!Modifier.isStatic(field.getModifiers()) && field.getType().getName().startsWith("net.minecraft")) {
+				field.setAccessible(true);
+				return field.get(craftObject);
+			}
+		}
+
+		throw new NoSuchFieldException("Handle of " + craftObject.getClass().getSimpleName());
+	}
+
+	private static Constructor<?> findConstructor(final Class<?> packetClass, final Class<?> handleClass,
+			final Class<?> argumentClass) throws NoSuchMethodException {
+		for (final Constructor<?> constructor : packetClass.getDeclaredConstructors()) {
+			final Class<?>[] types = constructor.getParameterTypes();
+
+			if (types.length == 2 && types[0].isAssignableFrom(handleClass) && types[1] == argumentClass) {
+				constructor.setAccessible(true);
+				return constructor;
+			}
+		}
+
+		throw new NoSuchMethodException(packetClass.getSimpleName() + " constructor");
+	}
+
+	private static Constructor<?> findDisplayConstructor(final Class<?> packetClass, final Class<?> objectiveClass)
+			throws NoSuchMethodException {
+		for (final Constructor<?> constructor : packetClass.getDeclaredConstructors()) {
+			final Class<?>[] types = constructor.getParameterTypes();
+
+			if (types.length == 2 && (types[0] == int.class || types[0].isEnum())
+					&& types[1].isAssignableFrom(objectiveClass)) {
+				constructor.setAccessible(true);
+				return constructor;
+			}
+		}
+
+		throw new NoSuchMethodException(packetClass.getSimpleName() + " constructor");
+	}
+
+	private static Method findFactory(final Class<?> packetClass, final Class<?> teamClass,
+			final Class<?> argumentClass) throws NoSuchMethodException {
+		for (final Method method : packetClass.getDeclaredMethods()) {
+			final Class<?>[] types = method.getParameterTypes();
+
+			if (Modifier.isStatic(method.getModifiers()) && method.getReturnType() == packetClass
+					&& types.length == 2 && types[0].isAssignableFrom(teamClass) && types[1] == argumentClass) {
+				method.setAccessible(true);
+				return method;
+			}
+		}
+
+		throw new NoSuchMethodException(packetClass.getSimpleName() + " factory");
+	}
+
+	private static FieldAccessor[] legacyScoreFields(final Class<?> packetClass)
+			throws NoSuchFieldException, IllegalAccessException {
+		final FieldAccessor[] fields = new FieldAccessor[4];
+		int strings = 0;
+
+		for (final Field field : packetClass.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+
+			if (field.getType() == String.class && strings < 2) {
+				fields[strings++] = new FieldAccessor(field);
+			} else if (field.getType() == int.class && fields[2] == null) {
+				fields[2] = new FieldAccessor(field);
+			} else if (field.getType().isEnum() && fields[3] == null) {
+				fields[3] = new FieldAccessor(field);
+			}
+		}
+
+		for (final FieldAccessor field : fields) {
+			if (field == null) {
+				throw new NoSuchFieldException("Score fields of " + packetClass.getSimpleName());
+			}
+		}
+
+		return fields;
+	}
+}
@@ -0,0 +1,61 @@
+package dev._2lstudios.hamsterapi.sidebar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sidebar content shared by many players. Every sidebar following it shows the
+ * same lines, so each changed line is encoded once per tick for all of them.
+ */
+public class SidebarTemplate {
+	private final Set<HamsterSidebar> followers = ConcurrentHashMap.newKeySet();
+	private volatile String title = "";
+	private volatile List<String> lines = Collections.emptyList();
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(final String title) {
+		this.title = title == null ? "" : title;
+		markDirty();
+	}
+
+	public List<String> getLines() {
+		return lines;
+	}
+
+	// Up to 15 lines, from top to bottom
+	public synchronized void setLines(final List<String> lines) {
+		this.lines = HamsterSidebar.copyLines(lines);
+		markDirty();
+	}
+
+	public synchronized void setLine(final int line, final String text) {
+		final List<String> newLines = new ArrayList<>(lines);
+
+		while (newLines.size() <= line) {
+			newLines.add("");
+		}
+
+		newLines.set(line, text);
+		setLines(newLines);
+	}
+
+	void follow(final HamsterSidebar sidebar) {
+		followers.add(sidebar);
+	}
+
+	void unfollow(final HamsterSidebar sidebar) {
+		followers.remove(sidebar);
+	}
+
+	private void markDirty() {
+		for (final HamsterSidebar follower : followers) {
+			follower.markDirty();
+		}
+	}
+}
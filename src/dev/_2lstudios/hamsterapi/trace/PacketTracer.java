@@ -0,0 +1,253 @@
+package dev._2lstudios.hamsterapi.trace;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import dev._2lstudios.hamsterapi.utils.ProtocolTable;
+import dev._2lstudios.hamsterapi.utils.ProtocolTables;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Samples packet frames of every player (1 in N), or every frame of selected
+ * players, and writes a line per frame to rotating files: time, direction,
+ * player, state, packet and size. Event loops only put a few values in a
+ * lock-free ring, a daemon thread formats and writes them.
+ */
+public class PacketTracer {
+	private static final int DRAIN_LIMIT = 4096;
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final ProtocolState[] STATES = ProtocolState.values();
+	private static final PacketDirection[] DIRECTIONS = PacketDirection.values();
+
+	private final File folder;
+	private final ProtocolTables protocolTables;
+	private final Logger logger;
+	private final TraceBuffer buffer;
+	private final int sampleRate;
+	private final long maxFileSize;
+	private final int maxFiles;
+	private final Set<UUID> tracedPlayers = ConcurrentHashMap.newKeySet();
+	private final Thread writerThread;
+	// Only used from the writer thread
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+	private final StringBuilder line = new StringBuilder(128);
+	private Writer writer;
+	private long fileSize = 0;
+	private volatile boolean running = true;
+
+	/**
+	 * @param sampleRate 1 in sampleRate frames of every player are traced, 0
+	 *                   traces only the selected players.
+	 */
+	public PacketTracer(final File folder, final ProtocolTables protocolTables, final Logger logger,
+			final int bufferSize, final int sampleRate, final long maxFileSize, final int maxFiles)
+			throws IOException {
+		this.folder = folder;
+		this.protocolTables = protocolTables;
+		this.logger = logger;
+		this.buffer = new TraceBuffer(Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1);
+		this.sampleRate = sampleRate;
+		this.maxFileSize = maxFileSize;
+		this.maxFiles = Math.max(maxFiles, 1);
+
+		if (!folder.exists() && !folder.mkdirs()) {
+			throw new IOException("Failed to create trace folder " + folder);
+		}
+
+		this.writer = openFile();
+		this.writerThread = new Thread(this::writeLoop, "HamsterAPI Packet Tracer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public void trace(final UUID uuid) {
+		tracedPlayers.add(uuid);
+	}
+
+	public void untrace(final UUID uuid) {
+		tracedPlayers.remove(uuid);
+	}
+
+	// Records of frames dropped because the writer fell behind
+	public long getDropped() {
+		return buffer.getDropped();
+	}
+
+	// Decides per frame, every frame of traced players and a sample of the others
+	public boolean shouldTrace(final HamsterPlayer hamsterPlayer) {
+		return (sampleRate > 0 && ThreadLocalRandom.current().nextInt(sampleRate) == 0)
+				|| (!tracedPlayers.isEmpty() && tracedPlayers.contains(hamsterPlayer.getPlayer().getUniqueId()));
+	}
+
+	// Records an uncompressed id + body frame, without changing its reader index
+	public void record(final PacketDirection direction, final HamsterPlayer hamsterPlayer, final ByteBuf frame) {
+		final Channel channel = hamsterPlayer.getChannel();
+		final ProtocolState state = channel == null ? null : protocolTables.getState(channel);
+
+		buffer.offer(System.currentTimeMillis(), direction.ordinal(), state == null ? -1 : state.ordinal(),
+				peekVarInt(frame), frame.readableBytes(), hamsterPlayer.getPlayer().getName());
+	}
+
+	private static int peekVarInt(final ByteBuf byteBuf) {
+		final int end = Math.min(byteBuf.writerIndex(), byteBuf.readerIndex() + 5);
+		int value = 0;
+		int shift = 0;
+
+		for (int index = byteBuf.readerIndex(); index < end; index++) {
+			final byte current = byteBuf.getByte(index);
+
+			value |= (current & 0x7F) << shift;
+
+			if ((current & 0x80) == 0) {
+				return value;
+			}
+
+			shift += 7;
+		}
+
+		return -1;
+	}
+
+	private void writeLoop() {
+		while (running) {
+			try {
+				if (buffer.drain(this::writeRecord, DRAIN_LIMIT) == 0) {
+					writer.flush();
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+			} catch (final IOException | TraceWriteException e) {
+				logger.warning("Failed to write packet trace, tracing stops: " + e.getMessage());
+				running = false;
+			}
+		}
+	}
+
+	private void writeRecord(final long time, final int direction, final int state, final int packetId,
+			final int size, final String player) {
+		line.setLength(0);
+		line.append(dateFormat.format(new Date(time))).append(' ')
+				.append(DIRECTIONS[direction] == PacketDirection.CLIENTBOUND ? "OUT" : "IN").append(' ').append(player)
+				.append(' ').append(state < 0 ? "?" : STATES[state].name()).append(' ')
+				.append(packetName(direction, state, packetId)).append(' ').append(size).append('\n');
+
+		try {
+			if (fileSize + line.length() > maxFileSize) {
+				rotate();
+			}
+
+			writer.append(line);
+			fileSize += line.length();
+		} catch (final IOException e) {
+			throw new TraceWriteException(e);
+		}
+	}
+
+	// Class name when the protocol table maps ids to classes, otherwise the hex id
+	private String packetName(final int direction, final int state, final int packetId) {
+		if (state >= 0) {
+			final ProtocolTable table = protocolTables.getTable(STATES[state], DIRECTIONS[direction]);
+			final Class<?> packetClass = table == null ? null : table.getPacketClass(packetId);
+
+			if (packetClass != null) {
+				return packetClass.getSimpleName();
+			}
+		}
+
+		return "0x" + Integer.toHexString(packetId);
+	}
+
+	// trace.log is the newest file, trace.1.log the one before...
+	private void rotate() throws IOException {
+		writer.close();
+
+		for (int index = maxFiles - 1; index > 0; index--) {
+			final File source = getFile(index - 1);
+
+			if (source.exists()) {
+				final File target = getFile(index);
+
+				if (target.exists() && !target.delete()) {
+					throw new IOException("Failed to delete old trace file " + target);
+				}
+
+				if (!source.renameTo(target)) {
+					throw new IOException("Failed to rotate trace file " + source);
+				}
+			}
+		}
+
+		if (maxFiles == 1 && !getFile(0).delete()) {
+			throw new IOException("Failed to delete old trace file " + getFile(0));
+		}
+
+		writer = openFile();
+	}
+
+	private File getFile(final int index) {
+		return new File(folder, index == 0 ? "trace.log" : "trace." + index + ".log");
+	}
+
+	private Writer openFile() throws IOException {
+		final File file = getFile(0);
+
+		fileSize = file.length();
+		return new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+	}
+
+	// Writes what is left in the ring and closes the file
+	public void close() throws IOException {
+		running = false;
+
+		try {
+			writerThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// The ring has a single reader, a stuck writer thread keeps it
+		if (writerThread.isAlive()) {
+			return;
+		}
+
+		try {
+			while (buffer.drain(this::writeRecord, DRAIN_LIMIT) > 0) {
+				// Keeps draining until the ring is empty
+			}
+		} catch (final TraceWriteException e) {
+			throw e.getCause();
+		} finally {
+			writer.close();
+		}
+	}
+
+	// Carries IO errors out of the ring consumer
+	private static final class TraceWriteException extends RuntimeException {
+		private TraceWriteException(final IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package dev._2lstudios.hamsterapi.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free ring of trace records with many writers (the event loops)
+ * and a single reader (the tracer thread). Writers claim a slot with a CAS on
+ * the head and publish it through the slot sequence, the reader only moves the
+ * tail. Records offered while the ring is full are dropped and counted.
+ */
+class TraceBuffer {
+	private final int mask;
+	// Slot sequence, pos + 1 once the record claimed at pos is published
+	private final AtomicLongArray sequences;
+	private final long[] times;
+	private final byte[] directions;
+	private final byte[] states;
+	private final int[] packetIds;
+	private final int[] sizes;
+	private final String[] players;
+	private final AtomicLong head = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+	private volatile long tail = 0;
+
+	TraceBuffer(final int capacity) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Trace buffer capacity must be a power of two: " + capacity);
+		}
+
+		this.mask = capacity - 1;
+		this.sequences = new AtomicLongArray(capacity);
+		this.times = new long[capacity];
+		this.directions = new byte[capacity];
+		this.states = new byte[capacity];
+		this.packetIds = new int[capacity];
+		this.sizes = new int[capacity];
+		this.players = new String[capacity];
+	}
+
+	// Returns false if the ring was full
+	boolean offer(final long time, final int direction, final int state, final int packetId, final int size,
+			final String player) {
+		final int capacity = mask + 1;
+		long position;
+
+		do {
+			position = head.get();
+
+			if (position - tail >= capacity) {
+				dropped.increment();
+				return false;
+			}
+		} while (!head.compareAndSet(position, position + 1));
+
+		final int slot = (int) position & mask;
+
+		times[slot] = time;
+		directions[slot] = (byte) direction;
+		states[slot] = (byte) state;
+		packetIds[slot] = packetId;
+		sizes[slot] = size;
+		players[slot] = player;
+		sequences.lazySet(slot, position + 1);
+		return true;
+	}
+
+	// Hands the published records to the consumer in order, only called from the reader thread
+	int drain(final TraceConsumer consumer, final int limit) {
+		long position = tail;
+		int drained = 0;
+
+		while (drained < limit) {
+			final int slot = (int) position & mask;
+
+			if (sequences.get(slot) != position + 1) {
+				break;
+			}
+
+			consumer.accept(times[slot], directions[slot], states[slot], packetIds[slot], sizes[slot], players[slot]);
+			players[slot] = null;
+			position++;
+			drained++;
+			// Frees the slot for writers
+			tail = position;
+		}
+
+		return drained;
+	}
+
+	long getDropped() {
+		return dropped.sum();
+	}
+
+	interface TraceConsumer {
+		void accept(long time, int direction, int state, int packetId, int size, String player);
+	}
+}
@@ -0,0 +1,195 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared, bounded pool for HamsterAPI async work that has no scheduler of its
+ * own, so delayed tasks never start a thread per call.
+ * <p>
+ * On Java 21+ tasks run on virtual threads and a single platform thread only
+ * keeps track of the delays. The virtual thread API is looked up at runtime,
+ * so the class still loads on Java 8.
+ */
+public class AsyncExecutor {
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final LongAdder completedTasks = new LongAdder();
+    // Executors.newThreadPerTaskExecutor and a virtual thread factory, null before Java 21
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findThreadPerTaskExecutor();
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+    private static volatile Pool pool;
+
+    private static Pool getPool() {
+        Pool current = pool;
+
+        if (current == null) {
+            synchronized (AsyncExecutor.class) {
+                current = pool;
+
+                if (current == null || current.scheduler.isShutdown()) {
+                    current = createPool();
+                    pool = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    private static Pool createPool() {
+        final ExecutorService virtualExecutor = createVirtualExecutor();
+
+        // With virtual threads the scheduler only hands tasks over
+        return virtualExecutor != null ? new Pool(createScheduler(1), virtualExecutor)
+                : new Pool(createScheduler(THREADS), null);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler(final int threads) {
+        final AtomicInteger threadId = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "HamsterAPI Async #" + threadId.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        return scheduledExecutor;
+    }
+
+    private static Method findThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    // Thread.ofVirtual().name("HamsterAPI Async #", 1).factory()
+    private static ThreadFactory createVirtualThreadFactory() {
+        if (NEW_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "HamsterAPI Async #", 1L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createVirtualExecutor() {
+        if (VIRTUAL_THREAD_FACTORY == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, VIRTUAL_THREAD_FACTORY);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Runnable count(final Runnable runnable) {
+        return () -> {
+            try {
+                runnable.run();
+            } catch (final Throwable throwable) {
+                throwable.printStackTrace();
+            } finally {
+                completedTasks.increment();
+            }
+        };
+    }
+
+    public static void execute(final Runnable runnable) {
+        getPool().execute(count(runnable));
+    }
+
+    public static ScheduledFuture<?> schedule(final Runnable runnable, final long delay, final TimeUnit unit) {
+        final Pool current = getPool();
+
+        return current.scheduler.schedule(current.offload(count(runnable)), delay, unit);
+    }
+
+    public static ScheduledFuture<?> scheduleAtFixedRate(final Runnable runnable, final long delay,
+            final long period, final TimeUnit unit) {
+        final Pool current = getPool();
+
+        return current.scheduler.scheduleAtFixedRate(current.offload(count(runnable)), delay, period, unit);
+    }
+
+    public static long getCompletedTasks() {
+        return completedTasks.sum();
+    }
+
+    // Tasks waiting to run, delayed ones included
+    public static int getQueuedTasks() {
+        final Pool current = pool;
+
+        return current == null ? 0 : current.scheduler.getQueue().size();
+    }
+
+    // True when tasks run on virtual threads
+    public static boolean isVirtual() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    public static void shutdown() {
+        final Pool current;
+
+        synchronized (AsyncExecutor.class) {
+            current = pool;
+            pool = null;
+        }
+
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    // The scheduler and, on Java 21+, the virtual threads it hands tasks to
+    private static final class Pool {
+        private final ScheduledThreadPoolExecutor scheduler;
+        private final ExecutorService virtualExecutor;
+
+        private Pool(final ScheduledThreadPoolExecutor scheduler, final ExecutorService virtualExecutor) {
+            this.scheduler = scheduler;
+            this.virtualExecutor = virtualExecutor;
+        }
+
+        private void execute(final Runnable runnable) {
+            if (virtualExecutor != null) {
+                virtualExecutor.execute(runnable);
+            } else {
+                scheduler.execute(runnable);
+            }
+        }
+
+        // Slow tasks never hold the scheduler thread
+        private Runnable offload(final Runnable runnable) {
+            return virtualExecutor == null ? runnable : () -> virtualExecutor.execute(runnable);
+        }
+
+        private void shutdownNow() {
+            scheduler.shutdownNow();
+
+            if (virtualExecutor != null) {
+                virtualExecutor.shutdownNow();
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package dev._2lstudios.hamsterapi.utils;
 
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
 import dev._2lstudios.hamsterapi.wrappers.PacketWrapper;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
@@ -12,25 +15,52 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
 public class BufferIO {
+	// Largest length a 3 byte VarInt prefix can hold, which is also the protocol limit.
+	private static final int MAX_FRAME_LENGTH = 2097151;
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+	// Packet decoded by a PacketDecodeEvent listener for the frame currently being processed.
+	public static final AttributeKey<DecodedPacket> DECODED_PACKET = AttributeKey.valueOf("hapi_decoded_packet");
+
 	private final Class<?> packetDataSerializerClass, networkManagerClass, enumProtocolClass,
 			enumProtocolDirectionClass;
+	private final ProtocolTables protocolTables;
 	private final Inflater inflater;
 	private final int bukkitVersion;
 	private final int compressionThreshold;
+	private boolean decodeOnce = false;
 
 	public BufferIO(final Reflection reflection, final String bukkitVersion, final int compressionThreshold) {
 		this.packetDataSerializerClass = reflection.getPacketDataSerializer();
 		this.networkManagerClass = reflection.getNetworkManager();
 		this.enumProtocolClass = reflection.getEnumProtocol();
 		this.enumProtocolDirectionClass = reflection.getEnumProtocolDirection();
+		this.protocolTables = new ProtocolTables(reflection);
 		this.inflater = new Inflater();
 		this.bukkitVersion = bukkitVersion == null ? 1206 : Integer.parseInt(bukkitVersion);
 		this.compressionThreshold = compressionThreshold;
 	}
 
+	public ProtocolTables getProtocolTables() {
+		return this.protocolTables;
+	}
+
+	public boolean isDecodeOnce() {
+		return this.decodeOnce;
+	}
+
+	/**
+	 * When enabled, packets decoded by {@link #decode} inside a PacketDecodeEvent
+	 * are handed downstream as objects so the vanilla decoder does not parse the
+	 * same bytes again.
+	 */
+	public void setDecodeOnce(final boolean decodeOnce) {
+		this.decodeOnce = decodeOnce;
+	}
+
 	public ByteBuf split(final ByteBuf bytebuf) throws DecoderException, IOException, IllegalAccessException,
 			InvocationTargetException, NoSuchMethodException, InstantiationException, NoSuchFieldException {
 		bytebuf.markReaderIndex();
@@ -118,34 +148,199 @@ public class BufferIO {
 			}
 
 			final Channel channel = chx.channel();
-			final Object packetDataSerializer = packetDataSerializerClass.getConstructor(ByteBuf.class)
-					.newInstance(byteBuf);
-			final Class<?> packetDataClass = packetDataSerializer.getClass();
-			final int id;
-
-			if (bukkitVersion > 1122) {
-				id = (int) packetDataClass.getMethod("g").invoke(packetDataSerializer);
-			} else {
-				id = (int) packetDataClass.getMethod("e").invoke(packetDataSerializer);
+			// Leave the frame untouched so the vanilla decoder can still read it, without touching the caller's mark.
+			final int readerIndex = byteBuf.readerIndex();
+
+			final ProtocolTable table = protocolTables.getTable(channel, PacketDirection.SERVERBOUND);
+			final Object packet;
+
+			try {
+				packet = table != null ? table.decode(byteBuf) : decodeReflectively(channel, byteBuf);
+
+				// Only a packet that consumed the whole frame can replace the vanilla decoder.
+				if (!byteBuf.isReadable()) {
+					channel.attr(DECODED_PACKET).set(new DecodedPacket(byteBuf, readerIndex, packet));
+				}
+			} finally {
+				byteBuf.readerIndex(readerIndex);
 			}
 
-			final AttributeKey<?> attributeKey = (AttributeKey<?>) networkManagerClass.getDeclaredField("c").get(null);
-			final Object attribute = channel.attr(attributeKey).get();
-			final Object packet = enumProtocolClass.getMethod("a", enumProtocolDirectionClass, int.class)
-					.invoke(enumProtocolClass.cast(attribute),
-							enumProtocolDirectionClass.getField("SERVERBOUND").get(null), id);
+			return new PacketWrapper(packet);
+		} else {
+			return null;
+		}
+	}
+
+	// Pre-table decoding path, kept for servers where the protocol tables could not be built.
+	private Object decodeReflectively(final Channel channel, final ByteBuf byteBuf) throws IOException,
+			IllegalAccessException, InvocationTargetException, NoSuchMethodException, InstantiationException,
+			NoSuchFieldException {
+		final Object packetDataSerializer = packetDataSerializerClass.getConstructor(ByteBuf.class)
+				.newInstance(byteBuf);
+		final Class<?> packetDataClass = packetDataSerializer.getClass();
+		final int id;
+
+		if (bukkitVersion > 1122) {
+			id = (int) packetDataClass.getMethod("g").invoke(packetDataSerializer);
+		} else {
+			id = (int) packetDataClass.getMethod("e").invoke(packetDataSerializer);
+		}
+
+		final AttributeKey<?> attributeKey = (AttributeKey<?>) networkManagerClass.getDeclaredField("c").get(null);
+		final Object attribute = channel.attr(attributeKey).get();
+		final Object packet = enumProtocolClass.getMethod("a", enumProtocolDirectionClass, int.class)
+				.invoke(enumProtocolClass.cast(attribute),
+						enumProtocolDirectionClass.getField("SERVERBOUND").get(null), id);
+
+		if (packet == null) {
+			throw new IOException("[BufferIO] Bad packet received. id: " + id);
+		}
+
+		packet.getClass().getMethod("a", packetDataSerializerClass).invoke(packet, packetDataSerializer);
+
+		return packet;
+	}
+
+	/**
+	 * Serializes a clientbound packet into a wire-ready, uncompressed frame
+	 * (length prefix + packet id + body) held by a pooled direct ByteBuf. The
+	 * caller owns the returned buffer and must release it.
+	 */
+	public ByteBuf encode(final Object packet, final ProtocolState state) throws IOException {
+		final ProtocolTable table = protocolTables.getTable(state, PacketDirection.CLIENTBOUND);
 
-			if (packet == null) {
-				throw new IOException("[BufferIO] Bad packet received. id: " + id);
+		if (table == null) {
+			throw new IOException("[BufferIO] No protocol table available for " + state);
+		}
+
+		final ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+
+		try {
+			// Reserve a fixed 3 byte length so the body never has to be copied.
+			frame.writeMedium(0);
+			table.encode(packet, frame);
+
+			if (!writeFrameLength(frame)) {
+				throw new IOException("[BufferIO] Packet too big to frame. length: " + (frame.readableBytes() - 3));
 			}
 
-			final Class<?> packetClass = packet.getClass();
+			return frame;
+		} catch (final IOException e) {
+			frame.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Turns a frame produced by {@link #encode} into the frame a compressed
+	 * connection expects, honoring the server compression threshold. When
+	 * compression is disabled the same frame is returned retained. The input
+	 * frame is not released.
+	 */
+	public ByteBuf compress(final ByteBuf frame) throws DataFormatException {
+		if (compressionThreshold < 0) {
+			return frame.retain();
+		}
 
-			packetClass.getMethod("a", packetDataSerializerClass).invoke(packet, packetDataSerializer);
+		final ByteBuf payload = frame.duplicate();
+		final int length = readVarInt(payload);
+		final ByteBuf compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
 
-			return new PacketWrapper(packet);
+		// Body layout: VarInt uncompressed length (0 if sent raw) + data.
+		compressed.writeMedium(0);
+
+		if (length < compressionThreshold) {
+			writeVarInt(compressed, 0);
+			compressed.writeBytes(payload, length);
 		} else {
-			return null;
+			final Deflater deflater = DEFLATER.get();
+			final byte[] input = new byte[length];
+			final byte[] output = new byte[8192];
+
+			payload.readBytes(input);
+			writeVarInt(compressed, length);
+			deflater.setInput(input);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				compressed.writeBytes(output, 0, deflater.deflate(output));
+			}
+
+			deflater.reset();
+		}
+
+		if (!writeFrameLength(compressed)) {
+			final int compressedLength = compressed.readableBytes() - 3;
+
+			compressed.release();
+			throw new DataFormatException("[BufferIO] Compressed packet too big to frame. length: " + compressedLength);
+		}
+
+		return compressed;
+	}
+
+	// Fills the 3 reserved leading bytes with a padded VarInt, which the splitter accepts like a minimal one.
+	private static boolean writeFrameLength(final ByteBuf frame) {
+		final int length = frame.readableBytes() - 3;
+
+		if (length > MAX_FRAME_LENGTH) {
+			return false;
+		}
+
+		frame.setMedium(0, (length & 0x7F | 0x80) << 16 | ((length >>> 7) & 0x7F | 0x80) << 8 | (length >>> 14));
+		return true;
+	}
+
+	public int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+
+	public static int readVarInt(final ByteBuf byteBuf) {
+		int value = 0;
+
+		for (int position = 0; position < 35; position += 7) {
+			final byte currentByte = byteBuf.readByte();
+
+			value |= (currentByte & 0x7F) << position;
+
+			if ((currentByte & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new DecoderException("[BufferIO] VarInt too big");
+	}
+
+	public static void writeVarInt(final ByteBuf byteBuf, int value) {
+		while ((value & ~0x7F) != 0) {
+			byteBuf.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		byteBuf.writeByte(value);
+	}
+
+	/**
+	 * A packet decoded from a frame, only valid for that same frame as long as
+	 * its readable bytes were not moved (e.g. by a listener rewriting it).
+	 */
+	public static final class DecodedPacket {
+		private final ByteBuf frame;
+		private final int readerIndex;
+		private final int writerIndex;
+		private final Object packet;
+
+		private DecodedPacket(final ByteBuf frame, final int readerIndex, final Object packet) {
+			this.frame = frame;
+			this.readerIndex = readerIndex;
+			this.writerIndex = frame.writerIndex();
+			this.packet = packet;
+		}
+
+		// The packet if it was decoded from this frame as it is now, otherwise null
+		public Object getPacket(final ByteBuf frame) {
+			return this.frame == frame && frame.readerIndex() == readerIndex && frame.writerIndex() == writerIndex
+					? packet : null;
 		}
 	}
-}
\ No newline at end of file
+}
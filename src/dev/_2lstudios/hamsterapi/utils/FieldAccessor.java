@@ -0,0 +1,201 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A compiled, thread-safe getter/setter for a single field.
+ * <p>
+ * The field is resolved once when the accessor is created and is read through
+ * {@link MethodHandle}s afterwards, so accessors can be cached and hoisted out
+ * of loops. On Java 9+ the handles come from a private lookup in the declaring
+ * class, so the field is never made accessible; Java 8 uses setAccessible. Primitive variants avoid boxing when the field type
+ * matches, and fall back to unboxing otherwise.
+ */
+public class FieldAccessor {
+	private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+	// MethodHandles.privateLookupIn, null on Java 8
+	private static final MethodHandle PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+	private final Field field;
+	private final MethodHandle getter;
+	// Null for final fields
+	private final MethodHandle setter;
+	// Only set when the field has that exact primitive type
+	private final MethodHandle intGetter;
+	private final MethodHandle longGetter;
+	private final MethodHandle doubleGetter;
+	private final MethodHandle floatGetter;
+	private final MethodHandle booleanGetter;
+
+	public FieldAccessor(final Field field) throws IllegalAccessException {
+		final MethodHandles.Lookup lookup = lookupFor(field);
+		final boolean isStatic = Modifier.isStatic(field.getModifiers());
+		final Class<?> type = field.getType();
+
+		MethodHandle getter = lookup.unreflectGetter(field);
+
+		if (isStatic) {
+			getter = MethodHandles.dropArguments(getter, 0, Object.class);
+		}
+
+		MethodHandle setter = null;
+
+		if (!Modifier.isFinal(field.getModifiers())) {
+			setter = lookup.unreflectSetter(field);
+
+			if (isStatic) {
+				setter = MethodHandles.dropArguments(setter, 0, Object.class);
+			}
+
+			setter = setter.asType(OBJECT_SETTER);
+		}
+
+		this.field = field;
+		this.getter = getter.asType(OBJECT_GETTER);
+		this.setter = setter;
+		this.intGetter = primitiveGetter(getter, type, int.class);
+		this.longGetter = primitiveGetter(getter, type, long.class);
+		this.doubleGetter = primitiveGetter(getter, type, double.class);
+		this.floatGetter = primitiveGetter(getter, type, float.class);
+		this.booleanGetter = primitiveGetter(getter, type, boolean.class);
+	}
+
+	private static MethodHandle findPrivateLookupIn() {
+		try {
+			return MethodHandles.publicLookup().findStatic(MethodHandles.class, "privateLookupIn",
+					MethodType.methodType(MethodHandles.Lookup.class, Class.class, MethodHandles.Lookup.class));
+		} catch (final ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	// A lookup that can read the private field, falls back to setAccessible
+	private static MethodHandles.Lookup lookupFor(final Field field) {
+		if (PRIVATE_LOOKUP_IN != null) {
+			try {
+				return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invokeExact(field.getDeclaringClass(),
+						MethodHandles.lookup());
+			} catch (final Throwable ignored) {
+				// The package is not opened to us, e.g. a JDK class
+			}
+		}
+
+		field.setAccessible(true);
+		return MethodHandles.lookup();
+	}
+
+	private static MethodHandle primitiveGetter(final MethodHandle getter, final Class<?> type,
+			final Class<?> primitive) {
+		return type == primitive ? getter.asType(MethodType.methodType(primitive, Object.class)) : null;
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public Class<?> getType() {
+		return field.getType();
+	}
+
+	public boolean isWritable() {
+		return setter != null;
+	}
+
+	// Instance is ignored for static fields
+	public Object get(final Object instance) {
+		try {
+			return (Object) getter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public void set(final Object instance, final Object value) {
+		if (setter == null) {
+			throw new UnsupportedOperationException("Field " + field.getName() + " is final");
+		}
+
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public int getInt(final Object instance) {
+		if (intGetter == null) {
+			return ((Number) get(instance)).intValue();
+		}
+
+		try {
+			return (int) intGetter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public long getLong(final Object instance) {
+		if (longGetter == null) {
+			return ((Number) get(instance)).longValue();
+		}
+
+		try {
+			return (long) longGetter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public double getDouble(final Object instance) {
+		if (doubleGetter == null) {
+			return ((Number) get(instance)).doubleValue();
+		}
+
+		try {
+			return (double) doubleGetter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public float getFloat(final Object instance) {
+		if (floatGetter == null) {
+			return ((Number) get(instance)).floatValue();
+		}
+
+		try {
+			return (float) floatGetter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	public boolean getBoolean(final Object instance) {
+		if (booleanGetter == null) {
+			return (Boolean) get(instance);
+		}
+
+		try {
+			return (boolean) booleanGetter.invokeExact(instance);
+		} catch (final Throwable throwable) {
+			throw rethrow(throwable);
+		}
+	}
+
+	private static RuntimeException rethrow(final Throwable throwable) {
+		if (throwable instanceof RuntimeException) {
+			return (RuntimeException) throwable;
+		}
+
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+
+		return new IllegalStateException(throwable);
+	}
+}
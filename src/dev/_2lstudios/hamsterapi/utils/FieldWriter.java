@@ -0,0 +1,62 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes fields regardless of their final modifier.
+ * <p>
+ * Regular fields are written through cached {@link FieldAccessor}s. Final
+ * ones use the {@code modifiers} hack where the JVM still has it (up to
+ * Java 11) and {@link UnsafeAccess} otherwise.
+ */
+public class FieldWriter {
+	// Field.modifiers, null on Java 12+ where it is filtered from reflection
+	private static final Field MODIFIERS = findModifiers();
+	private static final Map<Field, FieldAccessor> ACCESSORS = new ConcurrentHashMap<>();
+
+	private static Field findModifiers() {
+		try {
+			final Field modifiersField = Field.class.getDeclaredField("modifiers");
+			modifiersField.setAccessible(true);
+			return modifiersField;
+		} catch (final Exception e) {
+			return null;
+		}
+	}
+
+	public static void set(final Field field, final Object target, final Object value) throws IllegalAccessException {
+		if (!Modifier.isFinal(field.getModifiers())) {
+			getAccessor(field).set(target, value);
+			return;
+		}
+
+		if (MODIFIERS != null) {
+			try {
+				field.setAccessible(true);
+				MODIFIERS.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+				field.set(target, value);
+				return;
+			} catch (final IllegalAccessException | RuntimeException standardReflectionFailed) {
+				// Falls through to Unsafe
+			}
+		}
+
+		UnsafeAccess.put(field, target, value);
+	}
+
+	private static FieldAccessor getAccessor(final Field field) throws IllegalAccessException {
+		final FieldAccessor cached = ACCESSORS.get(field);
+
+		if (cached != null) {
+			return cached;
+		}
+
+		final FieldAccessor accessor = new FieldAccessor(field);
+
+		ACCESSORS.putIfAbsent(field, accessor);
+		return accessor;
+	}
+}
@@ -10,158 +10,165 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitScheduler;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 public class FoliaAPI {
-    private static Map<String, Method> cachedMethods = new HashMap<>();
-    
-    private static BukkitScheduler bS = Bukkit.getScheduler();
-    private static Object globalRegionScheduler = getGlobalRegionScheduler();
-    private static Object regionScheduler = getRegionScheduler();
-    private static Object asyncScheduler = getAsyncScheduler();
-
-    // Cache methods as early as possible
-    static {
-        cacheMethods();
-    }
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    // Folia tick length, used to convert tick delays for the AsyncScheduler
+    private static final long MILLIS_PER_TICK = 50L;
 
-    private static Method getMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
-        if (clazz == null) {
-            return null;
+    private static final Object globalRegionScheduler = getScheduler("getGlobalRegionScheduler");
+    private static final Object regionScheduler = getScheduler("getRegionScheduler");
+    private static final Object asyncScheduler = getScheduler("getAsyncScheduler");
+    // Detected once, the server type can't change at runtime
+    private static final boolean FOLIA = hasClass("io.papermc.paper.threadedregions.RegionizedServer")
+            && globalRegionScheduler != null && regionScheduler != null;
+
+    // Handles are resolved on the scheduler interfaces, never on the (non public) implementations
+    private static final MethodHandle GLOBAL_RUN = findHandle(typeOf("getGlobalRegionScheduler"), "run",
+            Plugin.class, Consumer.class);
+    private static final MethodHandle GLOBAL_RUN_DELAYED = findHandle(typeOf("getGlobalRegionScheduler"),
+            "runDelayed", Plugin.class, Consumer.class, long.class);
+    private static final MethodHandle GLOBAL_RUN_AT_FIXED_RATE = findHandle(typeOf("getGlobalRegionScheduler"),
+            "runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+    private static final MethodHandle GLOBAL_CANCEL_TASKS = findHandle(typeOf("getGlobalRegionScheduler"),
+            "cancelTasks", Plugin.class);
+    private static final MethodHandle REGION_EXECUTE = findHandle(typeOf("getRegionScheduler"), "execute",
+            Plugin.class, World.class, int.class, int.class, Runnable.class);
+    private static final MethodHandle REGION_EXECUTE_LOCATION = findHandle(typeOf("getRegionScheduler"), "execute",
+            Plugin.class, Location.class, Runnable.class);
+    private static final MethodHandle REGION_RUN_DELAYED = findHandle(typeOf("getRegionScheduler"), "runDelayed",
+            Plugin.class, Location.class, Consumer.class, long.class);
+    private static final MethodHandle REGION_RUN_AT_FIXED_RATE = findHandle(typeOf("getRegionScheduler"),
+            "runAtFixedRate", Plugin.class, Location.class, Consumer.class, long.class, long.class);
+    private static final MethodHandle ASYNC_RUN_NOW = findHandle(typeOf("getAsyncScheduler"), "runNow",
+            Plugin.class, Consumer.class);
+    private static final MethodHandle ASYNC_RUN_DELAYED = findHandle(typeOf("getAsyncScheduler"), "runDelayed",
+            Plugin.class, Consumer.class, long.class, TimeUnit.class);
+    private static final MethodHandle ASYNC_CANCEL_TASKS = findHandle(typeOf("getAsyncScheduler"), "cancelTasks",
+            Plugin.class);
+    private static final Class<?> ENTITY_SCHEDULER = returnTypeOf(Entity.class, "getScheduler");
+    private static final MethodHandle ENTITY_GET_SCHEDULER = findHandle(Entity.class, "getScheduler");
+    // EntityScheduler#execute returns boolean, its tasks take no ScheduledTask
+    private static final MethodHandle ENTITY_EXECUTE = findHandle(ENTITY_SCHEDULER, "execute", Plugin.class,
+            Runnable.class, Runnable.class, long.class);
+    private static final MethodHandle ENTITY_RUN_AT_FIXED_RATE = findHandle(ENTITY_SCHEDULER, "runAtFixedRate",
+            Plugin.class, Consumer.class, Runnable.class, long.class, long.class);
+    private static final MethodHandle PLAYER_TELEPORT_ASYNC = findHandle(Player.class, "teleportAsync",
+            Location.class);
+
+    private static final LongAdder scheduledTasks = new LongAdder();
+
+    private static boolean hasClass(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
         }
+    }
+
+    private static Class<?> returnTypeOf(Class<?> clazz, String methodName) {
         try {
-            return clazz.getMethod(methodName, parameterTypes);
+            return clazz.getMethod(methodName).getReturnType();
         } catch (NoSuchMethodException e) {
-            // Gracefully handle the case where the method does not exist
             return null;
         }
     }
 
-    private static void cacheMethods() {
-        // Cache methods for globalRegionScheduler
-        if (globalRegionScheduler != null) {
-            Method runAtFixedRateMethod = getMethod(globalRegionScheduler.getClass(), "runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
-            if (runAtFixedRateMethod != null) {
-                cachedMethods.put("globalRegionScheduler.runAtFixedRate", runAtFixedRateMethod);
-            }
-    
-            Method runMethod = getMethod(globalRegionScheduler.getClass(), "run", Plugin.class, Consumer.class);
-            if (runMethod != null) {
-                cachedMethods.put("globalRegionScheduler.run", runMethod);
-            }
-            
-            Method runDelayedMethod = getMethod(globalRegionScheduler.getClass(), "runDelayed", Plugin.class, Consumer.class, long.class);
-            if (runDelayedMethod != null) {
-                cachedMethods.put("globalRegionScheduler.runDelayed", runDelayedMethod);
-            }
+    private static Class<?> typeOf(String serverMethodName) {
+        return returnTypeOf(Server.class, serverMethodName);
+    }
 
-            Method cancelTasksMethod = getMethod(globalRegionScheduler.getClass(), "cancelTasks", Plugin.class);
-            if (cancelTasksMethod != null) {
-                cachedMethods.put("globalRegionScheduler.cancelTasks", cancelTasksMethod);
-            }
-        }
-    
-        // Cache methods for regionScheduler
-        if (regionScheduler != null) {
-            Method executeMethod = getMethod(regionScheduler.getClass(), "execute", Plugin.class, World.class, int.class, int.class, Runnable.class);
-            if (executeMethod != null) {
-                cachedMethods.put("regionScheduler.execute", executeMethod);
-            }
-    
-            Method executeLocationMethod = getMethod(regionScheduler.getClass(), "execute", Plugin.class, Location.class, Runnable.class);
-            if (executeLocationMethod != null) {
-                cachedMethods.put("regionScheduler.executeLocation", executeLocationMethod);
-            }
-    
-            Method runAtFixedRateMethod = getMethod(regionScheduler.getClass(), "runAtFixedRate", Plugin.class, Location.class, Consumer.class, long.class, long.class);
-            if (runAtFixedRateMethod != null) {
-                cachedMethods.put("regionScheduler.runAtFixedRate", runAtFixedRateMethod);
-            }
-    
-            Method runDelayedMethod = getMethod(regionScheduler.getClass(), "runDelayed", Plugin.class, Location.class, Consumer.class, long.class);
-            if (runDelayedMethod != null) {
-                cachedMethods.put("regionScheduler.runDelayed", runDelayedMethod);
-            }
-        }
-    
-        // Cache methods for entity scheduler
-        Method getSchedulerMethod = getMethod(Entity.class, "getScheduler");
-        if (getSchedulerMethod != null) {
-            cachedMethods.put("entity.getScheduler", getSchedulerMethod);
-        }
-    
-        Method executeEntityMethod = getMethod(Entity.class, "execute", Plugin.class, Runnable.class, Runnable.class, long.class);
-        if (executeEntityMethod != null) {
-            cachedMethods.put("entityScheduler.execute", executeEntityMethod);
-        }
-    
-        Method runAtFixedRateEntityMethod = getMethod(Entity.class, "runAtFixedRate", Plugin.class, Consumer.class, Runnable.class, long.class, long.class);
-        if (runAtFixedRateEntityMethod != null) {
-            cachedMethods.put("entityScheduler.runAtFixedRate", runAtFixedRateEntityMethod);
+    private static Object getScheduler(String serverMethodName) {
+        final Server server = Bukkit.getServer();
+
+        if (server == null) {
+            return null;
         }
-    
-        // Cache method for Player teleportAsync
-        Method teleportAsyncMethod = getMethod(Player.class, "teleportAsync", Location.class);
-        if (teleportAsyncMethod != null) {
-            cachedMethods.put("player.teleportAsync", teleportAsyncMethod);
+
+        try {
+            final Method method = Server.class.getMethod(serverMethodName);
+            return method.invoke(server);
+        } catch (Exception e) {
+            // Not Paper/Folia
+            return null;
         }
+    }
 
-        // Cache methods for asyncScheduler
-        if (asyncScheduler != null) {
-            Method cancelTasksMethod = getMethod(asyncScheduler.getClass(), "cancelTasks", Plugin.class);
-            if (cancelTasksMethod != null) {
-                cachedMethods.put("asyncScheduler.cancelTasks", cancelTasksMethod);
-            }
+    private static MethodHandle findHandle(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        if (clazz == null) {
+            return null;
+        }
+        try {
+            final MethodHandle handle = LOOKUP.unreflect(clazz.getMethod(methodName, parameterTypes));
+            // (Object[])Object, so every call is a plain invokeExact
+            return handle.asType(handle.type().generic()).asSpreader(Object[].class, handle.type().parameterCount());
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // Gracefully handle the case where the method does not exist
+            return null;
         }
     }
 
-    private static Object invokeMethod(Method method, Object object, Object... args) {
+    private static Object invoke(MethodHandle handle, Object... args) {
+        if (handle == null || args[0] == null) {
+            return null;
+        }
         try {
-            if (method != null && object != null) {
-                method.setAccessible(true);
-                return method.invoke(object, args);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+            return (Object) handle.invokeExact(args);
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+            return null;
         }
-        return null;
     }
 
-    private static Object getGlobalRegionScheduler() {
-        Method method = getMethod(Server.class, "getGlobalRegionScheduler");
-        return invokeMethod(method, Bukkit.getServer());
+    private static Object schedule(MethodHandle handle, Object... args) {
+        scheduledTasks.increment();
+        return invoke(handle, args);
     }
-    
-    private static Object getRegionScheduler() {
-        Method method = getMethod(Server.class, "getRegionScheduler");
-        return invokeMethod(method, Bukkit.getServer());
+
+    private static BukkitScheduler getBukkitScheduler() {
+        return Bukkit.getScheduler();
     }
 
-    private static Object getAsyncScheduler() {
-        Method method = getMethod(Server.class, "getAsyncScheduler");
-        return invokeMethod(method, Bukkit.getServer());
+    // Folia rejects non positive delays
+    private static long ticks(long delay) {
+        return Math.max(1L, delay);
     }
 
     public static boolean isFolia() {
-        try {
-            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
-            return globalRegionScheduler != null && regionScheduler != null;
-        } catch (Exception ig) {
-            return false;
-        }
+        return FOLIA;
+    }
+
+    // Tasks scheduled through FoliaAPI since startup, for metrics
+    public static long getScheduledTasks() {
+        return scheduledTasks.sum();
     }
 
     public static void runTaskAsync(Runnable run, long delay) {
-        if (!isFolia()) {
-            bS.runTaskLaterAsynchronously(HamsterAPI.getInstance(), run, delay);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskLaterAsynchronously(HamsterAPI.getInstance(), run, delay);
             return;
         }
-        Executors.defaultThreadFactory().newThread(run).start();
+
+        final Consumer<Object> task = ignored -> run.run();
+
+        if (delay <= 0 && ASYNC_RUN_NOW != null) {
+            schedule(ASYNC_RUN_NOW, asyncScheduler, HamsterAPI.getInstance(), task);
+        } else if (ASYNC_RUN_DELAYED != null) {
+            schedule(ASYNC_RUN_DELAYED, asyncScheduler, HamsterAPI.getInstance(), task, ticks(delay) * MILLIS_PER_TICK,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            scheduledTasks.increment();
+            AsyncExecutor.schedule(run, Math.max(0L, delay) * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        }
     }
 
     public static void runTaskAsync(Runnable run) {
@@ -169,12 +176,14 @@ public class FoliaAPI {
     }
 
     public static void runTaskTimerAsync(Consumer<Object> run, long delay, long period) {
-        if (!isFolia()) {
-            bS.runTaskTimerAsynchronously(HamsterAPI.getInstance(), () -> run.accept(null), delay, period);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskTimerAsynchronously(HamsterAPI.getInstance(), () -> run.accept(null), delay,
+                    period);
             return;
         }
-        Method method = cachedMethods.get("globalRegionScheduler.runAtFixedRate");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), run, delay, period);
+        schedule(GLOBAL_RUN_AT_FIXED_RATE, globalRegionScheduler, HamsterAPI.getInstance(), run, ticks(delay),
+                ticks(period));
     }
 
     public static void runTaskTimerAsync(Runnable runnable, long delay, long period) {
@@ -182,145 +191,139 @@ public class FoliaAPI {
     }
 
     public static void runTaskTimer(Consumer<Object> run, long delay, long period) {
-        if (!isFolia()) {
-            bS.runTaskTimer(HamsterAPI.getInstance(), () -> run.accept(null), delay, period);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskTimer(HamsterAPI.getInstance(), () -> run.accept(null), delay, period);
             return;
         }
-        Method method = cachedMethods.get("globalRegionScheduler.runAtFixedRate");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), run, delay, period);
+        schedule(GLOBAL_RUN_AT_FIXED_RATE, globalRegionScheduler, HamsterAPI.getInstance(), run, ticks(delay),
+                ticks(period));
     }
 
     public static void runTask(Runnable run) {
-        if (!isFolia()) {
-            bS.runTask(HamsterAPI.getInstance(), run);
-            return;
-        }
-        Method method = cachedMethods.get("globalRegionScheduler.run");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), (Consumer<Object>) ignored -> run.run());
+        runTask((Consumer<Object>) ignored -> run.run());
     }
 
     public static void runTask(Consumer<Object> run) {
-        if (!isFolia()) {
-            bS.runTask(HamsterAPI.getInstance(), () -> run.accept(null));
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTask(HamsterAPI.getInstance(), () -> run.accept(null));
             return;
         }
-        Method method = cachedMethods.get("globalRegionScheduler.run");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), run);
+        schedule(GLOBAL_RUN, globalRegionScheduler, HamsterAPI.getInstance(), run);
     }
 
     public static void runTaskLater(Runnable run, long delay) {
-        if (!isFolia()) {
-            bS.runTaskLater(HamsterAPI.getInstance(), run, delay);
-            return;
-        }
-        // Use Folia's global region scheduler for a delayed task
-        Method method = cachedMethods.get("globalRegionScheduler.runDelayed");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), (Consumer<Object>) ignored -> run.run(), delay);
+        runTaskLater((Consumer<Object>) ignored -> run.run(), delay);
     }
 
     public static void runTaskLater(Consumer<Object> run, long delay) {
-        if (!isFolia()) {
-            bS.runTaskLater(HamsterAPI.getInstance(), () -> run.accept(null), delay);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskLater(HamsterAPI.getInstance(), () -> run.accept(null), delay);
             return;
         }
-        // Use Folia's global region scheduler for a delayed task
-        Method method = cachedMethods.get("globalRegionScheduler.runDelayed");
-        invokeMethod(method, globalRegionScheduler, HamsterAPI.getInstance(), run, delay);
+        schedule(GLOBAL_RUN_DELAYED, globalRegionScheduler, HamsterAPI.getInstance(), run, ticks(delay));
     }
 
     public static void runTaskForEntity(Entity entity, Runnable run, Runnable retired, long delay) {
-        if (!isFolia()) {
-            bS.runTaskLater(HamsterAPI.getInstance(), run, delay);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskLater(HamsterAPI.getInstance(), run, delay);
             return;
         }
         if (entity == null) return;
-        Method getSchedulerMethod = cachedMethods.get("entity.getScheduler");
-        Object entityScheduler = invokeMethod(getSchedulerMethod, entity);
-        Method executeMethod = cachedMethods.get("entityScheduler.execute");
-        invokeMethod(executeMethod, entityScheduler, HamsterAPI.getInstance(), run, retired, delay);
+        final Object entityScheduler = invoke(ENTITY_GET_SCHEDULER, entity);
+        schedule(ENTITY_EXECUTE, entityScheduler, HamsterAPI.getInstance(), run, retired, ticks(delay));
     }
 
     public static void runTaskForEntityRepeating(Entity entity, Consumer<Object> task, Runnable retired,
             long initialDelay, long period) {
-        if (!isFolia()) {
-            bS.runTaskTimer(HamsterAPI.getInstance(), () -> task.accept(null), initialDelay, period);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskTimer(HamsterAPI.getInstance(), () -> task.accept(null), initialDelay, period);
             return;
         }
         if (entity == null) return;
-        Method getSchedulerMethod = cachedMethods.get("entity.getScheduler");
-        Object entityScheduler = invokeMethod(getSchedulerMethod, entity);
-        Method runAtFixedRateMethod = cachedMethods.get("entityScheduler.runAtFixedRate");
-        invokeMethod(runAtFixedRateMethod, entityScheduler, HamsterAPI.getInstance(), task, retired, initialDelay, period);
+        final Object entityScheduler = invoke(ENTITY_GET_SCHEDULER, entity);
+        schedule(ENTITY_RUN_AT_FIXED_RATE, entityScheduler, HamsterAPI.getInstance(), task, retired,
+                ticks(initialDelay), ticks(period));
     }
 
     public static void runTaskForRegion(World world, int chunkX, int chunkZ, Runnable run) {
-        if (!isFolia()) {
-            bS.runTask(HamsterAPI.getInstance(), run);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTask(HamsterAPI.getInstance(), run);
             return;
         }
         if (world == null) return;
-        Method executeMethod = cachedMethods.get("regionScheduler.execute");
-        invokeMethod(executeMethod, regionScheduler, HamsterAPI.getInstance(), world, chunkX, chunkZ, run);
+        schedule(REGION_EXECUTE, regionScheduler, HamsterAPI.getInstance(), world, chunkX, chunkZ, run);
     }
 
     public static void runTaskForRegion(Location location, Runnable run) {
-        if (!isFolia()) {
-            bS.runTask(HamsterAPI.getInstance(), run);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTask(HamsterAPI.getInstance(), run);
             return;
         }
         if (location == null) return;
-        Method executeMethod = cachedMethods.get("regionScheduler.executeLocation");
-        invokeMethod(executeMethod, regionScheduler, HamsterAPI.getInstance(), location, run);
+        schedule(REGION_EXECUTE_LOCATION, regionScheduler, HamsterAPI.getInstance(), location, run);
     }
 
     public static void runTaskForRegionRepeating(Location location, Consumer<Object> task, long initialDelay,
             long period) {
-        if (!isFolia()) {
-            bS.runTaskTimer(HamsterAPI.getInstance(), () -> task.accept(null), initialDelay, period);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskTimer(HamsterAPI.getInstance(), () -> task.accept(null), initialDelay, period);
             return;
         }
         if (location == null) return;
-        Method runAtFixedRateMethod = cachedMethods.get("regionScheduler.runAtFixedRate");
-        invokeMethod(runAtFixedRateMethod, regionScheduler, HamsterAPI.getInstance(), location, task, initialDelay, period);
+        schedule(REGION_RUN_AT_FIXED_RATE, regionScheduler, HamsterAPI.getInstance(), location, task,
+                ticks(initialDelay), ticks(period));
     }
 
     public static void runTaskForRegionDelayed(Location location, Consumer<Object> task, long delay) {
-        if (!isFolia()) {
-            bS.runTaskLater(HamsterAPI.getInstance(), () -> task.accept(null), delay);
+        if (!FOLIA) {
+            scheduledTasks.increment();
+            getBukkitScheduler().runTaskLater(HamsterAPI.getInstance(), () -> task.accept(null), delay);
             return;
         }
         if (location == null) return;
-        Method runDelayedMethod = cachedMethods.get("regionScheduler.runDelayed");
-        invokeMethod(runDelayedMethod, regionScheduler, HamsterAPI.getInstance(), location, task, delay);
+        schedule(REGION_RUN_DELAYED, regionScheduler, HamsterAPI.getInstance(), location, task, ticks(delay));
     }
 
+    @SuppressWarnings("unchecked")
     public static CompletableFuture<Boolean> teleportPlayer(Player e, Location location, Boolean async) {
-        if (!isFolia()) {
-            e.teleport(location);
-            return CompletableFuture.completedFuture(true);
-        } else if (async) {
-            Method teleportMethod = cachedMethods.get("player.teleportAsync");
-            return CompletableFuture.completedFuture(invokeMethod(teleportMethod, e, location) != null);
-        } else {
-            e.teleport(location);
-            return CompletableFuture.completedFuture(true);
+        if (FOLIA && async && PLAYER_TELEPORT_ASYNC != null) {
+            final Object result = invoke(PLAYER_TELEPORT_ASYNC, e, location);
+
+            if (result instanceof CompletableFuture) {
+                return (CompletableFuture<Boolean>) result;
+            }
+            return CompletableFuture.completedFuture(false);
         }
+        e.teleport(location);
+        return CompletableFuture.completedFuture(true);
     }
 
     public static void cancelAllTasks() {
         Plugin plugin = HamsterAPI.getInstance();
-        if (!isFolia()) {
+        if (!FOLIA) {
             // Standard Bukkit/Spigot/Paper: cancel all tasks for the plugin
-            bS.cancelTasks(plugin);
+            getBukkitScheduler().cancelTasks(plugin);
             return;
         }
 
         // 1. Cancel tasks on the GlobalRegionScheduler
-        Method cancelGlobalMethod = cachedMethods.get("globalRegionScheduler.cancelTasks");
-        invokeMethod(cancelGlobalMethod, globalRegionScheduler, plugin);
-        
+        invoke(GLOBAL_CANCEL_TASKS, globalRegionScheduler, plugin);
+
         // 2. Cancel tasks on the modern AsyncScheduler
-        Method cancelAsyncMethod = cachedMethods.get("asyncScheduler.cancelTasks");
-        invokeMethod(cancelAsyncMethod, asyncScheduler, plugin);
+        invoke(ASYNC_CANCEL_TASKS, asyncScheduler, plugin);
+    }
+
+    // Cancels every task and stops the shared async pool, called on disable
+    public static void shutdown() {
+        cancelAllTasks();
+        AsyncExecutor.shutdown();
     }
-}
\ No newline at end of file
+}
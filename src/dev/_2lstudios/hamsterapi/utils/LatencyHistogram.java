@@ -0,0 +1,102 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram for latencies in nanoseconds.
+ * <p>
+ * Values are grouped in power of two ranges split into 8 buckets each, so
+ * percentiles are accurate to within 12.5% while recording stays a couple of
+ * atomic increments, cheap enough for the packet path.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		buckets.incrementAndGet(index(value));
+		count.increment();
+		total.add(value);
+
+		long currentMax = max.get();
+
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		final long samples = count.sum();
+		return samples == 0 ? 0 : (double) total.sum() / samples;
+	}
+
+	// Returns the upper bound of the bucket holding the given percentile (0-100), or 0 if empty.
+	public long getPercentile(final double percentile) {
+		long remaining = (long) Math.ceil(percentile / 100 * count.sum());
+
+		if (remaining <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < buckets.length(); i++) {
+			remaining -= buckets.get(i);
+
+			if (remaining <= 0) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	private static int index(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBound(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+
+		final int shift = index / SUB_BUCKETS - 1;
+		final long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+		return lower + (1L << shift) - 1;
+	}
+}
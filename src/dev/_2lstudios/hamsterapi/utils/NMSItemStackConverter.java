@@ -3,6 +3,9 @@ package dev._2lstudios.hamsterapi.utils;
 import org.bukkit.Bukkit;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,12 +14,18 @@ import java.util.logging.Logger;
  * A utility class to convert between Bukkit ItemStacks and their internal
  * NMS (net.minecraft.server) counterparts.
  * This class is designed to fail gracefully on incompatible server versions.
+ * <p>
+ * The CraftItemStack methods are called through {@link MethodHandle}s, and
+ * {@link #getBukkitView(Object)} keeps the conversions of NMS stacks that are
+ * read again (e.g. a window update sent to many players) until they are
+ * collected.
  */
 public class NMSItemStackConverter {
 
-    private static Method AS_NMS_COPY_METHOD;
-    private static Method AS_BUKKIT_COPY_METHOD;
+    private static MethodHandle AS_NMS_COPY;
+    private static MethodHandle AS_BUKKIT_COPY;
     private static boolean enabled = false;
+    private static final WeakIdentityCache<Object, ItemStack> VIEWS = new WeakIdentityCache<>();
 
     static {
         // Use a dedicated logger for clarity
@@ -44,13 +53,20 @@ public class NMSItemStackConverter {
             Class<?> craftItemStackClass = Class.forName(craftItemStackPath);
             
             // Get the method to convert a Bukkit ItemStack to an NMS ItemStack
-            AS_NMS_COPY_METHOD = craftItemStackClass.getMethod("asNMSCopy", ItemStack.class);
+            Method asNMSCopyMethod = craftItemStackClass.getMethod("asNMSCopy", ItemStack.class);
             
             // Determine the NMS ItemStack class from the return type of the first method
-            Class<?> nmsItemStackClass = AS_NMS_COPY_METHOD.getReturnType();
+            Class<?> nmsItemStackClass = asNMSCopyMethod.getReturnType();
             
             // Get the method to convert an NMS ItemStack back to a Bukkit ItemStack
-            AS_BUKKIT_COPY_METHOD = craftItemStackClass.getMethod("asBukkitCopy", nmsItemStackClass);
+            Method asBukkitCopyMethod = craftItemStackClass.getMethod("asBukkitCopy", nmsItemStackClass);
+
+            // Adapted to Object so they can be invoked exactly without knowing the NMS class
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            AS_NMS_COPY = lookup.unreflect(asNMSCopyMethod)
+                    .asType(MethodType.methodType(Object.class, ItemStack.class));
+            AS_BUKKIT_COPY = lookup.unreflect(asBukkitCopyMethod)
+                    .asType(MethodType.methodType(ItemStack.class, Object.class));
 
             // If all reflection succeeds, enable the converter.
             enabled = true;
@@ -79,8 +95,8 @@ public class NMSItemStackConverter {
             return null;
         }
         try {
-            return AS_NMS_COPY_METHOD.invoke(null, bukkitItem);
-        } catch (Exception e) {
+            return (Object) AS_NMS_COPY.invokeExact(bukkitItem);
+        } catch (Throwable e) {
             return null; // Graceful failure on a per-call basis
         }
     }
@@ -95,9 +111,23 @@ public class NMSItemStackConverter {
             return null;
         }
         try {
-            return (ItemStack) AS_BUKKIT_COPY_METHOD.invoke(null, nmsItem);
-        } catch (Exception e) {
+            return (ItemStack) AS_BUKKIT_COPY.invokeExact(nmsItem);
+        } catch (Throwable e) {
             return null; // Graceful failure on a per-call basis
         }
     }
+
+    /**
+     * Same as {@link #convertToBukkit(Object)}, but the result is cached for as
+     * long as the NMS ItemStack is alive and shared by every caller converting
+     * that same instance. Treat it as read-only, clone it before changing it.
+     */
+    public static ItemStack getBukkitView(Object nmsItem) {
+        if (!enabled || nmsItem == null) {
+            return null;
+        }
+
+        // asBukkitCopy does not keep the NMS stack, so the key can still be collected
+        return VIEWS.computeIfAbsent(nmsItem, NMSItemStackConverter::convertToBukkit);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import dev._2lstudios.hamsterapi.hamsterplayer.HamsterPlayer;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+
+/**
+ * A packet encoded once and reusable for any number of players.
+ * <p>
+ * The compressed variant is built lazily the first time a player with
+ * compression enabled receives it. Every write sends a retained duplicate,
+ * so call {@link #release()} once the frame is no longer cached.
+ */
+public class PacketFrame {
+	private final BufferIO bufferIO;
+	private final ByteBuf frame;
+	private final AtomicReference<ByteBuf> compressedFrame = new AtomicReference<>();
+
+	public PacketFrame(final BufferIO bufferIO, final ByteBuf frame) {
+		this.bufferIO = bufferIO;
+		this.frame = frame;
+	}
+
+	public static PacketFrame of(final BufferIO bufferIO, final Object packet, final ProtocolState state)
+			throws IOException {
+		return new PacketFrame(bufferIO, bufferIO.encode(packet, state));
+	}
+
+	public ByteBuf getFrame() {
+		return frame;
+	}
+
+	public ByteBuf getCompressedFrame() throws DataFormatException {
+		ByteBuf compressed = compressedFrame.get();
+
+		if (compressed == null) {
+			compressed = bufferIO.compress(frame);
+
+			if (!compressedFrame.compareAndSet(null, compressed)) {
+				compressed.release();
+				compressed = compressedFrame.get();
+			}
+		}
+
+		return compressed;
+	}
+
+	// Size in bytes of the frames currently held.
+	public int size() {
+		final ByteBuf compressed = compressedFrame.get();
+		return frame.readableBytes() + (compressed == null ? 0 : compressed.readableBytes());
+	}
+
+	public void writeTo(final HamsterPlayer hamsterPlayer) throws DataFormatException {
+		hamsterPlayer.sendFrame(retainedFor(hamsterPlayer));
+	}
+
+	// Returns a retained duplicate of the frame the player expects, owned by the caller
+	public ByteBuf retainedFor(final HamsterPlayer hamsterPlayer) throws DataFormatException {
+		final ByteBuf source = hamsterPlayer.isCompressed() ? getCompressedFrame() : frame;
+		return source.retainedDuplicate();
+	}
+
+	public void release() {
+		frame.release();
+
+		final ByteBuf compressed = compressedFrame.getAndSet(null);
+
+		if (compressed != null) {
+			compressed.release();
+		}
+	}
+}
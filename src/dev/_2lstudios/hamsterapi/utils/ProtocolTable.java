@@ -0,0 +1,134 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Packet id mappings of one protocol state and direction, resolved once.
+ * <p>
+ * Legacy tables hold one decoder handle per packet id, so decoding is an array
+ * index and a single handle call. On 1.20.5+ the server's own StreamCodec
+ * already dispatches by id, so the table keeps a handle to it instead.
+ */
+public class ProtocolTable {
+	private final ProtocolState state;
+	private final PacketDirection direction;
+	// (Object buffer)Object handles indexed by packet id, null for codec tables.
+	private final MethodHandle[] decoders;
+	// (Object packet, Object buffer)void handles indexed by packet id, null for codec tables.
+	private final MethodHandle[] encoders;
+	private final Class<?>[] packetClasses;
+	private final Map<Class<?>, Integer> packetIds;
+	// (ByteBuf)Object handle wrapping a ByteBuf into a PacketDataSerializer.
+	private final MethodHandle serializerFactory;
+	// (Object buffer)Object and (Object buffer, Object packet)void handles of the StreamCodec, null for legacy tables.
+	private final MethodHandle codecDecoder, codecEncoder;
+
+	ProtocolTable(final ProtocolState state, final PacketDirection direction, final MethodHandle[] decoders,
+			final MethodHandle[] encoders, final Class<?>[] packetClasses, final Map<Class<?>, Integer> packetIds,
+			final MethodHandle serializerFactory) {
+		this.state = state;
+		this.direction = direction;
+		this.decoders = decoders;
+		this.encoders = encoders;
+		this.packetClasses = packetClasses;
+		this.packetIds = packetIds;
+		this.serializerFactory = serializerFactory;
+		this.codecDecoder = null;
+		this.codecEncoder = null;
+	}
+
+	ProtocolTable(final ProtocolState state, final PacketDirection direction, final MethodHandle codecDecoder,
+			final MethodHandle codecEncoder) {
+		this.state = state;
+		this.direction = direction;
+		this.decoders = null;
+		this.encoders = null;
+		this.packetClasses = new Class<?>[0];
+		this.packetIds = Collections.emptyMap();
+		this.serializerFactory = null;
+		this.codecDecoder = codecDecoder;
+		this.codecEncoder = codecEncoder;
+	}
+
+	public ProtocolState getState() {
+		return state;
+	}
+
+	public PacketDirection getDirection() {
+		return direction;
+	}
+
+	public boolean isCodec() {
+		return codecDecoder != null;
+	}
+
+	// Returns the packet class registered for the id, or null if unknown (always null for codec tables).
+	public Class<?> getPacketClass(final int id) {
+		return id >= 0 && id < packetClasses.length ? packetClasses[id] : null;
+	}
+
+	// Returns the id of the packet class, or -1 if unknown.
+	public int getPacketId(final Class<?> packetClass) {
+		final Integer id = packetIds.get(packetClass);
+		return id == null ? -1 : id;
+	}
+
+	// Reads the packet id and body from the buffer and returns the packet.
+	public Object decode(final ByteBuf byteBuf) throws IOException {
+		try {
+			if (codecDecoder != null) {
+				return (Object) codecDecoder.invokeExact((Object) byteBuf);
+			}
+
+			final int id = BufferIO.readVarInt(byteBuf);
+			final MethodHandle decoder = id >= 0 && id < decoders.length ? decoders[id] : null;
+
+			if (decoder == null) {
+				throw new IOException("[BufferIO] Bad packet received. id: " + id);
+			}
+
+			final Object serializer = (Object) serializerFactory.invokeExact(byteBuf);
+			return (Object) decoder.invokeExact(serializer);
+		} catch (final IOException e) {
+			throw e;
+		} catch (final Throwable throwable) {
+			throw new IOException("[BufferIO] Failed to decode " + state + " " + direction + " packet", throwable);
+		}
+	}
+
+	// Writes the packet id and body of the packet to the buffer.
+	public void encode(final Object packet, final ByteBuf byteBuf) throws IOException {
+		try {
+			if (codecEncoder != null) {
+				codecEncoder.invokeExact((Object) byteBuf, packet);
+				return;
+			}
+
+			if (codecDecoder != null) {
+				throw new IOException("[BufferIO] No encoder available for " + state + " " + direction);
+			}
+
+			final int id = getPacketId(packet.getClass());
+			final MethodHandle encoder = id >= 0 ? encoders[id] : null;
+
+			if (encoder == null) {
+				throw new IOException("[BufferIO] Packet " + packet.getClass().getSimpleName() + " is not registered in "
+						+ state + " " + direction);
+			}
+
+			BufferIO.writeVarInt(byteBuf, id);
+			encoder.invokeExact(packet, (Object) serializerFactory.invokeExact(byteBuf));
+		} catch (final IOException e) {
+			throw e;
+		} catch (final Throwable throwable) {
+			throw new IOException("[BufferIO] Failed to encode " + packet.getClass().getSimpleName(), throwable);
+		}
+	}
+}
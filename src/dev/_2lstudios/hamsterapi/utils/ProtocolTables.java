@@ -0,0 +1,432 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import dev._2lstudios.hamsterapi.enums.ProtocolState;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Builds {@link ProtocolTable}s for the running server.
+ * <p>
+ * Up to 1.20.4 the tables of every state and direction are read from the
+ * EnumProtocol registry at startup, supporting both the no-arg constructor +
+ * read method packets (1.8-1.16) and the PacketDataSerializer constructor or
+ * deserializer function packets (1.17-1.20.4). On 1.20.5+ packets are decoded
+ * through the StreamCodec of the ProtocolInfo held by the channel's decoder,
+ * which is resolved once per ProtocolInfo instance. The server binds a new
+ * ProtocolInfo for every connection and state, so those tables are only kept
+ * while their ProtocolInfo is alive.
+ */
+public class ProtocolTables {
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType DECODER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType ENCODER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodHandle CONSTRUCT_AND_READ;
+	private static final MethodHandle FUNCTION_APPLY;
+
+	static {
+		try {
+			CONSTRUCT_AND_READ = LOOKUP.findStatic(ProtocolTables.class, "constructAndRead",
+					MethodType.methodType(Object.class, MethodHandle.class, MethodHandle.class, Object.class));
+			FUNCTION_APPLY = LOOKUP.findVirtual(Function.class, "apply", DECODER_TYPE);
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Reflection reflection;
+	private final Class<?> packetDataSerializerClass, enumProtocolClass, protocolInfoClass, streamCodecClass;
+	private final MethodHandle serializerFactory;
+	private final Map<ProtocolState, ProtocolTable[]> tables = new EnumMap<>(ProtocolState.class);
+	private final WeakIdentityCache<Object, Optional<ProtocolTable>> codecTables = new WeakIdentityCache<>();
+	// Latest codec table seen for each state, used when no channel is at hand (e.g. encoding).
+	private final Map<ProtocolState, ProtocolTable[]> codecStateTables = new ConcurrentHashMap<>();
+	private final List<AttributeKey<?>> protocolKeys = new ArrayList<>();
+
+	public ProtocolTables(final Reflection reflection) {
+		this.reflection = reflection;
+		this.packetDataSerializerClass = reflection.getPacketDataSerializer();
+		this.enumProtocolClass = reflection.getEnumProtocol();
+		this.protocolInfoClass = reflection.getProtocolInfo();
+		this.streamCodecClass = reflection.getStreamCodec();
+		this.serializerFactory = resolveSerializerFactory();
+
+		if (protocolInfoClass == null || streamCodecClass == null) {
+			try {
+				buildLegacyTables();
+				resolveProtocolKeys(reflection.getNetworkManager());
+			} catch (final Exception e) {
+				tables.clear();
+				Debug.warn("Could not build protocol tables, BufferIO will decode reflectively: " + e);
+			}
+		}
+	}
+
+	// Returns true if packets can be decoded through tables on this server.
+	public boolean isAvailable() {
+		return !tables.isEmpty() || (protocolInfoClass != null && streamCodecClass != null);
+	}
+
+	public ProtocolTable getTable(final ProtocolState state, final PacketDirection direction) {
+		final ProtocolTable[] stateTables = state == null ? null
+				: (tables.isEmpty() ? codecStateTables : tables).get(state);
+		return stateTables == null ? null : stateTables[direction.ordinal()];
+	}
+
+	// Resolves the table currently used by the channel in the given direction, or null if unknown.
+	public ProtocolTable getTable(final Channel channel, final PacketDirection direction) {
+		if (protocolInfoClass != null && streamCodecClass != null) {
+			final Object codecHandler = channel.pipeline()
+					.get(direction == PacketDirection.SERVERBOUND ? "decoder" : "encoder");
+
+			if (codecHandler == null) {
+				return null;
+			}
+
+			try {
+				final Object protocolInfo = reflection.getField(codecHandler, protocolInfoClass);
+
+				if (protocolInfo == null) {
+					return null;
+				}
+
+				Optional<ProtocolTable> table = codecTables.get(protocolInfo);
+
+				// Two event loops may build the same table, both results are equivalent
+				if (table == null) {
+					table = buildCodecTable(protocolInfo);
+					codecTables.put(protocolInfo, table);
+				}
+
+				return table.orElse(null);
+			} catch (final IllegalAccessException e) {
+				return null;
+			}
+		}
+
+		return getTable(getState(channel), direction);
+	}
+
+	// Reads the protocol state stored by the NetworkManager on the channel.
+	public ProtocolState getState(final Channel channel) {
+		for (final AttributeKey<?> key : protocolKeys) {
+			if (!channel.hasAttr(key)) {
+				continue;
+			}
+
+			final Object value = channel.attr(key).get();
+
+			if (enumProtocolClass.isInstance(value)) {
+				return ProtocolState.of(value);
+			}
+
+			if (value != null) {
+				try {
+					// 1.20.2+ stores a CodecData holder instead of the protocol itself.
+					final ProtocolState state = ProtocolState.of(reflection.getField(value, enumProtocolClass));
+
+					if (state != null) {
+						return state;
+					}
+				} catch (final IllegalAccessException ignored) {
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private MethodHandle resolveSerializerFactory() {
+		if (packetDataSerializerClass == null) {
+			return null;
+		}
+
+		try {
+			return LOOKUP.findConstructor(packetDataSerializerClass, MethodType.methodType(void.class, ByteBuf.class))
+					.asType(MethodType.methodType(Object.class, ByteBuf.class));
+		} catch (final ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private void resolveProtocolKeys(final Class<?> networkManagerClass) throws IllegalAccessException {
+		if (networkManagerClass == null) {
+			return;
+		}
+
+		for (final Field field : networkManagerClass.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers()) && AttributeKey.class.isAssignableFrom(field.getType())) {
+				field.setAccessible(true);
+				protocolKeys.add((AttributeKey<?>) field.get(null));
+			}
+		}
+	}
+
+	private void buildLegacyTables() throws ReflectiveOperationException {
+		if (enumProtocolClass == null || packetDataSerializerClass == null || serializerFactory == null) {
+			return;
+		}
+
+		for (final Object protocol : enumProtocolClass.getEnumConstants()) {
+			final ProtocolState state = ProtocolState.of(protocol);
+
+			if (state == null) {
+				continue;
+			}
+
+			final ProtocolTable[] stateTables = new ProtocolTable[PacketDirection.values().length];
+
+			for (final Field field : enumProtocolClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || !Map.class.isAssignableFrom(field.getType())) {
+					continue;
+				}
+
+				field.setAccessible(true);
+				final Map<?, ?> directions = (Map<?, ?>) field.get(protocol);
+
+				if (directions == null) {
+					continue;
+				}
+
+				for (final Map.Entry<?, ?> entry : directions.entrySet()) {
+					final PacketDirection direction = PacketDirection.of(entry.getKey());
+
+					if (direction != null) {
+						stateTables[direction.ordinal()] = buildLegacyTable(state, direction, entry.getValue());
+					}
+				}
+			}
+
+			tables.put(state, stateTables);
+		}
+	}
+
+	private ProtocolTable buildLegacyTable(final ProtocolState state, final PacketDirection direction,
+			final Object packetSet) throws ReflectiveOperationException {
+		final Map<Integer, Class<?>> idToClass = new HashMap<>();
+		final List<?> deserializers = collect(packetSet, idToClass, 2);
+		int size = deserializers == null ? 0 : deserializers.size();
+
+		for (final Integer id : idToClass.keySet()) {
+			size = Math.max(size, id + 1);
+		}
+
+		final MethodHandle[] decoders = new MethodHandle[size];
+		final MethodHandle[] encoders = new MethodHandle[size];
+		final Class<?>[] packetClasses = new Class<?>[size];
+		final Map<Class<?>, Integer> packetIds = new HashMap<>();
+
+		for (int id = 0; id < size; id++) {
+			final Class<?> packetClass = idToClass.get(id);
+
+			if (packetClass != null) {
+				packetClasses[id] = packetClass;
+				packetIds.put(packetClass, id);
+			}
+
+			if (deserializers != null && id < deserializers.size() && deserializers.get(id) != null) {
+				decoders[id] = FUNCTION_APPLY.bindTo(deserializers.get(id));
+			} else if (packetClass != null) {
+				decoders[id] = resolveDecoder(packetClass);
+			}
+
+			if (packetClass != null) {
+				final boolean legacyRead = deserializers == null && !hasSerializerConstructor(packetClass);
+				encoders[id] = resolveEncoder(packetClass, legacyRead);
+			}
+		}
+
+		return new ProtocolTable(state, direction, decoders, encoders, packetClasses, packetIds, serializerFactory);
+	}
+
+	// Walks a packet registry holder looking for id/class maps and deserializer lists.
+	private List<?> collect(final Object holder, final Map<Integer, Class<?>> idToClass, final int depth)
+			throws IllegalAccessException {
+		if (holder instanceof Map) {
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) holder).entrySet()) {
+				if (entry.getKey() instanceof Integer && entry.getValue() instanceof Class) {
+					idToClass.put((Integer) entry.getKey(), (Class<?>) entry.getValue());
+				} else if (entry.getKey() instanceof Class && entry.getValue() instanceof Integer) {
+					idToClass.put((Integer) entry.getValue(), (Class<?>) entry.getKey());
+				}
+			}
+
+			return null;
+		}
+
+		if (holder instanceof List) {
+			final List<?> list = (List<?>) holder;
+			return !list.isEmpty() && list.get(0) instanceof Function ? list : null;
+		}
+
+		if (holder == null || depth == 0 || holder.getClass().getName().startsWith("java.")) {
+			return null;
+		}
+
+		List<?> deserializers = null;
+
+		for (Class<?> clazz = holder.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			for (final Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+					continue;
+				}
+
+				field.setAccessible(true);
+				final List<?> found = collect(field.get(holder), idToClass, depth - 1);
+
+				if (found != null) {
+					deserializers = found;
+				}
+			}
+		}
+
+		return deserializers;
+	}
+
+	private MethodHandle resolveDecoder(final Class<?> packetClass) throws IllegalAccessException {
+		try {
+			// 1.17+: packets read themselves in a PacketDataSerializer constructor.
+			final Constructor<?> constructor = packetClass.getDeclaredConstructor(packetDataSerializerClass);
+			constructor.setAccessible(true);
+			return LOOKUP.unreflectConstructor(constructor).asType(DECODER_TYPE);
+		} catch (final NoSuchMethodException ignored) {
+		}
+
+		try {
+			// 1.8-1.16: no-arg constructor followed by a(PacketDataSerializer).
+			final Constructor<?> constructor = packetClass.getDeclaredConstructor();
+			final Method read = packetClass.getMethod("a", packetDataSerializerClass);
+			constructor.setAccessible(true);
+
+			final MethodHandle constructorHandle = LOOKUP.unreflectConstructor(constructor)
+					.asType(MethodType.methodType(Object.class));
+			final MethodHandle readHandle = LOOKUP.unreflect(read)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+			return MethodHandles.insertArguments(CONSTRUCT_AND_READ, 0, constructorHandle, readHandle);
+		} catch (final NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private boolean hasSerializerConstructor(final Class<?> packetClass) {
+		try {
+			packetClass.getDeclaredConstructor(packetDataSerializerClass);
+			return true;
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private MethodHandle resolveEncoder(final Class<?> packetClass, final boolean legacyRead)
+			throws IllegalAccessException {
+		Method encoder = null;
+
+		for (final Method method : packetClass.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() != void.class
+					|| method.getParameterCount() != 1 || method.getParameterTypes()[0] != packetDataSerializerClass) {
+				continue;
+			}
+
+			// 1.8-1.16 packets read with a(PacketDataSerializer) and write with b(PacketDataSerializer).
+			if (legacyRead && method.getName().equals("a")) {
+				continue;
+			}
+
+			encoder = method;
+
+			if (method.getName().equals("b") || method.getName().equals("write")) {
+				break;
+			}
+		}
+
+		return encoder == null ? null : LOOKUP.unreflect(encoder).asType(ENCODER_TYPE);
+	}
+
+	private Optional<ProtocolTable> buildCodecTable(final Object protocolInfo) {
+		ProtocolState state = null;
+		PacketDirection direction = null;
+		Object codec = null;
+
+		for (final Method method : protocolInfoClass.getMethods()) {
+			if (method.getParameterCount() != 0) {
+				continue;
+			}
+
+			try {
+				if (streamCodecClass.isAssignableFrom(method.getReturnType())) {
+					codec = method.invoke(protocolInfo);
+				} else if (method.getReturnType().isEnum()) {
+					final Object value = method.invoke(protocolInfo);
+
+					state = state == null ? ProtocolState.of(value) : state;
+					direction = direction == null ? PacketDirection.of(value) : direction;
+				}
+			} catch (final ReflectiveOperationException ignored) {
+			}
+		}
+
+		if (codec == null) {
+			return Optional.empty();
+		}
+
+		MethodHandle decoder = null, encoder = null;
+
+		for (final Method method : streamCodecClass.getMethods()) {
+			try {
+				if (method.getName().equals("decode") && method.getParameterCount() == 1) {
+					decoder = LOOKUP.unreflect(method).bindTo(codec).asType(DECODER_TYPE);
+				} else if (method.getName().equals("encode") && method.getParameterCount() == 2) {
+					encoder = LOOKUP.unreflect(method).bindTo(codec).asType(ENCODER_TYPE);
+				}
+			} catch (final IllegalAccessException ignored) {
+			}
+		}
+
+		if (decoder == null) {
+			return Optional.empty();
+		}
+
+		final ProtocolTable table = new ProtocolTable(state, direction, decoder, encoder);
+
+		if (state != null && direction != null) {
+			final int index = direction.ordinal();
+
+			// Copy on write, readers only ever see filled arrays
+			codecStateTables.compute(state, (key, current) -> {
+				final ProtocolTable[] next = current == null ? new ProtocolTable[PacketDirection.values().length]
+						: current.clone();
+
+				next[index] = table;
+				return next;
+			});
+		}
+
+		return Optional.of(table);
+	}
+
+	private static Object constructAndRead(final MethodHandle constructor, final MethodHandle read,
+			final Object serializer) throws Throwable {
+		final Object packet = (Object) constructor.invokeExact();
+		read.invokeExact(packet, serializer);
+		return packet;
+	}
+}
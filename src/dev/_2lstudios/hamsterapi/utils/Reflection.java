@@ -3,6 +3,7 @@ package dev._2lstudios.hamsterapi.utils;
 import org.bukkit.ChatColor;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,10 +16,12 @@ public class Reflection {
 	// lookups
 	private final Map<String, Optional<Class<?>>> minecraftClassCache = new ConcurrentHashMap<>();
 	private final Map<String, Optional<Class<?>>> craftBukkitClassCache = new ConcurrentHashMap<>();
-	// Cache for reflected fields
-	private final Map<Class<?>, Map<Class<?>, Map<Integer, Field>>> classFields = new ConcurrentHashMap<>();
+	// Cache for compiled field accessors (owner class -> field type -> index)
+	private final Map<Class<?>, Map<Class<?>, Map<Integer, Optional<FieldAccessor>>>> fieldAccessors = new ConcurrentHashMap<>();
 	// Cache for reflected methods (Class -> Method)
 	private final Map<Class<?>, Optional<java.lang.reflect.Method>> sendPacketMethodCache = new ConcurrentHashMap<>();
+	// Cache for CraftEntity#getHandle (CraftPlayer class -> Method)
+	private final Map<Class<?>, Optional<java.lang.reflect.Method>> getHandleMethodCache = new ConcurrentHashMap<>();
 
 	public Reflection(final String version) {
 		this.version = version;
@@ -37,15 +40,86 @@ public class Reflection {
 		}
 	}
 
-	private Object getValue(final Field field, final Object object)
-			throws IllegalArgumentException, IllegalAccessException {
-		final boolean accessible = field.isAccessible();
+	// Snapshot of the class and method lookups resolved so far, see ReflectionIndex
+	public ReflectionIndex createIndex(final String key) {
+		final Map<String, String> sendPacketMethods = new HashMap<>();
 
-		field.setAccessible(true);
-		final Object value = field.get(object);
-		field.setAccessible(accessible);
+		for (final Map.Entry<Class<?>, Optional<java.lang.reflect.Method>> entry : sendPacketMethodCache.entrySet()) {
+			entry.getValue().ifPresent(method -> sendPacketMethods.put(entry.getKey().getName(), method.getName()));
+		}
+
+		return new ReflectionIndex(key, toClassNames(minecraftClassCache), toClassNames(craftBukkitClassCache),
+				sendPacketMethods);
+	}
+
+	private static Map<String, String> toClassNames(final Map<String, Optional<Class<?>>> cache) {
+		final Map<String, String> classNames = new HashMap<>();
+
+		for (final Map.Entry<String, Optional<Class<?>>> entry : cache.entrySet()) {
+			classNames.put(entry.getKey(), entry.getValue().map(Class::getName).orElse(""));
+		}
+
+		return classNames;
+	}
+
+	/**
+	 * Fills the caches from a persisted index, skipping the probing of candidate
+	 * names. Every resolved entry is verified with a single lookup.
+	 *
+	 * @return false if an entry no longer resolves, in which case nothing is applied.
+	 */
+	public boolean applyIndex(final ReflectionIndex index) {
+		final Map<String, Optional<Class<?>>> minecraftClasses = fromClassNames(index.getMinecraftClasses());
+		final Map<String, Optional<Class<?>>> craftBukkitClasses = fromClassNames(index.getCraftBukkitClasses());
+
+		if (minecraftClasses == null || craftBukkitClasses == null) {
+			return false;
+		}
+
+		final Optional<Class<?>> packetLookup = minecraftClasses.get("network.protocol.Packet");
+		final Class<?> packetClass = packetLookup == null ? null : packetLookup.orElse(null);
+		final Map<Class<?>, Optional<java.lang.reflect.Method>> sendPacketMethods = new HashMap<>();
+
+		for (final Map.Entry<String, String> entry : index.getSendPacketMethods().entrySet()) {
+			final Class<?> connectionClass = getClass(entry.getKey());
+
+			if (connectionClass == null || packetClass == null) {
+				return false;
+			}
+
+			try {
+				sendPacketMethods.put(connectionClass, Optional.of(connectionClass.getMethod(entry.getValue(), packetClass)));
+			} catch (final NoSuchMethodException e) {
+				return false;
+			}
+		}
+
+		minecraftClasses.forEach(minecraftClassCache::putIfAbsent);
+		craftBukkitClasses.forEach(craftBukkitClassCache::putIfAbsent);
+		sendPacketMethods.forEach(sendPacketMethodCache::putIfAbsent);
+		return true;
+	}
+
+	// Resolves the class names of an index, null if one of them is gone
+	private Map<String, Optional<Class<?>>> fromClassNames(final Map<String, String> classNames) {
+		final Map<String, Optional<Class<?>>> classes = new HashMap<>();
+
+		for (final Map.Entry<String, String> entry : classNames.entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				classes.put(entry.getKey(), Optional.empty());
+				continue;
+			}
+
+			final Class<?> resolvedClass = getClass(entry.getValue());
+
+			if (resolvedClass == null) {
+				return null;
+			}
+
+			classes.put(entry.getKey(), Optional.of(resolvedClass));
+		}
 
-		return value;
+		return classes;
 	}
 
 	/**
@@ -117,8 +191,6 @@ public class Reflection {
 		}
 	}
 
-	// This method's caching logic is already implemented correctly. No changes
-	// needed.
 	public Object getField(final Object object, final Class<?> fieldType, final int number)
 			throws IllegalAccessException {
 		if (object == null) {
@@ -128,34 +200,48 @@ public class Reflection {
 			throw new IllegalAccessException("Tried to access field with a null type");
 		}
 
-		final Class<?> objectClass = object.getClass();
-		final Map<Class<?>, Map<Integer, Field>> typeFields = classFields.computeIfAbsent(objectClass,
-				k -> new ConcurrentHashMap<Class<?>, Map<Integer, Field>>());
-		final Map<Integer, Field> fields = typeFields.computeIfAbsent(fieldType,
-				k -> new ConcurrentHashMap<Integer, Field>());
+		final FieldAccessor accessor = getFieldAccessor(object.getClass(), fieldType, number);
 
-		final Field cachedField = fields.get(number);
-		if (cachedField != null) {
-			return getValue(cachedField, object);
-		}
+		return accessor == null ? null : accessor.get(object);
+	}
+
+	/**
+	 * Returns a cached accessor for the field number {@code number} assignable to
+	 * {@code fieldType}, searching the owner class and then its superclasses.
+	 *
+	 * @return the accessor, or null if there is no such field.
+	 */
+	public FieldAccessor getFieldAccessor(final Class<?> owner, final Class<?> fieldType, final int number) {
+		return fieldAccessors.computeIfAbsent(owner, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(fieldType, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(number, k -> resolveFieldAccessor(owner, fieldType, number)).orElse(null);
+	}
+
+	public FieldAccessor getFieldAccessor(final Class<?> owner, final Class<?> fieldType) {
+		return getFieldAccessor(owner, fieldType, 0);
+	}
 
+	private Optional<FieldAccessor> resolveFieldAccessor(final Class<?> owner, final Class<?> fieldType,
+			final int number) {
 		int index = 0;
-		Class<?> currentClass = objectClass;
-		while (currentClass != null) {
+
+		for (Class<?> currentClass = owner; currentClass != null; currentClass = currentClass.getSuperclass()) {
 			for (final Field field : currentClass.getDeclaredFields()) {
 				if (fieldType.isAssignableFrom(field.getType())) {
 					if (index == number) {
-						final Object value = getValue(field, object);
-						fields.put(number, field);
-						return value;
+						try {
+							return Optional.of(new FieldAccessor(field));
+						} catch (final IllegalAccessException | RuntimeException e) {
+							// Inaccessible (e.g. module restrictions), treat as missing
+							return Optional.empty();
+						}
 					}
 					index++;
 				}
 			}
-			currentClass = currentClass.getSuperclass();
 		}
 
-		return null;
+		return Optional.empty();
 	}
 
 	public Object getField(final Object object, final Class<?> fieldType) throws IllegalAccessException {
@@ -245,6 +331,15 @@ public class Reflection {
 		return clazz;
 	}
 
+	public Class<?> getProtocolInfo() {
+		// 1.20.5+ bound protocol (codec + state + direction)
+		return getMinecraftClass("network.ProtocolInfo");
+	}
+
+	public Class<?> getStreamCodec() {
+		return getMinecraftClass("network.codec.StreamCodec");
+	}
+
 	public Class<?> getPacketDataSerializer() {
 		return getMinecraftClass("network.PacketDataSerializer");
 	}
@@ -304,6 +399,76 @@ public class Reflection {
 		return getMinecraftClass("network.protocol.game.ClientboundSetSubtitleTextPacket");
 	}
 
+	public Class<?> getPacketPlayOutBoss() {
+		Class<?> clazz = getMinecraftClass("network.protocol.game.PacketPlayOutBoss");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("network.protocol.game.ClientboundBossEventPacket");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getBossBattle() {
+		Class<?> clazz = getMinecraftClass("world.BossBattle");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("world.BossEvent");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getBossBattleServer() {
+		Class<?> clazz = getMinecraftClass("server.level.BossBattleServer");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("server.level.ServerBossEvent");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getPacketPlayOutScoreboardObjective() {
+		Class<?> clazz = getMinecraftClass("network.protocol.game.PacketPlayOutScoreboardObjective");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("network.protocol.game.ClientboundSetObjectivePacket");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getPacketPlayOutScoreboardDisplayObjective() {
+		Class<?> clazz = getMinecraftClass("network.protocol.game.PacketPlayOutScoreboardDisplayObjective");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("network.protocol.game.ClientboundSetDisplayObjectivePacket");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getPacketPlayOutScoreboardTeam() {
+		Class<?> clazz = getMinecraftClass("network.protocol.game.PacketPlayOutScoreboardTeam");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("network.protocol.game.ClientboundSetPlayerTeamPacket");
+		}
+
+		return clazz;
+	}
+
+	public Class<?> getPacketPlayOutScoreboardScore() {
+		Class<?> clazz = getMinecraftClass("network.protocol.game.PacketPlayOutScoreboardScore");
+
+		if (clazz == null) {
+			clazz = getMinecraftClass("network.protocol.game.ClientboundSetScorePacket");
+		}
+
+		return clazz;
+	}
+
 	public Class<?> getChatMessageType() {
 		return getMinecraftClass("network.chat.ChatMessageType");
 	}
@@ -326,6 +491,18 @@ public class Reflection {
 		return sendPacketMethodCache.computeIfAbsent(connectionClass, this::resolveSendPacketMethod).orElse(null);
 	}
 
+	public java.lang.reflect.Method getHandleMethod(final Class<?> craftClass) {
+		return getHandleMethodCache.computeIfAbsent(craftClass, this::resolveHandleMethod).orElse(null);
+	}
+
+	private Optional<java.lang.reflect.Method> resolveHandleMethod(final Class<?> craftClass) {
+		try {
+			return Optional.of(craftClass.getMethod("getHandle"));
+		} catch (final NoSuchMethodException e) {
+			return Optional.empty();
+		}
+	}
+
 	private Optional<java.lang.reflect.Method> resolveSendPacketMethod(final Class<?> connectionClass) {
 		Class<?> packetClass = getPacket();
 		if (packetClass == null) {
@@ -0,0 +1,154 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import org.bukkit.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reflection lookups persisted between restarts, so {@link Reflection} doesn't
+ * probe every candidate class name again on each boot.
+ * <p>
+ * The index is keyed by the server version and the size and modification time
+ * of the server jar. A different key, or an entry that no longer resolves,
+ * discards the whole index and it is rebuilt from the lookups of that run.
+ */
+public class ReflectionIndex {
+	private static final int MAGIC = 0x48415249; // "HARI"
+	private static final int VERSION = 1;
+	// Far above the few hundred lookups a server makes
+	private static final int MAX_ENTRIES = 65536;
+
+	private final String key;
+	// Lookup key -> resolved class name, empty when the lookup found nothing
+	private final Map<String, String> minecraftClasses;
+	private final Map<String, String> craftBukkitClasses;
+	// Connection class name -> send packet method name
+	private final Map<String, String> sendPacketMethods;
+
+	ReflectionIndex(final String key, final Map<String, String> minecraftClasses,
+			final Map<String, String> craftBukkitClasses, final Map<String, String> sendPacketMethods) {
+		this.key = key;
+		this.minecraftClasses = minecraftClasses;
+		this.craftBukkitClasses = craftBukkitClasses;
+		this.sendPacketMethods = sendPacketMethods;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	Map<String, String> getMinecraftClasses() {
+		return Collections.unmodifiableMap(minecraftClasses);
+	}
+
+	Map<String, String> getCraftBukkitClasses() {
+		return Collections.unmodifiableMap(craftBukkitClasses);
+	}
+
+	Map<String, String> getSendPacketMethods() {
+		return Collections.unmodifiableMap(sendPacketMethods);
+	}
+
+	public int size() {
+		return minecraftClasses.size() + craftBukkitClasses.size() + sendPacketMethods.size();
+	}
+
+	// Identifies the server build, changes whenever the server jar is replaced.
+	public static String computeKey(final Server server) {
+		final StringBuilder key = new StringBuilder(server.getVersion()).append('|').append(server.getBukkitVersion());
+
+		try {
+			final CodeSource codeSource = server.getClass().getProtectionDomain().getCodeSource();
+
+			if (codeSource != null && codeSource.getLocation() != null) {
+				final File jar = new File(codeSource.getLocation().toURI());
+
+				key.append('|').append(jar.length()).append('|').append(jar.lastModified());
+			}
+		} catch (final Exception e) {
+			// Fall back to the version only
+		}
+
+		return key.toString();
+	}
+
+	// Returns the index stored in the file, or null if it is missing, corrupt or for another key.
+	public static ReflectionIndex load(final File file, final String key) {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+				return null;
+			}
+
+			return new ReflectionIndex(key, readMap(in), readMap(in), readMap(in));
+		} catch (final IOException | RuntimeException e) {
+			// Unreadable or damaged, the index is rebuilt
+			return null;
+		}
+	}
+
+	public void save(final File file) throws IOException {
+		final File parent = file.getAbsoluteFile().getParentFile();
+
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+
+		final File temp = new File(file.getPath() + ".tmp");
+
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			writeMap(out, minecraftClasses);
+			writeMap(out, craftBukkitClasses);
+			writeMap(out, sendPacketMethods);
+		}
+
+		// Never leave a half written index behind
+		if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+			throw new IOException("Failed to replace " + file);
+		}
+	}
+
+	private static Map<String, String> readMap(final DataInputStream in) throws IOException {
+		final int size = in.readInt();
+
+		// A damaged file must end up as a rebuild, not as a startup failure
+		if (size < 0 || size > MAX_ENTRIES) {
+			throw new IOException("Corrupt reflection index, map size " + size);
+		}
+
+		final Map<String, String> map = new HashMap<>(size * 2);
+
+		for (int i = 0; i < size; i++) {
+			map.put(in.readUTF(), in.readUTF());
+		}
+
+		return map;
+	}
+
+	private static void writeMap(final DataOutputStream out, final Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+
+		for (final Map.Entry<String, String> entry : map.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * The one place HamsterAPI gets {@link Unsafe} from, for writing final
+ * fields and copying objects field by field.
+ */
+public final class UnsafeAccess {
+	private static final Unsafe UNSAFE = findUnsafe();
+
+	private UnsafeAccess() {
+	}
+
+	private static Unsafe findUnsafe() {
+		try {
+			final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			return (Unsafe) unsafeField.get(null);
+		} catch (final Exception e) {
+			return null;
+		}
+	}
+
+	// Null when the JVM does not expose it
+	public static Unsafe getUnsafe() {
+		return UNSAFE;
+	}
+
+	public static boolean isAvailable() {
+		return UNSAFE != null;
+	}
+
+	/**
+	 * Writes an instance field by offset, final or not.
+	 *
+	 * @throws IllegalAccessException if Unsafe is missing, the field is static or
+	 *                                has no offset (records, hidden classes).
+	 */
+	public static void put(final Field field, final Object target, final Object value)
+			throws IllegalAccessException {
+		if (UNSAFE == null || Modifier.isStatic(field.getModifiers())) {
+			throw new IllegalAccessException("Cannot write final field " + field.getName());
+		}
+
+		final long offset;
+
+		try {
+			offset = UNSAFE.objectFieldOffset(field);
+		} catch (final UnsupportedOperationException e) {
+			throw new IllegalAccessException("Cannot write field " + field.getName() + ": " + e.getMessage());
+		}
+
+		// Pick the put by the field type, a boxed field must get a reference
+		final Class<?> type = field.getType();
+		if (type == boolean.class) UNSAFE.putBoolean(target, offset, (Boolean) value);
+		else if (type == byte.class) UNSAFE.putByte(target, offset, (Byte) value);
+		else if (type == short.class) UNSAFE.putShort(target, offset, (Short) value);
+		else if (type == char.class) UNSAFE.putChar(target, offset, (Character) value);
+		else if (type == int.class) UNSAFE.putInt(target, offset, (Integer) value);
+		else if (type == long.class) UNSAFE.putLong(target, offset, (Long) value);
+		else if (type == float.class) UNSAFE.putFloat(target, offset, (Float) value);
+		else if (type == double.class) UNSAFE.putDouble(target, offset, (Double) value);
+		else if (value == null || type.isInstance(value)) UNSAFE.putObject(target, offset, value);
+		else throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " to " + field.getName());
+	}
+
+	// Copies one field from source to target, both of the class declaring it
+	public static void copy(final Object source, final Object target, final long offset, final Class<?> type) {
+		if (!type.isPrimitive()) UNSAFE.putObject(target, offset, UNSAFE.getObject(source, offset));
+		else if (type == int.class) UNSAFE.putInt(target, offset, UNSAFE.getInt(source, offset));
+		else if (type == long.class) UNSAFE.putLong(target, offset, UNSAFE.getLong(source, offset));
+		else if (type == boolean.class) UNSAFE.putBoolean(target, offset, UNSAFE.getBoolean(source, offset));
+		else if (type == byte.class) UNSAFE.putByte(target, offset, UNSAFE.getByte(source, offset));
+		else if (type == short.class) UNSAFE.putShort(target, offset, UNSAFE.getShort(source, offset));
+		else if (type == char.class) UNSAFE.putChar(target, offset, UNSAFE.getChar(source, offset));
+		else if (type == float.class) UNSAFE.putFloat(target, offset, UNSAFE.getFloat(source, offset));
+		else UNSAFE.putDouble(target, offset, UNSAFE.getDouble(source, offset));
+	}
+}
@@ -0,0 +1,89 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache keyed by object identity that does not keep its keys
+ * alive. Entries go away once their key is collected. Values must not
+ * reference their key, or the key is never collected.
+ */
+public class WeakIdentityCache<K, V> {
+	private final Map<IdentityReference<K>, V> entries = new ConcurrentHashMap<>();
+	private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+	public V get(final K key) {
+		expunge();
+		return entries.get(new IdentityReference<>(key, null));
+	}
+
+	public void put(final K key, final V value) {
+		expunge();
+		entries.put(new IdentityReference<>(key, queue), value);
+	}
+
+	// Not atomic, two threads may both compute a value and the last one is kept
+	public V computeIfAbsent(final K key, final Function<? super K, ? extends V> function) {
+		V value = get(key);
+
+		if (value == null) {
+			value = function.apply(key);
+
+			if (value != null) {
+				put(key, value);
+			}
+		}
+
+		return value;
+	}
+
+	public int size() {
+		expunge();
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	// Removes the entries of collected keys
+	private void expunge() {
+		Reference<? extends K> reference;
+
+		while ((reference = queue.poll()) != null) {
+			entries.remove(reference);
+		}
+	}
+
+	private static final class IdentityReference<K> extends WeakReference<K> {
+		private final int hash;
+
+		private IdentityReference(final K key, final ReferenceQueue<K> queue) {
+			super(key, queue);
+			this.hash = System.identityHashCode(key);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (other == this) {
+				return true;
+			}
+
+			if (!(other instanceof IdentityReference)) {
+				return false;
+			}
+
+			final Object key = get();
+			return key != null && key == ((IdentityReference<?>) other).get();
+		}
+	}
+}
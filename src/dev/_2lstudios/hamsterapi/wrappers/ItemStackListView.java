@@ -0,0 +1,42 @@
+package dev._2lstudios.hamsterapi.wrappers;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * Read-only Bukkit view over a list of NMS ItemStacks, e.g. the slots of a
+ * window items packet. A slot is only converted when it is read, and once.
+ */
+final class ItemStackListView extends AbstractList<ItemStack> implements RandomAccess {
+	private final List<?> handles;
+	private final Function<Object, ItemStack> converter;
+	// Slots converted so far
+	private final ItemStack[] converted;
+
+	ItemStackListView(final List<?> handles, final Function<Object, ItemStack> converter) {
+		this.handles = handles;
+		this.converter = converter;
+		this.converted = new ItemStack[handles.size()];
+	}
+
+	@Override
+	public ItemStack get(final int index) {
+		ItemStack itemStack = converted[index];
+
+		if (itemStack == null) {
+			itemStack = converter.apply(handles.get(index));
+			converted[index] = itemStack;
+		}
+
+		return itemStack;
+	}
+
+	@Override
+	public int size() {
+		return converted.length;
+	}
+}
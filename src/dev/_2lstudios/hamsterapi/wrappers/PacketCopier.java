@@ -0,0 +1,175 @@
+package dev._2lstudios.hamsterapi.wrappers;
+
+import dev._2lstudios.hamsterapi.Debug;
+import dev._2lstudios.hamsterapi.utils.UnsafeAccess;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shallow field-for-field copy of a packet. The instance fields of a class
+ * and its superclasses are resolved to offsets once per class, a copy
+ * allocates the packet without running a constructor and copies the values
+ * by offset, so final fields are copied too. Referenced objects (lists,
+ * arrays, item stacks...) are shared with the original.
+ * <p>
+ * Records (most packets on 1.20.5+) have no field offsets and their fields
+ * can't be written, so they are copied through their canonical constructor
+ * with the written component replaced. The record API is looked up at
+ * runtime, so the class still loads on Java 8.
+ */
+final class PacketCopier {
+	private static final Unsafe UNSAFE = UnsafeAccess.getUnsafe();
+	// Class.isRecord, Class.getRecordComponents and RecordComponent.getName/getType/getAccessor, null before Java 16
+	private static final Method IS_RECORD = findMethod(Class.class, "isRecord");
+	private static final Method GET_RECORD_COMPONENTS = findMethod(Class.class, "getRecordComponents");
+	private static final Method COMPONENT_NAME = findMethod(findClass("java.lang.reflect.RecordComponent"), "getName");
+	private static final Method COMPONENT_TYPE = findMethod(findClass("java.lang.reflect.RecordComponent"), "getType");
+	private static final Method COMPONENT_ACCESSOR = findMethod(findClass("java.lang.reflect.RecordComponent"),
+			"getAccessor");
+	private static final ClassValue<PacketCopier> COPIERS = new ClassValue<PacketCopier>() {
+		@Override
+		protected PacketCopier computeValue(final Class<?> type) {
+			try {
+				return new PacketCopier(type);
+			} catch (final Exception e) {
+				// Hidden classes have no field offsets
+				Debug.warn("Cannot copy " + type.getSimpleName() + " packets: " + e.getMessage());
+				return null;
+			}
+		}
+	};
+
+	private final Class<?> type;
+	private final long[] offsets;
+	private final Class<?>[] types;
+	// Set for records only
+	private final Constructor<?> canonicalConstructor;
+	private final Method[] accessors;
+	private final String[] names;
+
+	private PacketCopier(final Class<?> type) throws ReflectiveOperationException {
+		this.type = type;
+
+		if (isRecord(type)) {
+			final Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+			final Class<?>[] componentTypes = new Class<?>[components.length];
+
+			this.accessors = new Method[components.length];
+			this.names = new String[components.length];
+
+			for (int index = 0; index < components.length; index++) {
+				names[index] = (String) COMPONENT_NAME.invoke(components[index]);
+				componentTypes[index] = (Class<?>) COMPONENT_TYPE.invoke(components[index]);
+				accessors[index] = (Method) COMPONENT_ACCESSOR.invoke(components[index]);
+				accessors[index].setAccessible(true);
+			}
+
+			this.canonicalConstructor = type.getDeclaredConstructor(componentTypes);
+			canonicalConstructor.setAccessible(true);
+			this.offsets = null;
+			this.types = null;
+			return;
+		}
+
+		if (UNSAFE == null) {
+			throw new IllegalStateException("Unsafe is not available");
+		}
+
+		final List<Field> fields = new ArrayList<>();
+
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			for (final Field field : current.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					fields.add(field);
+				}
+			}
+		}
+
+		this.canonicalConstructor = null;
+		this.accessors = null;
+		this.names = null;
+		this.offsets = new long[fields.size()];
+		this.types = new Class<?>[fields.size()];
+
+		for (int index = 0; index < offsets.length; index++) {
+			offsets[index] = UNSAFE.objectFieldOffset(fields.get(index));
+			types[index] = fields.get(index).getType();
+		}
+	}
+
+	private static Class<?> findClass(final String name) {
+		try {
+			return Class.forName(name);
+		} catch (final ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	private static Method findMethod(final Class<?> owner, final String name) {
+		try {
+			return owner == null ? null : owner.getMethod(name);
+		} catch (final NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static boolean isRecord(final Class<?> type) throws ReflectiveOperationException {
+		return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+	}
+
+	// Null if packets of that class cannot be copied
+	static PacketCopier of(final Class<?> type) {
+		return COPIERS.get(type);
+	}
+
+	// Records can't be written in place, write them with copyWith
+	boolean isRecord() {
+		return canonicalConstructor != null;
+	}
+
+	Object copy(final Object packet) throws ReflectiveOperationException {
+		if (isRecord()) {
+			return copyWith(packet, null, null);
+		}
+
+		final Object copy = UNSAFE.allocateInstance(type);
+
+		for (int index = 0; index < offsets.length; index++) {
+			UnsafeAccess.copy(packet, copy, offsets[index], types[index]);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * A new record with the component of that name replaced by the value.
+	 *
+	 * @throws NoSuchFieldException if the record has no such component.
+	 */
+	Object copyWith(final Object packet, final String name, final Object value)
+			throws ReflectiveOperationException {
+		final Object[] arguments = new Object[accessors.length];
+		boolean replaced = name == null;
+
+		for (int index = 0; index < arguments.length; index++) {
+			if (names[index].equals(name)) {
+				arguments[index] = value;
+				replaced = true;
+			} else {
+				arguments[index] = accessors[index].invoke(packet);
+			}
+		}
+
+		if (!replaced) {
+			throw new NoSuchFieldException(type.getSimpleName() + " has no component " + name);
+		}
+
+		return canonicalConstructor.newInstance(arguments);
+	}
+}
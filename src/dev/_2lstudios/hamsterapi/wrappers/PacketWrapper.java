@@ -1,15 +1,18 @@
 package dev._2lstudios.hamsterapi.wrappers;
 
+import dev._2lstudios.hamsterapi.Debug;
 import dev._2lstudios.hamsterapi.HamsterAPI;
 import dev._2lstudios.hamsterapi.enums.PacketType;
+import dev._2lstudios.hamsterapi.utils.FieldWriter;
 import dev._2lstudios.hamsterapi.utils.NMSItemStackConverter;
 import org.bukkit.inventory.ItemStack;
-import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -20,13 +23,24 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p>
  * This implementation prioritizes safety, returning default values (e.g., 0, false, null)
  * for requested fields that are not found, preventing NullPointerExceptions.
+ * <p>
+ * The server often sends the same packet instance to many players, so a write
+ * changes it for all of them. Call {@link #forkForPlayer()} first to make the
+ * writes of this wrapper go to a shallow copy, made on the first write only.
+ * Record packets can't be changed in place, a write always replaces them with
+ * a copy holding the new value.
  */
 public class PacketWrapper {
 	// A thread-safe, static cache mapping a packet Class to its Map of fields.
 	private static final Map<Class<?>, Map<String, Field>> GLOBAL_FIELD_CACHE = new ConcurrentHashMap<>();
+	// Packet fields a write failed for, warned once each
+	private static final Set<String> FAILED_WRITES = ConcurrentHashMap.newKeySet();
 
-	private final Object packet;
+	private Object packet;
 	private final String name;
+	// Set by forkForPlayer(), cleared once the packet was copied
+	private boolean copyOnWrite = false;
+	private boolean forked = false;
 
 	// Instance-specific cache for lazily-loaded field values.
 	private final Map<String, Object> valueCache = new HashMap<>();
@@ -42,18 +56,6 @@ public class PacketWrapper {
 	private Map<String, ItemStack> itemsCache;
 	private Map<String, Object> objectsCache;
 
-	private static final Unsafe unsafe;
-
-	static {
-		try {
-			Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
-			unsafeField.setAccessible(true);
-			unsafe = (Unsafe) unsafeField.get(null);
-		} catch (Exception e) {
-			throw new RuntimeException("Cannot initialize PacketWrapper: sun.misc.Unsafe is unavailable.", e);
-		}
-	}
-
 	public PacketWrapper(final Object packet) {
 		this.packet = packet;
 		this.name = packet.getClass().getSimpleName();
@@ -91,37 +93,82 @@ public class PacketWrapper {
 		}
 	}
 	
+	/**
+	 * Makes the next write copy the packet first, so the change is only sent to
+	 * this wrapper's player. Reading never copies. The copy is shallow: replace
+	 * fields with write instead of changing the objects they reference.
+	 */
+	public PacketWrapper forkForPlayer() {
+		if (!forked) {
+			copyOnWrite = true;
+		}
+		return this;
+	}
+
+	// True once a write replaced the packet with its own copy
+	public boolean isForked() {
+		return forked;
+	}
+
+	private void replacePacket(final Object copy) {
+		this.packet = copy;
+		copyOnWrite = false;
+		forked = true;
+	}
+
 	public void write(final String key, final Object value) {
+		tryWrite(key, value);
+	}
+
+	public void write(final String key, final ItemStack itemStack) {
+		final Object nmsItemStack;
 		try {
-			Field field = getField(key);
-			if (field == null) return;
+			nmsItemStack = NMSItemStackConverter.convertToNMS(itemStack);
+		} catch (final Exception e) {
+			warnFailedWrite(key, e);
+			return;
+		}
+		tryWrite(key, nmsItemStack);
+	}
 
-			try {
-				Field modifiersField = Field.class.getDeclaredField("modifiers");
-				modifiersField.setAccessible(true);
-				modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
-				field.set(this.packet, value);
-			} catch (Exception standardReflectionFailed) {
-				final long offset = unsafe.objectFieldOffset(field);
-				if (value instanceof Boolean) unsafe.putBoolean(this.packet, offset, (Boolean) value);
-				else if (value instanceof Byte) unsafe.putByte(this.packet, offset, (Byte) value);
-				else if (value instanceof Short) unsafe.putShort(this.packet, offset, (Short) value);
-				else if (value instanceof Character) unsafe.putChar(this.packet, offset, (Character) value);
-				else if (value instanceof Integer) unsafe.putInt(this.packet, offset, (Integer) value);
-				else if (value instanceof Long) unsafe.putLong(this.packet, offset, (Long) value);
-				else if (value instanceof Float) unsafe.putFloat(this.packet, offset, (Float) value);
-				else if (value instanceof Double) unsafe.putDouble(this.packet, offset, (Double) value);
-				else unsafe.putObject(this.packet, offset, value);
+	/**
+	 * Writes the field, copying the packet first after {@link #forkForPlayer()}.
+	 * Failures other than a missing field are also logged once per field.
+	 *
+	 * @return false if the packet has no such field or it could not be written,
+	 *         the packet is left untouched then.
+	 */
+	public boolean tryWrite(final String key, final Object value) {
+		final Field field = getField(key);
+		if (field == null) return false;
+
+		try {
+			final PacketCopier copier = PacketCopier.of(this.packet.getClass());
+
+			if (copier != null && copier.isRecord()) {
+				replacePacket(copier.copyWith(this.packet, field.getName(), value));
+			} else {
+				if (copyOnWrite) {
+					// Leaves the shared packet untouched when it cannot be copied
+					if (copier == null) throw new InstantiationException("Cannot copy " + name + " packets");
+					replacePacket(copier.copy(this.packet));
+				}
+
+				FieldWriter.set(field, this.packet, value);
 			}
+
 			valueCache.put(key, value);
-		} catch (Exception ignored) {}
+			return true;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			warnFailedWrite(key, e);
+			return false;
+		}
 	}
-	
-	public void write(final String key, final ItemStack itemStack) {
-		try {
-			Object nmsItemStack = NMSItemStackConverter.convertToNMS(itemStack);
-			write(key, nmsItemStack);
-		} catch (final Exception ignored) {}
+
+	private void warnFailedWrite(final String key, final Exception e) {
+		if (FAILED_WRITES.add(name + "." + key)) {
+			Debug.warn("Cannot write " + key + " of " + name + " packets: " + e);
+		}
 	}
 
 	// --- Public API Getters (Safe Default Version) ---
@@ -185,6 +232,37 @@ public class PacketWrapper {
 		return null;
 	}
 
+	/**
+	 * Lazy view over a list or array of NMS ItemStacks, such as the slots of a
+	 * window items packet, slots are only converted to Bukkit stacks when read.
+	 * The stacks are shared with every listener reading the same packet, treat
+	 * them as read-only and clone them before changing them.
+	 * Returns null if the value is not a list or array of NMS ItemStacks.
+	 */
+	public List<ItemStack> getItemList(String key) {
+		Object value = readValue(key);
+		if (value instanceof ItemStackListView) {
+			return (ItemStackListView) value;
+		}
+		final Class<?> nmsItemStackClass = HamsterAPI.getInstance().getReflection().getItemStack();
+		if (nmsItemStackClass == null || value == null) {
+			return null;
+		}
+		final List<?> handles;
+		if (value instanceof List) {
+			handles = (List<?>) value;
+			// Window contents are never empty, the empty slots are ItemStack.EMPTY
+			if (!handles.isEmpty() && !nmsItemStackClass.isInstance(handles.get(0))) return null;
+		} else if (value.getClass().isArray() && value.getClass().getComponentType() == nmsItemStackClass) {
+			handles = Arrays.asList((Object[]) value);
+		} else {
+			return null;
+		}
+		final ItemStackListView view = new ItemStackListView(handles, NMSItemStackConverter::getBukkitView);
+		valueCache.put(key, view);
+		return view;
+	}
+
 	// --- Plural Getters ---
 
 	public Map<String, String> getStrings() {
@@ -0,0 +1,127 @@
+package dev._2lstudios.hamsterapi.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dev._2lstudios.hamsterapi.enums.PacketDirection;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class PacketCaptureTest {
+	private static final UUID PLAYER = UUID.randomUUID();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("hamster-capture", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		new File(file.getPath() + ".1").delete();
+	}
+
+	@Test
+	public void previousCaptureIsKept() throws Exception {
+		final PacketCapture first = new PacketCapture(file, 64 * 1024, 1);
+
+		first.append(PacketDirection.SERVERBOUND, PLAYER, frame(7, 8));
+		first.close();
+
+		new PacketCapture(file, 64 * 1024, 1).close();
+
+		final List<CaptureRecord> previous = CaptureReader.read(new File(file.getPath() + ".1"));
+
+		assertEquals(1, previous.size());
+		assertEquals(7, previous.get(0).getPacketId());
+		assertTrue(CaptureReader.read(file).isEmpty());
+	}
+
+	@Test
+	public void recordsAreReadBackInOrder() throws Exception {
+		final PacketCapture capture = new PacketCapture(file, 64 * 1024, 1);
+
+		for (int i = 0; i < 10; i++) {
+			capture.append(i % 2 == 0 ? PacketDirection.SERVERBOUND : PacketDirection.CLIENTBOUND, PLAYER, frame(i, 8));
+		}
+
+		capture.close();
+
+		final List<CaptureRecord> records = CaptureReader.read(file);
+
+		assertEquals(10, records.size());
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, records.get(i).getPacketId());
+			assertEquals(PLAYER, records.get(i).getUniqueId());
+			assertEquals(i % 2 == 0 ? PacketDirection.SERVERBOUND : PacketDirection.CLIENTBOUND,
+					records.get(i).getDirection());
+		}
+	}
+
+	@Test
+	public void wrappedSegmentKeepsNewestIntactRecords() throws Exception {
+		final PacketCapture capture = new PacketCapture(file, 4096, 1);
+		final int total = 500;
+
+		for (int i = 0; i < total; i++) {
+			// Varying sizes so laps never line up with old record boundaries.
+			capture.append(PacketDirection.SERVERBOUND, PLAYER, frame(i % 100, 1 + i % 37));
+		}
+
+		capture.close();
+
+		final List<CaptureRecord> records = CaptureReader.read(file);
+
+		assertTrue(records.size() > 10);
+		assertTrue(records.size() < total);
+
+		final int first = total - records.size();
+
+		for (int i = 0; i < records.size(); i++) {
+			final int index = first + i;
+			final ByteBuf expected = frame(index % 100, 1 + index % 37);
+			final byte[] bytes = new byte[expected.readableBytes()];
+
+			expected.readBytes(bytes);
+			assertArrayEquals(bytes, records.get(i).getFrame());
+		}
+	}
+
+	@Test
+	public void framesOfThreadsWithoutSegmentAreDropped() throws Exception {
+		final PacketCapture capture = new PacketCapture(file, 64 * 1024, 1);
+		final Thread other = new Thread(() -> capture.append(PacketDirection.CLIENTBOUND, PLAYER, frame(1, 4)));
+
+		capture.append(PacketDirection.SERVERBOUND, PLAYER, frame(0, 4));
+		other.start();
+		other.join();
+		capture.close();
+
+		assertEquals(1, capture.getDropped());
+		assertEquals(1, CaptureReader.read(file).size());
+	}
+
+	private static ByteBuf frame(final int id, final int bodyLength) {
+		final ByteBuf frame = Unpooled.buffer();
+
+		frame.writeByte(id);
+
+		for (int i = 0; i < bodyLength; i++) {
+			frame.writeByte(id + i);
+		}
+
+		return frame;
+	}
+}
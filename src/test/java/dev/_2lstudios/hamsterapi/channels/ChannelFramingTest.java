@@ -0,0 +1,129 @@
+package dev._2lstudios.hamsterapi.channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ChannelFramingTest {
+	private static final int MAX_MESSAGE_SIZE = 4 * 1024 * 1024;
+
+	@Test
+	public void smallMessageIsOneFrame() throws Exception {
+		final byte[] message = "hello".getBytes("UTF-8");
+		final List<byte[]> frames = ChannelFraming.encode(Collections.singletonList(message), 0, true,
+				ChannelFraming.MAX_FRAME_SIZE);
+
+		assertEquals(1, frames.size());
+		assertEquals(0, frames.get(0)[0] & ChannelFraming.FLAG_COMPRESSED);
+		assertArrayEquals(message, assembler().accept(frames.get(0), 0).get(0));
+	}
+
+	@Test
+	public void largeMessageIsChunkedAndReassembled() throws Exception {
+		final byte[] message = random(200 * 1024);
+		final List<byte[]> frames = ChannelFraming.encode(Collections.singletonList(message), 7, true,
+				ChannelFraming.MAX_FRAME_SIZE);
+		final MessageAssembler assembler = assembler();
+
+		assertTrue(frames.size() > 1);
+
+		for (int i = 0; i < frames.size(); i++) {
+			assertTrue(frames.get(i).length <= ChannelFraming.MAX_FRAME_SIZE);
+
+			final List<byte[]> messages = assembler.accept(frames.get(i), 0);
+
+			assertEquals(i == frames.size() - 1 ? 1 : 0, messages.size());
+
+			if (!messages.isEmpty()) {
+				assertArrayEquals(message, messages.get(0));
+			}
+		}
+
+		assertEquals(0, assembler.getPendingMessages());
+	}
+
+	@Test
+	public void compressibleMessageIsCompressed() throws Exception {
+		final byte[] message = new byte[100 * 1024];
+		final List<byte[]> frames = ChannelFraming.encode(Collections.singletonList(message), 0, true,
+				ChannelFraming.MAX_FRAME_SIZE);
+
+		assertEquals(1, frames.size());
+		assertEquals(ChannelFraming.FLAG_COMPRESSED, frames.get(0)[0] & ChannelFraming.FLAG_COMPRESSED);
+		assertArrayEquals(message, assembler().accept(frames.get(0), 0).get(0));
+	}
+
+	@Test
+	public void batchKeepsMessageOrder() throws Exception {
+		final List<byte[]> batch = new ArrayList<>();
+
+		for (int i = 0; i < 50; i++) {
+			batch.add(random(i * 3));
+		}
+
+		final List<byte[]> frames = ChannelFraming.encode(batch, 0, false, ChannelFraming.MAX_FRAME_SIZE);
+		final List<byte[]> messages = assembler().accept(frames.get(0), 0);
+
+		assertEquals(1, frames.size());
+		assertEquals(batch.size(), messages.size());
+
+		for (int i = 0; i < batch.size(); i++) {
+			assertArrayEquals(batch.get(i), messages.get(i));
+		}
+	}
+
+	@Test
+	public void oversizedMessageIsRejected() throws Exception {
+		final MessageAssembler assembler = new MessageAssembler(1024, 8, 1000);
+		final List<byte[]> frames = ChannelFraming.encode(Collections.singletonList(new byte[64 * 1024]), 0, true,
+				ChannelFraming.MAX_FRAME_SIZE);
+
+		try {
+			assembler.accept(frames.get(0), 0);
+			fail("Inflated message over the limit was accepted");
+		} catch (final IOException expected) {
+			// Bounded inflation
+		}
+	}
+
+	@Test
+	public void staleChunksExpire() throws Exception {
+		final MessageAssembler assembler = new MessageAssembler(MAX_MESSAGE_SIZE, 1, 1000);
+		final List<byte[]> first = ChannelFraming.encode(Collections.singletonList(random(100 * 1024)), 1, false,
+				ChannelFraming.MAX_FRAME_SIZE);
+		final List<byte[]> second = ChannelFraming.encode(Collections.singletonList(random(100 * 1024)), 2, false,
+				ChannelFraming.MAX_FRAME_SIZE);
+
+		assembler.accept(first.get(0), 0);
+
+		try {
+			assembler.accept(second.get(0), 500);
+			fail("Pending message limit was ignored");
+		} catch (final IOException expected) {
+			// Only one message may be pending
+		}
+
+		assertTrue(assembler.accept(second.get(0), 5000).isEmpty());
+		assertEquals(1, assembler.getPendingMessages());
+	}
+
+	private static MessageAssembler assembler() {
+		return new MessageAssembler(MAX_MESSAGE_SIZE, 8, 10000);
+	}
+
+	private static byte[] random(final int size) {
+		final byte[] bytes = new byte[size];
+
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+}
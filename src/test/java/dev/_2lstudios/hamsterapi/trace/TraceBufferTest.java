@@ -0,0 +1,77 @@
+package dev._2lstudios.hamsterapi.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TraceBufferTest {
+	@Test
+	public void recordsAreDrainedInOrder() {
+		final TraceBuffer buffer = new TraceBuffer(16);
+		final List<Integer> ids = new ArrayList<>();
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(buffer.offer(i, 0, 1, i, i * 10, "player"));
+		}
+
+		assertEquals(10, buffer.drain((time, direction, state, packetId, size, player) -> ids.add(packetId), 100));
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, (int) ids.get(i));
+		}
+
+		assertEquals(0, buffer.drain((time, direction, state, packetId, size, player) -> ids.add(packetId), 100));
+	}
+
+	@Test
+	public void fullBufferDropsRecords() {
+		final TraceBuffer buffer = new TraceBuffer(4);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i, 0, 1, i, 1, "player"));
+		}
+
+		assertFalse(buffer.offer(4, 0, 1, 4, 1, "player"));
+		assertEquals(1, buffer.getDropped());
+		assertEquals(2, buffer.drain((time, direction, state, packetId, size, player) -> {
+		}, 2));
+		assertTrue(buffer.offer(5, 0, 1, 5, 1, "player"));
+	}
+
+	@Test
+	public void concurrentWritersLoseNothingWhileDrained() throws Exception {
+		final TraceBuffer buffer = new TraceBuffer(1024);
+		final int writers = 4;
+		final int perWriter = 100000;
+		final Thread[] threads = new Thread[writers];
+		final long[] sum = new long[1];
+
+		for (int i = 0; i < writers; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < perWriter; j++) {
+					while (!buffer.offer(j, 0, 1, j, 1, "player")) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		long drained = 0;
+
+		while (drained < (long) writers * perWriter) {
+			drained += buffer.drain((time, direction, state, packetId, size, player) -> sum[0] += packetId, 256);
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals((long) writers * perWriter * (perWriter - 1) / 2, sum[0]);
+	}
+}
@@ -0,0 +1,59 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FieldAccessorTest {
+	@Test
+	public void readsAndWritesFieldsByTypeAndIndex() throws Exception {
+		final Reflection reflection = new Reflection(null);
+		final DummyPacket packet = new DummyPacket();
+
+		final FieldAccessor first = reflection.getFieldAccessor(DummyPacket.class, String.class, 0);
+		final FieldAccessor second = reflection.getFieldAccessor(DummyPacket.class, String.class, 1);
+
+		assertEquals("first", first.get(packet));
+		assertEquals("second", second.get(packet));
+		assertTrue(second.isWritable());
+
+		second.set(packet, "changed");
+		assertEquals("changed", reflection.getField(packet, String.class, 1));
+
+		// Cached per (class, type, index)
+		assertSame(first, reflection.getFieldAccessor(DummyPacket.class, String.class, 0));
+		assertNull(reflection.getFieldAccessor(DummyPacket.class, String.class, 2));
+		assertNull(reflection.getField(packet, Thread.class));
+	}
+
+	@Test
+	public void primitiveVariantsAndSuperclassFields() throws Exception {
+		final Reflection reflection = new Reflection(null);
+		final DummyPacket packet = new DummyPacket();
+
+		assertEquals(42, reflection.getFieldAccessor(DummyPacket.class, int.class).getInt(packet));
+		assertEquals(7L, reflection.getFieldAccessor(DummyPacket.class, long.class).getLong(packet));
+		assertEquals(1.5D, reflection.getFieldAccessor(DummyPacket.class, double.class).getDouble(packet), 0);
+		assertTrue(reflection.getFieldAccessor(DummyPacket.class, boolean.class).getBoolean(packet));
+		// Boxed fields fall back to unboxing
+		assertEquals(3, reflection.getFieldAccessor(DummyPacket.class, Integer.class).getInt(packet));
+		assertFalse(reflection.getFieldAccessor(DummyPacket.class, Integer.class).isWritable());
+	}
+
+	private static class BasePacket {
+		private long id = 7L;
+	}
+
+	private static final class DummyPacket extends BasePacket {
+		private final String first = "first";
+		private String second = "second";
+		private int count = 42;
+		private double value = 1.5D;
+		private boolean flag = true;
+		private final Integer boxed = 3;
+	}
+}
@@ -0,0 +1,49 @@
+package dev._2lstudios.hamsterapi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WeakIdentityCacheTest {
+	@Test
+	public void keysAreComparedByIdentity() {
+		final WeakIdentityCache<List<String>, String> cache = new WeakIdentityCache<>();
+		final List<String> first = new ArrayList<>();
+		final List<String> equal = new ArrayList<>();
+		final String value = "first";
+
+		cache.put(first, value);
+
+		assertSame(value, cache.get(first));
+		// Equal but not the same instance
+		assertNull(cache.get(equal));
+		assertEquals(1, cache.size());
+
+		cache.put(first, "replaced");
+		assertEquals("replaced", cache.get(first));
+		assertEquals(1, cache.size());
+
+		cache.clear();
+		assertNull(cache.get(first));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void computeIfAbsentKeepsNonNullValues() {
+		final WeakIdentityCache<Object, String> cache = new WeakIdentityCache<>();
+		final Object key = new Object();
+
+		assertNull(cache.computeIfAbsent(key, k -> null));
+		assertEquals(0, cache.size());
+
+		final String value = cache.computeIfAbsent(key, k -> new String("computed"));
+
+		assertSame(value, cache.computeIfAbsent(key, k -> "other"));
+		assertEquals(1, cache.size());
+	}
+}
@@ -0,0 +1,123 @@
+package dev._2lstudios.hamsterapi.wrappers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.After;
+import org.junit.Test;
+
+import dev._2lstudios.hamsterapi.HamsterAPI;
+import dev._2lstudios.hamsterapi.utils.Reflection;
+import dev._2lstudios.hamsterapi.utils.WeakIdentityCache;
+import sun.misc.Unsafe;
+
+public class ItemStackListViewTest {
+	@After
+	public void tearDown() throws Exception {
+		setHamsterApiInstance(null, null);
+	}
+
+	@Test
+	public void slotsAreConvertedOnceWhenRead() {
+		final AtomicInteger conversions = new AtomicInteger();
+		final List<Object> handles = Arrays.asList(new NmsItemStack(), new NmsItemStack(), new NmsItemStack());
+		final ItemStackListView view = new ItemStackListView(handles, counting(conversions));
+
+		assertEquals(3, view.size());
+		assertEquals(0, conversions.get());
+
+		final ItemStack slot = view.get(1);
+
+		assertEquals(1, conversions.get());
+		assertSame(slot, view.get(1));
+		assertEquals(1, conversions.get());
+
+		view.get(0);
+		assertEquals(2, conversions.get());
+	}
+
+	@Test
+	public void conversionsAreReusedForTheSameStack() {
+		final AtomicInteger conversions = new AtomicInteger();
+		final WeakIdentityCache<Object, ItemStack> views = new WeakIdentityCache<>();
+		final Function<Object, ItemStack> converter = counting(conversions);
+		final NmsItemStack shared = new NmsItemStack();
+		final NmsItemStack other = new NmsItemStack();
+		// Two packets with the same stack, e.g. one window update sent to two players
+		final ItemStackListView first = new ItemStackListView(Arrays.asList(shared, other),
+				handle -> views.computeIfAbsent(handle, converter));
+		final ItemStackListView second = new ItemStackListView(Arrays.asList(shared),
+				handle -> views.computeIfAbsent(handle, converter));
+
+		assertSame(first.get(0), second.get(0));
+		assertEquals(1, conversions.get());
+
+		assertNotSame(first.get(0), first.get(1));
+		assertEquals(2, conversions.get());
+	}
+
+	@Test
+	public void itemListIsNullForNonNmsElements() throws Exception {
+		final Reflection reflection = new Reflection(null);
+		getMinecraftClassCache(reflection).put("world.item.ItemStack", Optional.of(NmsItemStack.class));
+		setHamsterApiInstance(allocateHamsterApi(), reflection);
+
+		final PacketWrapper wrapper = new PacketWrapper(new DummyPacket());
+
+		assertNull(wrapper.getItemList("names"));
+		assertNull(wrapper.getItemList("count"));
+		assertNull(wrapper.getItemList("missing"));
+	}
+
+	private Function<Object, ItemStack> counting(final AtomicInteger conversions) {
+		return handle -> {
+			conversions.incrementAndGet();
+			return new ItemStack(Material.STONE);
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Optional<Class<?>>> getMinecraftClassCache(final Reflection reflection) throws Exception {
+		final Field field = Reflection.class.getDeclaredField("minecraftClassCache");
+		field.setAccessible(true);
+		return (Map<String, Optional<Class<?>>>) field.get(reflection);
+	}
+
+	private HamsterAPI allocateHamsterApi() throws Exception {
+		final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+		unsafeField.setAccessible(true);
+		return (HamsterAPI) ((Unsafe) unsafeField.get(null)).allocateInstance(HamsterAPI.class);
+	}
+
+	private void setHamsterApiInstance(final HamsterAPI hamsterAPI, final Reflection reflection) throws Exception {
+		final Field instanceField = HamsterAPI.class.getDeclaredField("instance");
+		instanceField.setAccessible(true);
+		instanceField.set(null, hamsterAPI);
+
+		if (hamsterAPI != null) {
+			final Field reflectionField = HamsterAPI.class.getDeclaredField("reflection");
+			reflectionField.setAccessible(true);
+			reflectionField.set(hamsterAPI, reflection);
+		}
+	}
+
+	private static final class NmsItemStack {
+	}
+
+	private static final class DummyPacket {
+		private final List<String> names = Arrays.asList("first", "second");
+		private final int count = 2;
+	}
+}
@@ -0,0 +1,100 @@
+package dev._2lstudios.hamsterapi.wrappers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PacketWrapperForkTest {
+	@Test
+	public void forkCopiesOnFirstWriteOnly() {
+		final DummyPacket shared = new DummyPacket();
+		final PacketWrapper wrapper = new PacketWrapper(shared).forkForPlayer();
+
+		// Reads never copy
+		assertEquals("shared", wrapper.getString("text"));
+		assertSame(shared, wrapper.getPacket());
+		assertFalse(wrapper.isForked());
+
+		wrapper.write("text", "player");
+		final Object copy = wrapper.getPacket();
+
+		assertNotSame(shared, copy);
+		assertTrue(wrapper.isForked());
+		assertEquals("shared", shared.text);
+		assertEquals("player", ((DummyPacket) copy).text);
+
+		wrapper.write("count", 5);
+		assertSame(copy, wrapper.getPacket());
+		assertEquals(5, ((DummyPacket) copy).count);
+		assertEquals(1, shared.count);
+	}
+
+	@Test
+	public void copyKeepsFinalAndSuperclassFields() {
+		final DummyPacket shared = new DummyPacket();
+		final PacketWrapper wrapper = new PacketWrapper(shared).forkForPlayer();
+
+		wrapper.write("entityId", 9);
+		final DummyPacket copy = (DummyPacket) wrapper.getPacket();
+
+		assertEquals(9, ((BasePacket) copy).entityId);
+		assertEquals(7, ((BasePacket) shared).entityId);
+		assertEquals(2.5D, copy.x, 0);
+		assertTrue(copy.onGround);
+		// Shallow, referenced objects are shared
+		assertSame(shared.viewers, copy.viewers);
+	}
+
+	@Test
+	public void writesWithoutForkStillChangeTheSharedPacket() {
+		final DummyPacket shared = new DummyPacket();
+		final PacketWrapper wrapper = new PacketWrapper(shared);
+
+		wrapper.write("text", "everyone");
+
+		assertSame(shared, wrapper.getPacket());
+		assertEquals("everyone", shared.text);
+	}
+
+	@Test
+	public void tryWriteReportsMissingFields() {
+		final DummyPacket shared = new DummyPacket();
+		final PacketWrapper wrapper = new PacketWrapper(shared).forkForPlayer();
+
+		assertFalse(wrapper.tryWrite("missing", 1));
+		assertSame(shared, wrapper.getPacket());
+		assertTrue(wrapper.tryWrite("count", 3));
+		assertEquals(3, ((DummyPacket) wrapper.getPacket()).count);
+	}
+
+	private static class BasePacket {
+		private final int entityId;
+
+		private BasePacket(final int entityId) {
+			this.entityId = entityId;
+		}
+	}
+
+	private static final class DummyPacket extends BasePacket {
+		// Set in the constructor, constant fields would be inlined by the compiler
+		private final String text;
+		private int count = 1;
+		private final double x;
+		private final boolean onGround;
+		private final List<String> viewers = Collections.singletonList("viewer");
+
+		private DummyPacket() {
+			super(7);
+			this.text = "shared";
+			this.x = 2.5D;
+			this.onGround = true;
+		}
+	}
+}